@@ -0,0 +1,106 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.ParserCodeGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 语法分析驱动程序的吞吐量基准测试
+ * <br>
+ * 在内存中生成一个由 1M 条语句组成的 S_list 程序 (不经过词法分析), 先预热若干轮, 再计时若干轮,
+ * 输出每轮的吞吐量 (每秒分析的词法单元数) 与每个词法单元平均分配的字节数. 不注册任何观察者, 因此测得的是驱动程序本身的开销.
+ * <br>
+ * 用法: ParserBenchmark [语句数] [预热轮数] [计时轮数] [parallel|compiled], 需在 template 目录下运行以读取 LR1_table.csv;
+ * 给出 parallel 时测量按语句并行的 runParallel, 此时分配的字节数只计入调用线程; 给出 compiled 时测量由 {@link ParserCodeGenerator}
+ * 从同一张表生成并在运行时编译的分析器, 需要在 JDK 上运行. 三种方式的结果可以直接对比.
+ * <br>
+ * 该类不属于编译器本身, 因此放在 bench 目录下, 与 src 一起编译后运行. 这里没有使用 JMH: 仓库没有构建脚本, 无法引入依赖,
+ * 只能手写预热与计时循环, 不能排除死代码消除与 OSR 等因素, 结果只适合在同一台机器上做相对比较.
+ */
+public class ParserBenchmark {
+    public static void main(String[] args) {
+        final var statements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final var warmups = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final var iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        final var mode = args.length > 3 ? args[3] : "sequential";
+
+        TokenKind.loadTokenKinds();
+        final var lrTable = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        final var compiled = mode.equals("compiled")
+            ? new ParserCodeGenerator(lrTable).compile("cn.edu.hitsz.compiler.parser", "BenchmarkSyntaxAnalyzer")
+            : null;
+        final var tokens = generate(statements);
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final var threadId = Thread.currentThread().getId();
+
+        for (int round = 0; round < warmups + iterations; round++) {
+            final Runnable parse;
+            if (compiled != null) {
+                final var parser = compiled.apply(new SymbolTable());
+                parser.loadTokens(tokens);
+                parser.loadLRTable(lrTable);
+                parse = parser::run;
+            } else {
+                final var parser = new SyntaxAnalyzer(new SymbolTable());
+                parser.loadTokens(tokens);
+                parser.loadLRTable(lrTable);
+                parse = mode.equals("parallel") ? parser::runParallel : parser::run;
+            }
+
+            final var bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            final var begin = System.nanoTime();
+            parse.run();
+            final var elapsed = System.nanoTime() - begin;
+            final var bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+            System.out.printf("%s %d: %.1f ms, %.2f M tokens/s, %.3f bytes/token%n",
+                round < warmups ? "warmup" : "iteration", round < warmups ? round : round - warmups,
+                elapsed / 1e6, tokens.size() / (elapsed / 1e3), (double) bytes / tokens.size());
+        }
+    }
+
+    /**
+     * 生成形如下面这样循环出现的语句, 最后以 return 结束. 词法单元是不可变的, 因此相同的单词共用同一个对象
+     * <pre>
+     * int a;
+     * a = 8;
+     * b = a * ( 3 + b ) - c;
+     * </pre>
+     */
+    private static List<Token> generate(int statements) {
+        final var intToken = Token.simple("int");
+        final var returnToken = Token.simple("return");
+        final var semicolon = Token.simple("Semicolon");
+        final var assign = Token.simple("=");
+        final var plus = Token.simple("+");
+        final var minus = Token.simple("-");
+        final var times = Token.simple("*");
+        final var leftParen = Token.simple("(");
+        final var rightParen = Token.simple(")");
+        final var a = Token.normal("id", "a");
+        final var b = Token.normal("id", "b");
+        final var c = Token.normal("id", "c");
+        final var three = Token.normal("IntConst", "3");
+        final var eight = Token.normal("IntConst", "8");
+
+        final var tokens = new ArrayList<Token>(statements * 9);
+        for (int i = 0; i < statements - 1; i++) {
+            switch (i % 3) {
+                case 0 -> tokens.addAll(List.of(intToken, a, semicolon));
+                case 1 -> tokens.addAll(List.of(a, assign, eight, semicolon));
+                default -> tokens.addAll(List.of(b, assign, a, times, leftParen, three, plus, b, rightParen, minus, c, semicolon));
+            }
+        }
+
+        tokens.addAll(List.of(returnToken, a, semicolon, Token.eof()));
+        return tokens;
+    }
+}
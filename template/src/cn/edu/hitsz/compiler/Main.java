@@ -3,17 +3,20 @@ package cn.edu.hitsz.compiler;
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.FrontEndAnalyzer;
+import cn.edu.hitsz.compiler.parser.ParseEventLog;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
-import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
 import cn.edu.hitsz.compiler.parser.table.TableLoader;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import cn.edu.hitsz.compiler.utils.IREmulator;
+import cn.edu.hitsz.compiler.utils.Metrics;
 
+import java.util.List;
 import java.util.Objects;
 
 public class Main {
@@ -24,20 +27,21 @@ public class Main {
 
         // 词法分析
         final var lexer = new LexicalAnalyzer(symbolTable);
-        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
-        lexer.run();
+        Metrics.time("lexing", () -> {
+            lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+            lexer.run();
+        });
         lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
         final var tokens = lexer.getTokens();
         symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
 
         // 读取第三方程序构造的 LR 分析表
         final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
+        final LRTable lrTable = Metrics.time("table-loading", () -> tableLoader.load(FilePathConfig.LR1_TABLE_PATH));
 
         // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        // final var tableGenerator = new TableGenerator();
-        // tableGenerator.run();
-        // final var lrTable = tableGenerator.getTable();
+        // // 构造结果以文法指纹为键缓存, 文法不变时直接读取缓存
+        // final var lrTable = new TableCache().load();
         // lrTable.dumpTable("data/out/lrTable.csv");
 
         // 加载 LR 分析驱动程序
@@ -50,31 +54,43 @@ public class Main {
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
         parser.registerObserver(productionCollector);
 
-        // 加入用作语义检查的 Observer
-        final var semanticAnalyzer = new SemanticAnalyzer();
-        parser.registerObserver(semanticAnalyzer);
+        // 加入语义检查与 IR 生成合一的 Observer, 每个事件只分派一次
+        // 也可以分别注册 SemanticAnalyzer 与 IRGenerator; 只做语义检查时使用 new FrontEndAnalyzer(false)
+        final var frontEnd = new FrontEndAnalyzer();
+        parser.registerObserver(frontEnd);
 
-        // 加入用作 IR 生成的 Observer
-        final var irGenerator = new IRGenerator();
-        parser.registerObserver(irGenerator);
-
-        // 执行语法解析并在解析过程中依次调用各 Observer
-        parser.run();
+        // 执行语法解析并记录事件日志, 再由各 Observer 在各自的线程上独立地回放
+        // 也可以直接调用 parser.run(), 在解析过程中依次调用各 Observer;
+        // 或调用 parser.runPipelined(observers, 1024), 由各 Observer 在解析的同时经环形缓冲区消费事件
+        // 或调用 parser.runParallel(), 按语句并行地解析后再依次调用各 Observer
+        final ParseEventLog eventLog = Metrics.time("parsing", parser::record);
+        // 回放包括规约列表的收集, 语义检查与 IR 生成
+        Metrics.time("ir-generation", () -> eventLog.replayInParallel(List.of(productionCollector, frontEnd)));
 
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
         symbolTable.dumpTable(FilePathConfig.NEW_SYMBOL_TABLE);
-        final var instructions = irGenerator.getIR();
-        irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
+        final var instructions = frontEnd.getIR();
+        frontEnd.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
 
         // 模拟执行 IR 并输出结果
-        final var emulator = IREmulator.load(instructions);
-        FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, emulator.execute().map(Objects::toString).orElse("No return value"));
+        final String emulateResult = Metrics.time("emulation", () -> {
+            final var emulator = IREmulator.load(frontEnd.getIRBuffer());
+            return emulator.execute().map(Objects::toString).orElse("No return value");
+        });
+        FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, emulateResult);
 
         // 由 IR 生成汇编
         final var asmGenerator = new AssemblyGenerator();
-        asmGenerator.loadIR(instructions);
-        asmGenerator.run();
+        Metrics.time("assembly", () -> {
+            asmGenerator.loadIR(instructions, frontEnd.getVariables());
+            asmGenerator.run();
+        });
         asmGenerator.dump(FilePathConfig.ASSEMBLY_LANGUAGE_PATH);
+
+        // 以 -Dcompiler.metrics=true 运行时输出统计信息
+        if (Metrics.ENABLED) {
+            Metrics.dumpToFile(FilePathConfig.METRICS_PATH);
+        }
     }
 }
@@ -3,6 +3,7 @@ package cn.edu.hitsz.compiler.asm;
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariableFactory;
 import cn.edu.hitsz.compiler.ir.Instruction;
 import cn.edu.hitsz.compiler.ir.InstructionKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
@@ -40,14 +41,17 @@ public class AssemblyGenerator {
 
     private List<Instruction> instructionList;
 
+    //IR 变量所属的工厂, 预处理中新建的临时变量也由它创建
+    private IRVariableFactory variables;
+
     //记录当前变量和寄存器对应关系的双射表
     private final BMap<IRValue,Reg> regMap = new BMap();
 
     //记录当前变量和内存位置对应关系的双射表
     private final BMap<IRValue,Integer> locationMap = new BMap();
 
-    //记录变量使用次数的哈希表
-    private final HashMap<IRValue,Integer> usedTimeMap = new HashMap<>();
+    //记录变量使用次数的数组, 以 IR 变量的编号为下标
+    private int[] usedTimes = new int[0];
 
     //存放当前寄存器的栈(用队列表示)
     private final Deque<Reg> regDeque = new LinkedList<>();
@@ -77,7 +81,7 @@ public class AssemblyGenerator {
 
         //是否活跃
         public boolean isActive(){
-            return val != null && usedTimeMap.get(val) != 0;
+            return val != null && usedTime(val) != 0;
         }
         //是否空闲
         public boolean isSpare(){
@@ -141,10 +145,13 @@ public class AssemblyGenerator {
      * 信息. 这些信息可以通过简单的映射维护, 或者自行增加记录信息的数据结构.
      *
      * @param originInstructions 前端提供的中间代码
+     * @param variables          创建这些中间代码中 IR 变量的工厂, 预处理所需的临时变量也由它创建
      */
-    public void loadIR(List<Instruction> originInstructions) {
+    public void loadIR(List<Instruction> originInstructions, IRVariableFactory variables) {
         // TODO: 读入前端提供的中间代码并生成所需要的信息
-        instructionList = originInstructions;
+        //预处理会改写指令序列, 因此复制一份, 前端的 IR 可能是只读的视图 (见 IRBuffer)
+        instructionList = new ArrayList<>(originInstructions);
+        this.variables = variables;
     }
 
     /**
@@ -202,14 +209,14 @@ public class AssemblyGenerator {
                             break;
                         //立即数在左边的SUB
                         case SUB:
-                            IRVariable tempLeftSub = IRVariable.temp();
+                            IRVariable tempLeftSub = variables.temp();
                             instructionList.add(num,Instruction.createMov(tempLeftSub,instruction.getLHS()));
                             num++;
                             instructionList.add(num,Instruction.createSub(instruction.getResult(),tempLeftSub,instruction.getRHS()));
                             break;
                         //立即数在左边的MUL
                         case MUL:
-                            IRVariable tempLeftMul = IRVariable.temp();
+                            IRVariable tempLeftMul = variables.temp();
                             instructionList.add(num,Instruction.createMov(tempLeftMul,instruction.getLHS()));
                             num++;
                             instructionList.add(num,Instruction.createMul(instruction.getResult(),tempLeftMul,instruction.getRHS()));
@@ -224,7 +231,7 @@ public class AssemblyGenerator {
                     switch(instructionKind){
                         //立即数在右边的MUL
                         case MUL:
-                            IRVariable tempRightMul = IRVariable.temp();
+                            IRVariable tempRightMul = variables.temp();
                             instructionList.add(num,Instruction.createMov(tempRightMul,instruction.getRHS()));
                             num++;
                             instructionList.add(num,Instruction.createMul(instruction.getResult(),instruction.getLHS(),tempRightMul));
@@ -247,8 +254,8 @@ public class AssemblyGenerator {
      * 计算每个变量的使用情况
     */
     public void countUsedTime(){
-        //清理哈希表
-        usedTimeMap.clear();
+        //预处理之后变量数不再增加, 按此时的变量数分配数组
+        usedTimes = new int[variables.size()];
         //计算每个变量的使用情况
         for(Instruction instruction : instructionList){
             InstructionKind instructionKind = instruction.getKind();
@@ -256,35 +263,30 @@ public class AssemblyGenerator {
             //MOV
             if(instructionKind.isUnary()){
                 if(instruction.getFrom().isIRVariable()){
-                    if(usedTimeMap.containsKey(instruction.getFrom())){
-                        usedTimeMap.put(instruction.getFrom(),usedTimeMap.get(instruction.getFrom()) + 1);
-                    }
-                    else{
-                        usedTimeMap.put(instruction.getFrom(),1);
-                    }
+                    usedTimes[((IRVariable) instruction.getFrom()).getId()]++;
                 }
             }
             //双变量
             else if(instructionKind.isBinary()){
                 if(instruction.getLHS().isIRVariable()){
-                    if(usedTimeMap.containsKey(instruction.getLHS())){
-                        usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) + 1);
-                    }
-                    else{
-                        usedTimeMap.put(instruction.getLHS(),1);
-                    }
+                    usedTimes[((IRVariable) instruction.getLHS()).getId()]++;
                 }
                 if(instruction.getRHS().isIRVariable()){
-                    if(usedTimeMap.containsKey(instruction.getRHS())){
-                        usedTimeMap.put(instruction.getRHS(),usedTimeMap.get(instruction.getRHS()) + 1);
-                    }
-                    else{
-                        usedTimeMap.put(instruction.getRHS(),1);
-                    }
+                    usedTimes[((IRVariable) instruction.getRHS()).getId()]++;
                 }
             }
         }
     }
+
+    //变量剩余的使用次数
+    private int usedTime(IRValue val){
+        return usedTimes[((IRVariable) val).getId()];
+    }
+
+    //变量被使用了一次
+    private void use(IRValue val){
+        usedTimes[((IRVariable) val).getId()]--;
+    }
     /**
      * 寄存器选择算法
      */
@@ -337,7 +339,7 @@ public class AssemblyGenerator {
         //计算有无空出的内存
         int curDepth;
         for(curDepth = 0; curDepth < depth; curDepth = curDepth + 4){
-            if(usedTimeMap.get(locationMap.getByValue(curDepth)) == 0){
+            if(usedTime(locationMap.getByValue(curDepth)) == 0){
                 writeList.add("    " + "sw  "+ reg + ", " + curDepth + "(sp)");
                 if(locationMap.containsKey(val)){
                     writeList.add("    " + "lw  "+ reg + ", " + locationMap.getByKey(val) + "(sp)");
@@ -405,7 +407,7 @@ public class AssemblyGenerator {
                     else if(instruction.getFrom().isIRVariable()){
                         regMovFrom = getReg(instruction.getFrom(),regMaxNum,regMaxNum);
                         writeList.add("    " + "mv "+ getReg(instruction.getResult(),regMovFrom.getNum(),regMaxNum) + ", " + regMovFrom + "        #  " + instruction);
-                        usedTimeMap.put(instruction.getFrom(),usedTimeMap.get(instruction.getFrom()) - 1);
+                        use(instruction.getFrom());
                     }
                     break;
                 //ADD
@@ -415,14 +417,14 @@ public class AssemblyGenerator {
                     if(instruction.getRHS().isImmediate()){
                         regAddLhs = getReg(instruction.getLHS(),regMaxNum,regMaxNum);
                         writeList.add("    " + "addi "+ getReg(instruction.getResult(),regAddLhs.getNum(),regMaxNum) + ", " + regAddLhs + ", " + instruction.getRHS() + "        #  " + instruction);
-                        usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) - 1);
+                        use(instruction.getLHS());
                     }
                     else if(instruction.getRHS().isIRVariable()){
                         regAddLhs = getReg(instruction.getLHS(),regMaxNum,regMaxNum);
                         regAddRhs = getReg(instruction.getRHS(),regAddLhs.getNum(),regMaxNum);
                         writeList.add("    " + "add "+ getReg(instruction.getResult(),regAddLhs.getNum(),regAddRhs.getNum()) + ", " + regAddLhs + ", " + regAddRhs + "        #  " + instruction);
-                        usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) - 1);
-                        usedTimeMap.put(instruction.getRHS(),usedTimeMap.get(instruction.getRHS()) - 1);
+                        use(instruction.getLHS());
+                        use(instruction.getRHS());
                     }
                     break;
                 //SUB
@@ -438,14 +440,14 @@ public class AssemblyGenerator {
                         else{
                             writeList.add("    " + "addi "+ getReg(instruction.getResult(),regSubLhs.getNum(),regMaxNum) + ", " + regSubLhs + ", " + instruction.getRHS().toString().substring(1) + "        #  " + instruction);
                         }
-                        usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) - 1);
+                        use(instruction.getLHS());
                     }
                     else if(instruction.getRHS().isIRVariable()){
                         regSubLhs = getReg(instruction.getLHS(),regMaxNum,regMaxNum);
                         regSubRhs = getReg(instruction.getRHS(),regSubLhs.getNum(),regMaxNum);
                         writeList.add("    " + "sub "+ getReg(instruction.getResult(),regSubLhs.getNum(),regSubRhs.getNum()) + ", " + regSubLhs + ", " + regSubRhs + "        #  " + instruction);
-                        usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) - 1);
-                        usedTimeMap.put(instruction.getRHS(),usedTimeMap.get(instruction.getRHS()) - 1);
+                        use(instruction.getLHS());
+                        use(instruction.getRHS());
                     }
                     break;
                 //MUL
@@ -455,8 +457,8 @@ public class AssemblyGenerator {
                     regMulLhs = getReg(instruction.getLHS(),regMaxNum,regMaxNum);
                     regMulRhs = getReg(instruction.getRHS(),regMulLhs.getNum(),regMaxNum);
                     writeList.add("    " + "mul "+ getReg(instruction.getResult(),regMulLhs.getNum(),regMulRhs.getNum()) + ", " + regMulLhs + ", " + regMulRhs + "        #  " + instruction);
-                    usedTimeMap.put(instruction.getLHS(),usedTimeMap.get(instruction.getLHS()) - 1);
-                    usedTimeMap.put(instruction.getRHS(),usedTimeMap.get(instruction.getRHS()) - 1);
+                    use(instruction.getLHS());
+                    use(instruction.getRHS());
                     break;
                 default:
                     break;
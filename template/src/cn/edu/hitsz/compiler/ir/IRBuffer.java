@@ -0,0 +1,132 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 紧凑的线性 IR: 以平铺的数组存放指令序列, 由 {@link IRBuilder} 构造
+ * <br>
+ * 第 i 条指令由 opcodes[i], results[i], lhs[i], rhs[i] 四项组成. results 为结果变量的编号 (RET 没有结果, 为 -1);
+ * lhs, rhs 为两个操作数 (一元指令只用 lhs), 是变量时存变量的编号, 是立即数时直接存立即数的值. 操作数是哪一种由 opcode 中的标志位区分:
+ * 低 4 位为 {@link InstructionKind} 的序号, 其上两位分别标记 lhs 与 rhs 是否是立即数. 因此每条指令只占 13 字节, 立即数也无需装箱,
+ * 百万条指令只需十几 MB, 而以 {@link Instruction} 对象存放则需要数百 MB.
+ * <br>
+ * 变量编号所属的工厂见 {@link #getVariables()}. 需要 {@code List<Instruction>} 的地方 (IREmulator, AssemblyGenerator 等)
+ * 可以使用 {@link #asInstructions()} 视图, 它在访问时才构造出对应的 Instruction.
+ */
+public class IRBuffer {
+    private static final InstructionKind[] KINDS = InstructionKind.values();
+    private static final int KIND_MASK = 0x0F;
+    private static final int LHS_IMMEDIATE = 0x10;
+    private static final int RHS_IMMEDIATE = 0x20;
+
+    private final IRVariableFactory variables;
+    private byte[] opcodes = new byte[1024];
+    private int[] results = new int[1024];
+    private int[] lhs = new int[1024];
+    private int[] rhs = new int[1024];
+    private int size = 0;
+
+    /**
+     * @param variables 指令中的变量编号所属的工厂
+     */
+    public IRBuffer(IRVariableFactory variables) {
+        this.variables = variables;
+    }
+
+    /**
+     * @return 指令条数
+     */
+    public int size() {
+        return size;
+    }
+
+    public IRVariableFactory getVariables() {
+        return variables;
+    }
+
+    public InstructionKind getKind(int index) {
+        return KINDS[opcodes[index] & KIND_MASK];
+    }
+
+    /**
+     * @return 第 index 条指令的结果变量的编号, RET 为 -1
+     */
+    public int getResultId(int index) {
+        return results[index];
+    }
+
+    /**
+     * @param operand 0 为 lhs (一元指令与 RET 的唯一操作数), 1 为 rhs
+     * @return 该操作数是否是立即数
+     */
+    public boolean isImmediate(int index, int operand) {
+        return (opcodes[index] & (operand == 0 ? LHS_IMMEDIATE : RHS_IMMEDIATE)) != 0;
+    }
+
+    /**
+     * @param operand 0 为 lhs (一元指令与 RET 的唯一操作数), 1 为 rhs
+     * @return 该操作数是变量时为变量的编号, 是立即数时为立即数的值, 见 {@link #isImmediate(int, int)}
+     */
+    public int getOperand(int index, int operand) {
+        return operand == 0 ? lhs[index] : rhs[index];
+    }
+
+    /**
+     * @return 第 index 条指令, 每次调用都会构造新的 Instruction
+     */
+    public Instruction get(int index) {
+        final var kind = getKind(index);
+        return switch (kind) {
+            case ADD -> Instruction.createAdd(variables.get(results[index]), valueOf(index, 0), valueOf(index, 1));
+            case SUB -> Instruction.createSub(variables.get(results[index]), valueOf(index, 0), valueOf(index, 1));
+            case MUL -> Instruction.createMul(variables.get(results[index]), valueOf(index, 0), valueOf(index, 1));
+            case MOV -> Instruction.createMov(variables.get(results[index]), valueOf(index, 0));
+            case RET -> Instruction.createRet(valueOf(index, 0));
+        };
+    }
+
+    /**
+     * @return 以 Instruction 表示的只读视图, 随缓冲区的增长而增长
+     */
+    public List<Instruction> asInstructions() {
+        return new InstructionView();
+    }
+
+    void append(InstructionKind kind, int result, int lhsOperand, boolean lhsImmediate, int rhsOperand, boolean rhsImmediate) {
+        if (size == opcodes.length) {
+            final var capacity = size * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            results = Arrays.copyOf(results, capacity);
+            lhs = Arrays.copyOf(lhs, capacity);
+            rhs = Arrays.copyOf(rhs, capacity);
+        }
+        opcodes[size] = (byte) (kind.ordinal() | (lhsImmediate ? LHS_IMMEDIATE : 0) | (rhsImmediate ? RHS_IMMEDIATE : 0));
+        results[size] = result;
+        lhs[size] = lhsOperand;
+        rhs[size] = rhsOperand;
+        size++;
+    }
+
+    private IRValue valueOf(int index, int operand) {
+        final var value = getOperand(index, operand);
+        return isImmediate(index, operand) ? IRImmediate.of(value) : variables.get(value);
+    }
+
+    private final class InstructionView extends AbstractList<Instruction> implements RandomAccess {
+        @Override
+        public Instruction get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return IRBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
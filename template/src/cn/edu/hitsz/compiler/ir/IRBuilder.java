@@ -0,0 +1,62 @@
+package cn.edu.hitsz.compiler.ir;
+
+/**
+ * 向 {@link IRBuffer} 追加指令, 用法与 Instruction 的 createXXX 方法相同, 但不为每条指令创建对象
+ * <br>
+ * 指令中的变量必须来自构造 IRBuffer 时所用的工厂, 以保证变量编号有意义.
+ */
+public class IRBuilder {
+    private final IRBuffer buffer;
+
+    public IRBuilder(IRVariableFactory variables) {
+        this.buffer = new IRBuffer(variables);
+    }
+
+    /**
+     * @return 已构造的指令, 之后追加的指令也会出现在其中
+     */
+    public IRBuffer getBuffer() {
+        return buffer;
+    }
+
+    public void add(IRVariable result, IRValue lhs, IRValue rhs) {
+        binary(InstructionKind.ADD, result, lhs, rhs);
+    }
+
+    public void sub(IRVariable result, IRValue lhs, IRValue rhs) {
+        binary(InstructionKind.SUB, result, lhs, rhs);
+    }
+
+    public void mul(IRVariable result, IRValue lhs, IRValue rhs) {
+        binary(InstructionKind.MUL, result, lhs, rhs);
+    }
+
+    public void mov(IRVariable result, IRValue from) {
+        buffer.append(InstructionKind.MOV, idOf(result), encode(from), from.isImmediate(), 0, false);
+    }
+
+    public void ret(IRValue returnValue) {
+        buffer.append(InstructionKind.RET, -1, encode(returnValue), returnValue.isImmediate(), 0, false);
+    }
+
+    private void binary(InstructionKind kind, IRVariable result, IRValue lhs, IRValue rhs) {
+        buffer.append(kind, idOf(result), encode(lhs), lhs.isImmediate(), encode(rhs), rhs.isImmediate());
+    }
+
+    private int idOf(IRVariable variable) {
+        if (variable.getFactory() != buffer.getVariables()) {
+            throw new RuntimeException("IR variable %s does not belong to the factory of this buffer".formatted(variable));
+        }
+        return variable.getId();
+    }
+
+    private int encode(IRValue value) {
+        if (value instanceof IRImmediate immediate) {
+            return immediate.getValue();
+        } else if (value instanceof IRVariable variable) {
+            return idOf(variable);
+        } else {
+            throw new RuntimeException("Unknown IR value type");
+        }
+    }
+}
@@ -6,30 +6,31 @@ package cn.edu.hitsz.compiler.ir;
  * 我们允许 IR 中的变量保存一些有关源语言的信息 -- 比如它在源语言里对应的是具体的源语言变量还是源语言中的临时变量. 这些信息用一个字符串
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
- * IR 变量的等价性由 name 唯一确定.
+ * IR 变量只能由 {@link IRVariableFactory} 创建, 并带有在该工厂中稠密的编号 (虚拟寄存器号). IR 变量的等价性由其所属的工厂与编号唯一确定,
+ * 名字只用于输出. 每次编译使用各自的工厂, 具名变量以符号编号由 {@link IRVariableFactory#named(int, String)} 创建,
+ * 临时变量由 {@link IRVariableFactory#temp()} 创建.
  */
 public class IRVariable implements IRValue {
-    /**
-     * @param name 源语言中变量的名字
-     * @return 一个对应于源语言中具体变量的 IRVariable
-     */
-    public static IRVariable named(String name) {
-        return new IRVariable(name);
+    public String getName() {
+        return name != null ? name : "$" + tempNumber;
     }
 
     /**
-     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     * @return 该变量在其工厂中的编号, 小于工厂的 {@link IRVariableFactory#size()}
      */
-    public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+    public int getId() {
+        return id;
     }
 
-    public String getName() {
-        return name;
+    /**
+     * @return 创建该变量的工厂, 需要新的临时变量时应由它创建
+     */
+    public IRVariableFactory getFactory() {
+        return factory;
     }
 
     public boolean isTemp() {
-        return name.startsWith("$");
+        return name == null;
     }
 
     public boolean isNamed() {
@@ -38,23 +39,29 @@ public class IRVariable implements IRValue {
 
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof IRVariable reg && name.equals(reg.name);
+        return obj instanceof IRVariable variable && factory == variable.factory && id == variable.id;
     }
 
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return id;
     }
 
-    private IRVariable(String name) {
+    IRVariable(IRVariableFactory factory, int id, String name, int tempNumber) {
+        this.factory = factory;
+        this.id = id;
         this.name = name;
+        this.tempNumber = tempNumber;
     }
 
+    private final IRVariableFactory factory;
+    private final int id;
+    //临时变量没有名字, 输出时由 tempNumber 得出
     private final String name;
-    private static int count = 0;
+    private final int tempNumber;
 }
@@ -0,0 +1,82 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IR 变量 (虚拟寄存器) 的工厂, 每次编译使用一个
+ * <br>
+ * 工厂按创建顺序为变量编号 0, 1, 2, ..., 因此后端可以用以编号为下标的数组代替以 IR 变量为键的哈希表, 数组大小为 {@link #size()}.
+ * 具名变量以调用者给出的符号编号 (例如 {@link cn.edu.hitsz.compiler.parser.AttributeStack} 中单词文本的编号) 为下标查找,
+ * 同一编号只创建一次, 名字只用于输出; 临时变量的名字 $0, $1, ... 按工厂中临时变量的创建顺序得出, 只在输出时才拼接.
+ * 工厂并不保存临时变量对象, 每个变量只占一个 int, {@link #get(int)} 取临时变量时才构造出它 (变量的等价性由工厂与编号确定),
+ * 因此百万个临时变量只需几 MB.
+ * <br>
+ * 该类不是线程安全的. 后端需要新的临时变量时, 应使用生成这段 IR 的工厂 (见 {@link cn.edu.hitsz.compiler.parser.IRGenerator#getVariables()}),
+ * 这样新变量的编号紧接在已有变量之后.
+ */
+public class IRVariableFactory {
+    //以变量编号为下标: 临时变量为其临时变量序号, 具名变量为 -(其在 namedVariables 中的下标 + 1)
+    private int[] slots = new int[1024];
+    private int size = 0;
+    private final List<IRVariable> namedVariables = new ArrayList<>();
+    //以符号编号为下标的具名变量的编号, 还没有创建的为 -1
+    private int[] variableOfSymbol = new int[0];
+    private int tempCount = 0;
+
+    /**
+     * @param symbol 源语言变量的符号编号, 非负且尽量稠密, 同一个源语言变量的编号相同
+     * @param name   源语言中变量的名字, 只在第一次创建该变量时使用
+     * @return 对应于该源语言变量的 IRVariable, 同一编号的变量总是同一个对象
+     */
+    public IRVariable named(int symbol, String name) {
+        if (symbol >= variableOfSymbol.length) {
+            final var oldLength = variableOfSymbol.length;
+            variableOfSymbol = Arrays.copyOf(variableOfSymbol, Math.max(symbol + 1, oldLength * 2));
+            Arrays.fill(variableOfSymbol, oldLength, variableOfSymbol.length, -1);
+        }
+        if (variableOfSymbol[symbol] >= 0) {
+            return namedVariables.get(-slots[variableOfSymbol[symbol]] - 1);
+        }
+        final var variable = new IRVariable(this, allocate(-(namedVariables.size() + 1)), name, -1);
+        namedVariables.add(variable);
+        variableOfSymbol[symbol] = variable.getId();
+        return variable;
+    }
+
+    /**
+     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     */
+    public IRVariable temp() {
+        final var tempNumber = tempCount++;
+        return new IRVariable(this, allocate(tempNumber), null, tempNumber);
+    }
+
+    /**
+     * @return 已创建的变量数, 所有变量的编号都小于它
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id 变量编号
+     * @return 该编号的变量, 临时变量每次都会构造新的对象
+     */
+    public IRVariable get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        final var slot = slots[id];
+        return slot < 0 ? namedVariables.get(-slot - 1) : new IRVariable(this, id, null, slot);
+    }
+
+    private int allocate(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = slot;
+        return size++;
+    }
+}
@@ -4,8 +4,10 @@ import cn.edu.hitsz.compiler.parser.table.Term;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,7 +31,9 @@ public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
 
     private static final Map<String, TokenKind> allowed = new HashMap<>();
-    private static final TokenKind eof = new TokenKind("$", -1);
+    // 按序号排列的所有 TokenKind, 序号从 0 开始稠密编号, 0 号固定为 EOF
+    private static final List<TokenKind> inOrdinalOrder = new ArrayList<>();
+    private static final TokenKind eof = new TokenKind("$", -1, 0);
 
     /**
      * 从码点文件中读取允许的标识符集合
@@ -39,6 +43,8 @@ public class TokenKind extends Term {
             throw new RuntimeException("Can not set allowed twice");
         }
 
+        inOrdinalOrder.add(eof);
+
         final var lines = FileUtils.readLines(FilePathConfig.CODING_MAP_PATH);
         for (final var line : lines) {
             // 码点文件每行形如:
@@ -48,7 +54,9 @@ public class TokenKind extends Term {
             final var code = Integer.parseInt(words[0]);
             final var id = words[1];
 
-            allowed.put(id, new TokenKind(id, code));
+            final var kind = new TokenKind(id, code, inOrdinalOrder.size());
+            allowed.put(id, kind);
+            inOrdinalOrder.add(kind);
         }
 
         // EOF
@@ -74,6 +82,13 @@ public class TokenKind extends Term {
         return Collections.unmodifiableMap(allowed);
     }
 
+    /**
+     * @return 按序号顺序排列的所有 TokenKind, 其中第 i 个元素的序号为 i
+     */
+    public static List<TokenKind> allInOrdinalOrder() {
+        return Collections.unmodifiableList(inOrdinalOrder);
+    }
+
     /**
      * @param id 标识符
      * @return 从给定的标识符中构造出的 TokenKind
@@ -108,10 +123,21 @@ public class TokenKind extends Term {
         return code;
     }
 
-    private TokenKind(String id, int code) {
+    /**
+     * 与码点不同, 序号是从 0 开始的稠密编号 (EOF 为 0, 其余按码点文件中的行序编号), 适合用作数组下标或位集中的位号
+     *
+     * @return 获得该 TokenKind 的序号
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    private TokenKind(String id, int code, int ordinal) {
         super(id);
         this.code = code;
+        this.ordinal = ordinal;
     }
 
     private final int code;
+    private final int ordinal;
 }
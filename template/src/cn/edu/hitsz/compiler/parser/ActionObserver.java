@@ -2,6 +2,7 @@ package cn.edu.hitsz.compiler.parser;
 
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -17,7 +18,7 @@ import cn.edu.hitsz.compiler.symtab.SymbolTable;
  * ProductionCollector 类
  * <br>
  * 注意观察者并不能访问到 LR 驱动程序维护着的状态栈, 观察者之间维护的栈信息也不应该互相访问. 每一个实现该接口的观察者需要自己定义自己需要的
- * 状态信息并维护自己的状态栈.
+ * 状态信息并维护自己的状态栈. 文法符号的属性可以改为存放在驱动程序维护的 {@link AttributeStack} 中, 见 {@link #setAttributeStack(AttributeStack)}.
  *
  * @see ProductionCollector
  * @see SyntaxAnalyzer
@@ -41,6 +42,29 @@ public interface ActionObserver {
      */
     void whenReduce(Status currentStatus, Production production);
 
+    /**
+     * 观察者是否关心对该产生式的规约. 注册到 {@link SyntaxAnalyzer} 时, 驱动程序据此为每个产生式编出处理函数表,
+     * 规约不被关心的产生式时 (包括单产生式规约链中的产生式) 不会调用该观察者的 whenReduce.
+     * <br>
+     * 例如对于只是原样传递属性的单产生式 (E -> A), 维护属性栈的观察者可以不做任何事: 栈顶的属性恰好就是规约结果的属性.
+     *
+     * @param production 产生式
+     * @return 是否需要在规约该产生式时调用 whenReduce, 默认为 true
+     */
+    default boolean isInterestedIn(Production production) {
+        return true;
+    }
+
+    /**
+     * 观察者是否关心对该种词法单元的移入, 用法同 {@link #isInterestedIn(Production)}
+     *
+     * @param kind 词法单元的种类
+     * @return 是否需要在移入该种词法单元时调用 whenShift, 默认为 true
+     */
+    default boolean isInterestedIn(TokenKind kind) {
+        return true;
+    }
+
     /**
      * 当驱动程序执行 Accept 动作时会调用此函数.
      *
@@ -54,4 +78,15 @@ public interface ActionObserver {
      * @param table 符号表
      */
     void setSymbolTable(SymbolTable table);
+
+    /**
+     * 注册观察者或开始回放事件时会调用此函数, 传入与驱动程序状态栈同步的属性栈. 驱动程序在通知移入之前压入单词所在的行,
+     * 在通知规约之前确定产生式体所在的各行, 观察者在回调中读写自己的列即可, 不必自己维护属性栈.
+     * <br>
+     * 同一个驱动程序上的观察者共用一个属性栈; 各自回放事件日志的观察者各有一个. 观察者据属性栈中的编号缓存的信息应在此时清空.
+     *
+     * @param attributes 属性栈
+     */
+    default void setAttributeStack(AttributeStack attributes) {
+    }
 }
@@ -0,0 +1,363 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 属性文法: 把动作文件中为各产生式指定的语义动作编译为以产生式编号为下标的规约动作表, 供观察者在规约时读写 {@link AttributeStack}
+ * <br>
+ * 动作文件每行为一个产生式及其动作, 例如
+ * <pre>
+ * E -> E + A => add($1, $3)
+ * B -> ( E ) => $2
+ * </pre>
+ * 左边是 grammar.txt 中的产生式; 右边是标注了 {@link GrammarAction} 的方法的名字, 以及依次作为其参数的产生式体符号 ($1 为第一个符号),
+ * 或者只是一个 $n, 表示以第 n 个符号的属性 (整行) 作为头部的属性. 未列出的产生式规约时什么也不做. 以 # 开头的行为注释.
+ * <br>
+ * 属性栈中只有 int 列, 动作方法的参数与返回值则是对象. 观察者按类型提供读写属性栈的方法, 例如 SourceCodeType 的参数读类型一列并换成枚举值,
+ * 加载时为每个参数与返回值选好对应的读写方法. 返回 void 的动作 (头部没有属性) 不写属性栈.
+ * <br>
+ * 加载时会检查每个产生式都在文法中, 每个动作都有对应的方法且参数个数一致, 因此文法改动后动作文件若不再匹配会立即报错, 而不会悄悄地错位.
+ * 动作方法经 LambdaMetafactory 编译为直接调用它的函数对象, 规约时只有一次数组下标与几次接口调用, 没有反射的开销.
+ */
+final class AttributeGrammar {
+    /**
+     * 规约动作: 以属性栈中从 base 开始的产生式体各符号的属性计算出头部的属性, 写到 base 一行
+     */
+    @FunctionalInterface
+    interface ReduceAction {
+        void apply(AttributeStack stack, int base);
+    }
+
+    /**
+     * 从属性栈的某一行读出某种类型的属性
+     */
+    @FunctionalInterface
+    interface AttributeReader {
+        Object read(AttributeStack stack, int row);
+    }
+
+    /**
+     * 把某种类型的属性写到属性栈的某一行
+     */
+    @FunctionalInterface
+    interface AttributeWriter {
+        void write(AttributeStack stack, int row, Object value);
+    }
+
+    /**
+     * 读取动作文件并编译其中的动作
+     *
+     * @param path   动作文件路径
+     * @param lookup 能访问动作方法的 Lookup, 通常由动作方法所在的类以 {@code MethodHandles.lookup()} 取得
+     * @param target 动作方法所在的对象
+     * @param readers 按参数类型给出读属性的方法, 不支持的类型返回 null
+     * @param writers 按返回值类型给出写属性的方法, 不支持的类型返回 null
+     * @return 编译好的属性文法
+     */
+    static AttributeGrammar load(String path, MethodHandles.Lookup lookup, Object target,
+                                 Function<Class<?>, AttributeReader> readers, Function<Class<?>, AttributeWriter> writers) {
+        final var methods = findActionMethods(target.getClass());
+        final var bodyLengths = GrammarInfo.getBodyLengths();
+        final var actions = new ReduceAction[bodyLengths.length];
+        final var passThrough = new boolean[bodyLengths.length];
+
+        for (final var line : FileUtils.readLines(path)) {
+            final var text = line.strip();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+
+            final var parts = text.split("=>");
+            if (parts.length != 2) {
+                throw new RuntimeException("Malformed grammar action in %s: %s".formatted(path, text));
+            }
+            final var production = GrammarInfo.getProductionByText(parts[0].strip());
+            if (actions[production.index()] != null) {
+                throw new RuntimeException("Duplicated grammar action for %s in %s".formatted(production, path));
+            }
+
+            final var spec = parts[1].strip();
+            final var slot = SLOT.matcher(spec);
+            final var call = CALL.matcher(spec);
+            if (slot.matches()) {
+                final var index = checkSlot(slot.group(1), production, path);
+                actions[production.index()] = (stack, base) -> stack.copy(base + index, base);
+                passThrough[production.index()] = bodyLengths[production.index()] == 1;
+            } else if (call.matches()) {
+                final var method = methods.get(call.group(1));
+                if (method == null) {
+                    throw new RuntimeException("No method annotated with @GrammarAction(\"%s\") in %s".formatted(call.group(1), target.getClass()));
+                }
+
+                final var arguments = call.group(2).isBlank() ? new String[0] : call.group(2).split(",");
+                final var slots = new int[arguments.length];
+                for (int i = 0; i < arguments.length; i++) {
+                    final var argument = SLOT.matcher(arguments[i].strip());
+                    if (!argument.matches()) {
+                        throw new RuntimeException("Malformed argument %s of grammar action for %s".formatted(arguments[i], production));
+                    }
+                    slots[i] = checkSlot(argument.group(1), production, path);
+                }
+                actions[production.index()] = compile(method, slots, lookup, target, readers, writers);
+            } else {
+                throw new RuntimeException("Malformed grammar action in %s: %s".formatted(path, text));
+            }
+        }
+
+        return new AttributeGrammar(actions, passThrough);
+    }
+
+    /**
+     * 规约产生式: 以产生式体各符号的属性算出头部的属性. 属性栈中产生式体所在的各行已由驱动程序确定
+     */
+    void reduce(AttributeStack stack, Production production) {
+        final var action = actions[production.index()];
+        if (action != null) {
+            action.apply(stack, stack.head());
+        }
+    }
+
+    /**
+     * @return 规约该产生式时是否需要执行动作. 未列出的产生式, 以及只是原样传递其唯一符号的属性的产生式 (规约不改变属性栈) 都不需要
+     */
+    boolean isInterestedIn(Production production) {
+        return actions[production.index()] != null && !passThrough[production.index()];
+    }
+
+    private static Map<String, Method> findActionMethods(Class<?> clazz) {
+        final var methods = new HashMap<String, Method>();
+        for (final var method : clazz.getDeclaredMethods()) {
+            final var annotation = method.getAnnotation(GrammarAction.class);
+            if (annotation == null) {
+                continue;
+            }
+            if (methods.put(annotation.value(), method) != null) {
+                throw new RuntimeException("Duplicated @GrammarAction(\"%s\") in %s".formatted(annotation.value(), clazz));
+            }
+        }
+        return methods;
+    }
+
+    private static int checkSlot(String text, Production production, String path) {
+        final var slot = Integer.parseInt(text);
+        if (slot < 1 || slot > production.body().size()) {
+            throw new RuntimeException("$%d is out of the body of %s in %s".formatted(slot, production, path));
+        }
+        return slot - 1;
+    }
+
+    private static ReduceAction compile(Method method, int[] slots, MethodHandles.Lookup lookup, Object target,
+                                        Function<Class<?>, AttributeReader> readers, Function<Class<?>, AttributeWriter> writers) {
+        if (method.getParameterCount() != slots.length) {
+            throw new RuntimeException("Grammar action %s takes %d parameters but %d are given".formatted(method, method.getParameterCount(), slots.length));
+        }
+        final var isVoid = method.getReturnType() == void.class;
+        if ((method.getReturnType().isPrimitive() && !isVoid) || Arrays.stream(method.getParameterTypes()).anyMatch(Class::isPrimitive)) {
+            throw new RuntimeException("Grammar action %s must take and return reference types (or return void for no attribute)".formatted(method));
+        }
+
+        final var parameterReaders = new AttributeReader[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            parameterReaders[i] = readers.apply(method.getParameterTypes()[i]);
+            if (parameterReaders[i] == null) {
+                throw new RuntimeException("Grammar action %s takes %s which is not stored in the attribute stack".formatted(method, method.getParameterTypes()[i]));
+            }
+        }
+        final var writer = isVoid ? null : writers.apply(method.getReturnType());
+        if (!isVoid && writer == null) {
+            throw new RuntimeException("Grammar action %s returns %s which is not stored in the attribute stack".formatted(method, method.getReturnType()));
+        }
+
+        final MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        // 0 到 3 个参数的动作编译为直接调用动作方法的函数对象, 更多参数的动作较少见, 经 MethodHandle 展开数组调用
+        final var isStatic = Modifier.isStatic(method.getModifiers());
+        if (isVoid) {
+            return compileVoid(handle, slots, parameterReaders, isStatic, lookup, target);
+        }
+        switch (slots.length) {
+            case 0 -> {
+                final var function = (Function0) metafactory(Function0.class, handle, isStatic, lookup, target);
+                return (stack, base) -> writer.write(stack, base, function.apply());
+            }
+            case 1 -> {
+                final var function = (Function1) metafactory(Function1.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var r0 = parameterReaders[0];
+                return (stack, base) -> writer.write(stack, base, function.apply(r0.read(stack, base + s0)));
+            }
+            case 2 -> {
+                final var function = (Function2) metafactory(Function2.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var s1 = slots[1];
+                final var r0 = parameterReaders[0];
+                final var r1 = parameterReaders[1];
+                return (stack, base) -> writer.write(stack, base,
+                    function.apply(r0.read(stack, base + s0), r1.read(stack, base + s1)));
+            }
+            case 3 -> {
+                final var function = (Function3) metafactory(Function3.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var s1 = slots[1];
+                final var s2 = slots[2];
+                final var r0 = parameterReaders[0];
+                final var r1 = parameterReaders[1];
+                final var r2 = parameterReaders[2];
+                return (stack, base) -> writer.write(stack, base,
+                    function.apply(r0.read(stack, base + s0), r1.read(stack, base + s1), r2.read(stack, base + s2)));
+            }
+            default -> {
+                final var spreader = (isStatic ? handle : handle.bindTo(target))
+                    .asSpreader(Object[].class, slots.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+                return (stack, base) -> {
+                    final var arguments = new Object[slots.length];
+                    for (int i = 0; i < slots.length; i++) {
+                        arguments[i] = parameterReaders[i].read(stack, base + slots[i]);
+                    }
+                    try {
+                        writer.write(stack, base, (Object) spreader.invokeExact(arguments));
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new RuntimeException(e);
+                    }
+                };
+            }
+        }
+    }
+
+    // 不写属性栈的动作编译为没有返回值的函数对象, 与上面一一对应
+    private static ReduceAction compileVoid(MethodHandle handle, int[] slots, AttributeReader[] parameterReaders, boolean isStatic,
+                                            MethodHandles.Lookup lookup, Object target) {
+        switch (slots.length) {
+            case 0 -> {
+                final var consumer = (Consumer0) metafactory(Consumer0.class, handle, isStatic, lookup, target);
+                return (stack, base) -> consumer.accept();
+            }
+            case 1 -> {
+                final var consumer = (Consumer1) metafactory(Consumer1.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var r0 = parameterReaders[0];
+                return (stack, base) -> consumer.accept(r0.read(stack, base + s0));
+            }
+            case 2 -> {
+                final var consumer = (Consumer2) metafactory(Consumer2.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var s1 = slots[1];
+                final var r0 = parameterReaders[0];
+                final var r1 = parameterReaders[1];
+                return (stack, base) -> consumer.accept(r0.read(stack, base + s0), r1.read(stack, base + s1));
+            }
+            case 3 -> {
+                final var consumer = (Consumer3) metafactory(Consumer3.class, handle, isStatic, lookup, target);
+                final var s0 = slots[0];
+                final var s1 = slots[1];
+                final var s2 = slots[2];
+                final var r0 = parameterReaders[0];
+                final var r1 = parameterReaders[1];
+                final var r2 = parameterReaders[2];
+                return (stack, base) -> consumer.accept(r0.read(stack, base + s0), r1.read(stack, base + s1), r2.read(stack, base + s2));
+            }
+            default -> {
+                final var spreader = (isStatic ? handle : handle.bindTo(target))
+                    .asSpreader(Object[].class, slots.length)
+                    .asType(MethodType.methodType(void.class, Object[].class));
+                return (stack, base) -> {
+                    final var arguments = new Object[slots.length];
+                    for (int i = 0; i < slots.length; i++) {
+                        arguments[i] = parameterReaders[i].read(stack, base + slots[i]);
+                    }
+                    try {
+                        spreader.invokeExact(arguments);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new RuntimeException(e);
+                    }
+                };
+            }
+        }
+    }
+
+    private static Object metafactory(Class<?> functionClass, MethodHandle handle, boolean isStatic,
+                                      MethodHandles.Lookup lookup, Object target) {
+        final var instantiated = isStatic ? handle.type() : handle.type().dropParameterTypes(0, 1);
+        final var factoryType = isStatic ? MethodType.methodType(functionClass) : MethodType.methodType(functionClass, target.getClass());
+        // 接口方法的参数都是 Object, 返回值为 Object 或 void, 与 FunctionN/ConsumerN 一致
+        final var erased = instantiated.returnType() == void.class
+            ? MethodType.genericMethodType(instantiated.parameterCount()).changeReturnType(void.class)
+            : MethodType.genericMethodType(instantiated.parameterCount());
+        final var name = instantiated.returnType() == void.class ? "accept" : "apply";
+        try {
+            final var factory = LambdaMetafactory.metafactory(lookup, name, factoryType, erased, handle, instantiated).getTarget();
+            return isStatic ? factory.invoke() : factory.invoke(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Cannot compile grammar action " + handle, e);
+        }
+    }
+
+    interface Function0 {
+        Object apply();
+    }
+
+    interface Function1 {
+        Object apply(Object a);
+    }
+
+    interface Function2 {
+        Object apply(Object a, Object b);
+    }
+
+    interface Function3 {
+        Object apply(Object a, Object b, Object c);
+    }
+
+    interface Consumer0 {
+        void accept();
+    }
+
+    interface Consumer1 {
+        void accept(Object a);
+    }
+
+    interface Consumer2 {
+        void accept(Object a, Object b);
+    }
+
+    interface Consumer3 {
+        void accept(Object a, Object b, Object c);
+    }
+
+    private AttributeGrammar(ReduceAction[] actions, boolean[] passThrough) {
+        this.actions = actions;
+        this.passThrough = passThrough;
+    }
+
+    private static final Pattern SLOT = Pattern.compile("\\$(\\d+)");
+    private static final Pattern CALL = Pattern.compile("(\\w+)\\s*\\((.*)\\)");
+
+    private final ReduceAction[] actions;
+    private final boolean[] passThrough;
+}
@@ -0,0 +1,173 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 属性栈, 由驱动程序维护, 与其状态栈一一对应, 每个文法符号占一行, 为所有观察者共享
+ * <br>
+ * 每一行由几列平铺的 int 组成: 类型 (SourceCodeType 的序号), 符号编号 (单词文本的编号, 文本相同的单词编号相同), 以及 IR 值的句柄
+ * (其含义由 IRGenerator 解释). 没有值的列为 {@link #NONE}. 驱动程序移入单词时压入一行并填好符号编号, 其余各列由关心它的观察者在
+ * whenShift 中填写; 规约时驱动程序先确定产生式体所在的各行, 观察者在 whenReduce 中以 {@link #rhs(int)} 读取产生式体的属性,
+ * 并把头部的属性写到 {@link #head()} 一行 (即产生式体的第一行), 之后驱动程序弹出其余各行.
+ * <br>
+ * 各观察者只写自己的列, 因此可以共用一个栈; 单产生式的规约不改变任何一行, 只是原样传递属性的观察者可以不关心它.
+ * 压栈, 规约与读写都不分配对象, 只有第一次见到某个单词文本时会为它登记一个编号.
+ */
+public final class AttributeStack {
+    public static final int NONE = -1;
+
+    private int[] types = new int[64];
+    private int[] symbols = new int[64];
+    private int[] values = new int[64];
+    private int size = 0;
+    //当前规约的产生式体的第一行
+    private int base = 0;
+
+    //单词文本与其编号
+    private final HashMap<String, Integer> symbolIds = new HashMap<>();
+    private final List<String> symbolTexts = new ArrayList<>();
+
+    /**
+     * @return 栈中的行数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 栈顶一行, 移入单词时即为该单词所在的行
+     */
+    public int top() {
+        return size - 1;
+    }
+
+    /**
+     * @param i 产生式体中符号的位置, 从 1 开始, 同动作文件中的 $i
+     * @return 当前规约的产生式体中第 i 个符号所在的行
+     */
+    public int rhs(int i) {
+        return base + i - 1;
+    }
+
+    /**
+     * @return 当前规约的产生式头部所在的行
+     */
+    public int head() {
+        return base;
+    }
+
+    public int type(int row) {
+        return types[row];
+    }
+
+    public void setType(int row, int type) {
+        types[row] = type;
+    }
+
+    public int symbol(int row) {
+        return symbols[row];
+    }
+
+    /**
+     * @return 该行单词的文本, 没有文本的行为 null
+     */
+    public String text(int row) {
+        return symbols[row] == NONE ? null : symbolTexts.get(symbols[row]);
+    }
+
+    public int value(int row) {
+        return values[row];
+    }
+
+    public void setValue(int row, int value) {
+        values[row] = value;
+    }
+
+    /**
+     * @return 登记过的单词文本的个数, 符号编号都小于它
+     */
+    public int symbolCount() {
+        return symbolTexts.size();
+    }
+
+    /**
+     * 把 from 一行的所有列复制到 to 一行
+     */
+    public void copy(int from, int to) {
+        types[to] = types[from];
+        symbols[to] = symbols[from];
+        values[to] = values[from];
+    }
+
+    /**
+     * 移入单词: 压入一行, 其中只有符号编号
+     */
+    void shift(Token token) {
+        final var text = token.getText();
+        var symbol = NONE;
+        if (!text.isEmpty()) {
+            final var id = symbolIds.get(text);
+            if (id != null) {
+                symbol = id;
+            } else {
+                symbol = symbolTexts.size();
+                symbolIds.put(text, symbol);
+                symbolTexts.add(text);
+            }
+        }
+        push(symbol);
+    }
+
+    /**
+     * 压入之前保存的一行, 例如增量分析中被重用的子树的属性
+     */
+    void restore(int type, int symbol, int value) {
+        push(symbol);
+        types[size - 1] = type;
+        values[size - 1] = value;
+    }
+
+    /**
+     * 开始规约: 确定产生式体所在的各行, 空产生式为头部压入一行
+     */
+    void beginReduce(int length) {
+        if (length == 0) {
+            push(NONE);
+            base = size - 1;
+        } else {
+            base = size - length;
+        }
+    }
+
+    /**
+     * 结束规约: 弹出产生式体中第一行以外的各行, 留下头部
+     */
+    void endReduce() {
+        size = base + 1;
+    }
+
+    /**
+     * 分析结束后清空栈, 以便下一次分析
+     */
+    void clear() {
+        size = 0;
+        base = 0;
+    }
+
+    private void push(int symbol) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            symbols = Arrays.copyOf(symbols, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        types[size] = NONE;
+        symbols[size] = symbol;
+        values[size] = NONE;
+        size++;
+    }
+}
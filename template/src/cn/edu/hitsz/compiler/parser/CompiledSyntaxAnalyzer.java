@@ -0,0 +1,219 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 由 {@link cn.edu.hitsz.compiler.parser.table.ParserCodeGenerator} 生成的 LR 语法分析器的基类
+ * <br>
+ * 生成的子类把分析表的 ACTION 部分直接编译成了代码: 每个状态一个方法, 按向前看符号的序号 switch 出写死的移入/规约动作,
+ * 每个产生式一个规约方法与一个可覆盖的语义钩子. 本类只提供这些代码所需的 int 状态栈, 属性栈与通知观察者的操作;
+ * GOTO 与单产生式规约链仍查询 LR 表中的平铺数组.
+ * <br>
+ * 观察者按其 isInterestedIn 绑定到产生式与词法单元种类上, 默认规约与单产生式规约链的处理都与 {@link SyntaxAnalyzer#run()} 相同,
+ * 因此观察者收到的事件序列 (包括其中的 Status 对象) 与 SyntaxAnalyzer 完全一致, 可以直接替换后者使用.
+ * 生成代码时所用的 LR 表须通过 loadLRTable 传入.
+ */
+public abstract class CompiledSyntaxAnalyzer {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private final AttributeStack attributes = new AttributeStack();
+    //以产生式编号与词法单元种类的序号为下标的处理函数表
+    private final ReduceHandler[][] reduceHandlers;
+    private final ShiftHandler[][] shiftHandlers;
+    private final List<Token> tokens = new ArrayList<>();
+    private LRTable table;
+
+    //每个单词的终结符序号
+    private int[] terminals;
+    private int position;
+    private int[] stack = new int[64];
+    private int top = -1;
+
+    protected CompiledSyntaxAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.reduceHandlers = new ReduceHandler[GrammarInfo.getProductionsInOrder().size() + 1][];
+        this.shiftHandlers = new ShiftHandler[TokenKind.allInOrdinalOrder().size()][];
+        Arrays.fill(reduceHandlers, new ReduceHandler[0]);
+        Arrays.fill(shiftHandlers, new ShiftHandler[0]);
+    }
+
+    /**
+     * 注册新的观察者, 其 whenReduce/whenShift 按 isInterestedIn 绑定, 见 {@link SyntaxAnalyzer#registerObserver(ActionObserver)}
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+        observer.setAttributeStack(attributes);
+
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (observer.isInterestedIn(production)) {
+                final var handlers = reduceHandlers[production.index()];
+                reduceHandlers[production.index()] = Arrays.copyOf(handlers, handlers.length + 1);
+                reduceHandlers[production.index()][handlers.length] = observer::whenReduce;
+            }
+        }
+
+        for (final var kind : TokenKind.allInOrdinalOrder()) {
+            if (observer.isInterestedIn(kind)) {
+                final var handlers = shiftHandlers[kind.getOrdinal()];
+                shiftHandlers[kind.getOrdinal()] = Arrays.copyOf(handlers, handlers.length + 1);
+                shiftHandlers[kind.getOrdinal()][handlers.length] = observer::whenShift;
+            }
+        }
+    }
+
+    public void loadTokens(Iterable<Token> tokens) {
+        tokens.forEach(this.tokens::add);
+    }
+
+    public void loadLRTable(LRTable table) {
+        this.table = table;
+    }
+
+    public void run() {
+        terminals = tokens.stream().mapToInt(token -> token.getKind().getOrdinal()).toArray();
+        position = 0;
+        top = -1;
+        parse();
+    }
+
+    /**
+     * 由生成的代码实现的分析过程
+     */
+    protected abstract void parse();
+
+    /**
+     * 单产生式规约链中的产生式规约时调用, 由生成的代码分派给该产生式的语义钩子
+     *
+     * @param state      规约该产生式时栈顶的状态编号, 与逐个规约时相同
+     * @param production 链中的产生式编号
+     */
+    protected abstract void whenChainReduce(int state, int production);
+
+    /**
+     * @return 当前词法单元的终结符序号, 见 {@link TokenKind#getOrdinal()}
+     */
+    protected final int lookahead() {
+        return terminals[position];
+    }
+
+    /**
+     * @return 状态栈栈顶的状态编号
+     */
+    protected final int top() {
+        return stack[top];
+    }
+
+    protected final void push(int state) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = state;
+    }
+
+    /**
+     * 移入当前词法单元并转移到 target 状态
+     */
+    protected final void shift(int state, int target) {
+        final var token = tokens.get(position);
+        attributes.shift(token);
+        final var handlers = shiftHandlers[terminals[position]];
+        if (handlers.length > 0) {
+            final var status = table.getStatus(state);
+            for (final var handler : handlers) {
+                handler.handle(status, token);
+            }
+        }
+
+        position++;
+        push(target);
+    }
+
+    /**
+     * 开始规约一个产生式体有 length 个符号的产生式, 之后调用其语义钩子, 最后调用 {@link #endReduce(int, int)}
+     */
+    protected final void beginReduce(int length) {
+        attributes.beginReduce(length);
+    }
+
+    /**
+     * 通知绑定在该产生式上的观察者, 是语义钩子的默认实现
+     *
+     * @param state      当前状态编号
+     * @param production 产生式编号
+     */
+    protected final void notifyReduce(int state, int production) {
+        final var handlers = reduceHandlers[production];
+        if (handlers.length > 0) {
+            final var status = table.getStatus(state);
+            final var reduced = GrammarInfo.getProduction(production);
+            for (final var handler : handlers) {
+                handler.handle(status, reduced);
+            }
+        }
+    }
+
+    /**
+     * 结束规约: 弹出产生式体对应的 length 个状态, 再按 GOTO 表转移
+     *
+     * @param length      产生式体的长度
+     * @param headOrdinal 产生式头部的非终结符序号
+     */
+    protected final void endReduce(int length, int headOrdinal) {
+        attributes.endReduce();
+        top -= length;
+        final var target = table.getGoto(stack[top], headOrdinal);
+        if (target < 0) {
+            gotoError(stack[top]);
+        }
+        push(target);
+    }
+
+    /**
+     * 规约单符号产生式, 连同其后在同一个向前看符号下连续发生的单产生式规约一次完成, 与 SyntaxAnalyzer 相同
+     *
+     * @param state      当前状态编号
+     * @param production 产生式编号, 其产生式体只有一个符号
+     */
+    protected final void chainReduce(int state, int production) {
+        final var below = stack[top - 1];
+        final var chain = table.getChainReduction(below, production, terminals[position]);
+        attributes.beginReduce(1);
+        final var productions = chain.productions();
+        for (int i = 0; i < productions.size(); i++) {
+            whenChainReduce(chain.stateAt(i, state), productions.get(i).index());
+        }
+        attributes.endReduce();
+
+        if (chain.target().isError()) {
+            gotoError(below);
+        }
+        stack[top] = chain.target().index();
+    }
+
+    protected final void accept(int state) {
+        final var status = table.getStatus(state);
+        for (final var observer : observers) {
+            observer.whenAccept(status);
+        }
+        attributes.clear();
+    }
+
+    protected final void error(int state) {
+        throw new RuntimeException("Unexpected token %s at status %d".formatted(tokens.get(position), state));
+    }
+
+    protected final void gotoError(int state) {
+        throw new RuntimeException("No goto from status %d".formatted(state));
+    }
+}
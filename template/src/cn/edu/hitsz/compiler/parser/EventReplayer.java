@@ -0,0 +1,76 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+
+import java.util.List;
+
+/**
+ * 把编码后的分析事件通知给单个观察者, 供 {@link ParseEventLog} 与 {@link ParseEventRing} 共用, 事件的编码见 ParseEventLog
+ * <br>
+ * 与驱动程序的处理函数表一样, 只通知观察者关心的产生式与词法单元; 属性栈则对每个事件都维护, 观察者独占该属性栈
+ */
+final class EventReplayer {
+    EventReplayer(ActionObserver observer, List<Token> tokens, LRTable table) {
+        this(observer, tokens, table, new AttributeStack());
+    }
+
+    /**
+     * @param attributes 观察者使用的属性栈, 由调用者在多次分析之间保留时使用, 例如增量分析
+     */
+    EventReplayer(ActionObserver observer, List<Token> tokens, LRTable table, AttributeStack attributes) {
+        this.observer = observer;
+        this.tokens = tokens;
+        this.table = table;
+        this.attributes = attributes;
+        this.bodyLengths = GrammarInfo.getBodyLengths();
+        observer.setAttributeStack(attributes);
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        this.reduceWanted = new boolean[productions.size() + 1];
+        for (final var production : productions) {
+            reduceWanted[production.index()] = observer.isInterestedIn(production);
+        }
+
+        final var kinds = TokenKind.allInOrdinalOrder();
+        this.shiftWanted = new boolean[kinds.size()];
+        for (final var kind : kinds) {
+            shiftWanted[kind.getOrdinal()] = observer.isInterestedIn(kind);
+        }
+    }
+
+    /**
+     * @param event 移入或规约事件
+     * @param state 发生该事件时的状态编号
+     */
+    void replay(int event, int state) {
+        if ((event & 1) == 0) {
+            final var token = tokens.get(event >>> 1);
+            attributes.shift(token);
+            if (shiftWanted[token.getKind().getOrdinal()]) {
+                observer.whenShift(table.getStatus(state), token);
+            }
+        } else {
+            attributes.beginReduce(bodyLengths[event >>> 1]);
+            if (reduceWanted[event >>> 1]) {
+                observer.whenReduce(table.getStatus(state), GrammarInfo.getProduction(event >>> 1));
+            }
+            attributes.endReduce();
+        }
+    }
+
+    void accept(int state) {
+        observer.whenAccept(table.getStatus(state));
+        attributes.clear();
+    }
+
+    private final ActionObserver observer;
+    private final List<Token> tokens;
+    private final LRTable table;
+    private final int[] bodyLengths;
+    private final AttributeStack attributes;
+    private final boolean[] reduceWanted;
+    private final boolean[] shiftWanted;
+}
@@ -0,0 +1,136 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.ir.IRBuffer;
+import cn.edu.hitsz.compiler.ir.IRVariableFactory;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.List;
+
+/**
+ * 语义检查与 IR 生成合一的观察者
+ * <br>
+ * 语义检查与 IR 生成总是一起进行, 分别注册 {@link SemanticAnalyzer} 与 {@link IRGenerator} 时驱动程序要为每个事件分派两次.
+ * 该观察者只注册一次, 在同一个 whenShift/whenReduce 中先做语义检查, 再生成 IR, 两者的属性写在同一个属性栈的不同列中.
+ * 只需要检查而不需要 IR 时可以关闭 IR 生成, 此时的开销与单独的 SemanticAnalyzer 相同.
+ */
+public class FrontEndAnalyzer implements ActionObserver {
+    private final SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer();
+    //关闭 IR 生成时为 null
+    private final IRGenerator irGenerator;
+    //以产生式编号为下标, 规约时是否需要语义检查与生成 IR
+    private final boolean[] checkWanted;
+    private final boolean[] emitWanted;
+
+    public FrontEndAnalyzer() {
+        this(true);
+    }
+
+    /**
+     * @param emitIR 是否生成 IR, 为 false 时只做语义检查
+     */
+    public FrontEndAnalyzer(boolean emitIR) {
+        this.irGenerator = emitIR ? new IRGenerator() : null;
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        this.checkWanted = new boolean[productions.size() + 1];
+        this.emitWanted = new boolean[productions.size() + 1];
+        for (final var production : productions) {
+            checkWanted[production.index()] = semanticAnalyzer.isInterestedIn(production);
+            emitWanted[production.index()] = irGenerator != null && irGenerator.isInterestedIn(production);
+        }
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        semanticAnalyzer.whenShift(currentStatus, currentToken);
+        if (irGenerator != null) {
+            irGenerator.whenShift(currentStatus, currentToken);
+        }
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        // 先检查再生成, 类型错误的语句不会生成 IR
+        if (checkWanted[production.index()]) {
+            semanticAnalyzer.whenReduce(currentStatus, production);
+        }
+        if (emitWanted[production.index()]) {
+            irGenerator.whenReduce(currentStatus, production);
+        }
+    }
+
+    @Override
+    public boolean isInterestedIn(Production production) {
+        return checkWanted[production.index()] || emitWanted[production.index()];
+    }
+
+    @Override
+    public boolean isInterestedIn(TokenKind kind) {
+        return semanticAnalyzer.isInterestedIn(kind) || (irGenerator != null && irGenerator.isInterestedIn(kind));
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        semanticAnalyzer.whenAccept(currentStatus);
+        if (irGenerator != null) {
+            irGenerator.whenAccept(currentStatus);
+        }
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        semanticAnalyzer.setSymbolTable(table);
+        if (irGenerator != null) {
+            irGenerator.setSymbolTable(table);
+        }
+    }
+
+    @Override
+    public void setAttributeStack(AttributeStack attributes) {
+        semanticAnalyzer.setAttributeStack(attributes);
+        if (irGenerator != null) {
+            irGenerator.setAttributeStack(attributes);
+        }
+    }
+
+    /**
+     * @return 生成的 IR
+     * @throws RuntimeException 关闭了 IR 生成
+     */
+    public List<Instruction> getIR() {
+        return requireIRGenerator().getIR();
+    }
+
+    /**
+     * @return 以紧凑形式存放的生成的 IR
+     * @throws RuntimeException 关闭了 IR 生成
+     */
+    public IRBuffer getIRBuffer() {
+        return requireIRGenerator().getIRBuffer();
+    }
+
+    /**
+     * @return 创建 IR 变量所用的工厂
+     * @throws RuntimeException 关闭了 IR 生成
+     */
+    public IRVariableFactory getVariables() {
+        return requireIRGenerator().getVariables();
+    }
+
+    public void dumpIR(String path) {
+        requireIRGenerator().dumpIR(path);
+    }
+
+    private IRGenerator requireIRGenerator() {
+        if (irGenerator == null) {
+            throw new RuntimeException("IR emission is disabled for this FrontEndAnalyzer");
+        }
+        return irGenerator;
+    }
+}
@@ -0,0 +1,567 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.*;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.*;
+
+/**
+ * GLR 语法分析驱动程序
+ * <br>
+ * 与 {@link SyntaxAnalyzer} 的公有接口相同, 但可以使用以 {@code new TableGenerator(mode, true)} 构造的、保留了动作冲突的 LR 表
+ * (表与 {@link TableGenerator#getConflicts()} 一起以 {@link #loadLRTable(LRTable, ActionConflicts)} 加载),
+ * 因此能够分析有二义性的文法 (例如不分优先级的 E -> E + E | E * E | id).
+ * <br>
+ * 分析分为两种模式:
+ * <ul>
+ *     <li>确定模式: 栈顶状态在当前向前看符号下至多只有一个动作时, 与普通 LR 驱动程序完全相同, 用一个状态栈分析并立即通知观察者;</li>
+ *     <li>GLR 模式: 遇到冲突后, 以图结构栈 (GSS) 同时维护所有可能的分析栈, 并把规约结果记录在共享压缩分析森林 (SPPF) 中.
+ *     一旦所有分析栈重新合并为一条线性的栈, 就把森林中尚未通知的移入与规约按 LR 的顺序补发给观察者, 回到确定模式.</li>
+ * </ul>
+ * 对于无冲突的输入, 分析全程处于确定模式, 开销与 SyntaxAnalyzer 基本相同.
+ * <br>
+ * 当输入确实有二义性时, 森林中的每个有多种推导的结点都取最先得到的推导来通知观察者, 有多少处这样的选择可以通过 {@link #getAmbiguityCount()} 获得.
+ */
+public class GLRSyntaxAnalyzer {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    // 以产生式编号与词法单元种类的序号为下标的处理函数表, 与 SyntaxAnalyzer 相同
+    private final ReduceHandler[][] reduceHandlers;
+    private final ShiftHandler[][] shiftHandlers;
+    private final AttributeStack attributes = new AttributeStack();
+    private final List<Token> tokens = new ArrayList<>();
+    private LRTable table;
+    private ActionConflicts conflicts = ActionConflicts.none();
+
+    // 确定模式下的状态栈; 进入 GLR 模式后, 其中的状态按需转换为 GSS 结点, 缓存在 stackNodes 中
+    private final List<Status> stack = new ArrayList<>();
+    private final List<Node> stackNodes = new ArrayList<>();
+    private int position;
+    private int ambiguityCount;
+    private int[] headOrdinals;
+    private int[] bodyLengths;
+
+    public GLRSyntaxAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.reduceHandlers = new ReduceHandler[GrammarInfo.getProductionsInOrder().size() + 1][];
+        this.shiftHandlers = new ShiftHandler[TokenKind.allInOrdinalOrder().size()][];
+        Arrays.fill(reduceHandlers, new ReduceHandler[0]);
+        Arrays.fill(shiftHandlers, new ShiftHandler[0]);
+    }
+
+    /**
+     * 注册新的观察者
+     * <br>
+     * 与 {@link SyntaxAnalyzer#registerObserver(ActionObserver)} 相同, 观察者按其 isInterestedIn 被绑定到它所关心的产生式与词法单元种类上.
+     * 确定模式下的通知与合并时补发的通知都经由同一张处理函数表分派.
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+        observer.setAttributeStack(attributes);
+
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (observer.isInterestedIn(production)) {
+                registerReduceHandler(production, observer::whenReduce);
+            }
+        }
+
+        for (final var kind : TokenKind.allInOrdinalOrder()) {
+            if (observer.isInterestedIn(kind)) {
+                registerShiftHandler(kind, observer::whenShift);
+            }
+        }
+    }
+
+    /**
+     * 为某个产生式绑定规约处理函数, 同一产生式上的多个处理函数按注册顺序调用
+     *
+     * @param production 产生式
+     * @param handler    规约该产生式时调用的处理函数
+     */
+    public void registerReduceHandler(Production production, ReduceHandler handler) {
+        final var handlers = reduceHandlers[production.index()];
+        reduceHandlers[production.index()] = Arrays.copyOf(handlers, handlers.length + 1);
+        reduceHandlers[production.index()][handlers.length] = handler;
+    }
+
+    /**
+     * 为某种词法单元绑定移入处理函数, 同种词法单元上的多个处理函数按注册顺序调用
+     *
+     * @param kind    词法单元的种类
+     * @param handler 移入该种词法单元时调用的处理函数
+     */
+    public void registerShiftHandler(TokenKind kind, ShiftHandler handler) {
+        final var handlers = shiftHandlers[kind.getOrdinal()];
+        shiftHandlers[kind.getOrdinal()] = Arrays.copyOf(handlers, handlers.length + 1);
+        shiftHandlers[kind.getOrdinal()][handlers.length] = handler;
+    }
+
+    public void loadTokens(Iterable<Token> tokens) {
+        tokens.forEach(this.tokens::add);
+    }
+
+    public void loadLRTable(LRTable table) {
+        loadLRTable(table, ActionConflicts.none());
+    }
+
+    /**
+     * 加载保留了冲突的 LR 表
+     *
+     * @param table     LR 表
+     * @param conflicts 表中各单元格之外的冲突动作
+     */
+    public void loadLRTable(LRTable table, ActionConflicts conflicts) {
+        this.table = table;
+        this.conflicts = conflicts;
+    }
+
+    public void run() {
+        headOrdinals = GrammarInfo.getHeadOrdinals();
+        bodyLengths = GrammarInfo.getBodyLengths();
+        stack.clear();
+        stackNodes.clear();
+        stack.add(table.getInit());
+        position = 0;
+        ambiguityCount = 0;
+
+        while (!runDeterministically()) {
+            if (runGeneralized()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 上次分析中, 因输入有二义性而不得不在多种推导中选择其一的次数
+     */
+    public int getAmbiguityCount() {
+        return ambiguityCount;
+    }
+
+    /**
+     * 以普通 LR 的方式分析, 直到接受或遇到冲突
+     *
+     * @return 是否已接受; 返回 false 表示遇到了冲突, 需要进入 GLR 模式
+     */
+    private boolean runDeterministically() {
+        while (true) {
+            final var status = stack.get(stack.size() - 1);
+            final var token = tokens.get(position);
+            if (conflicts.hasConflicts(status) && !conflicts.getOthers(status, token.getKind()).isEmpty()) {
+                return false;
+            }
+
+            var code = table.getEncodedDefaultReduction(status.index());
+            if (code == Action.ENCODED_ERROR) {
+                code = table.getEncodedAction(status.index(), token.getKind().getOrdinal());
+            }
+
+            switch (Action.kindOf(code)) {
+                case Shift -> {
+                    notifyShift(status, token);
+                    stack.add(table.getStatus(Action.operandOf(code)));
+                    position++;
+                }
+
+                case Reduce -> {
+                    final var production = GrammarInfo.getProduction(Action.operandOf(code));
+                    notifyReduce(status, production);
+                    truncateStack(stack.size() - bodyLengths[production.index()]);
+
+                    final var below = stack.get(stack.size() - 1);
+                    final var goto_ = table.getGoto(below.index(), headOrdinals[production.index()]);
+                    if (goto_ < 0) {
+                        throw new RuntimeException("No goto from status %s on %s".formatted(below, production.head()));
+                    }
+                    stack.add(table.getStatus(goto_));
+                }
+
+                case Accept -> {
+                    notifyAccept(status);
+                    return true;
+                }
+
+                case Error -> throw new RuntimeException("Unexpected token %s at status %s".formatted(token, status));
+            }
+        }
+    }
+
+    /**
+     * 以 GLR 的方式分析, 直到接受或所有分析栈重新合并为一条线性的栈
+     *
+     * @return 是否已接受; 返回 false 表示可以回到确定模式
+     */
+    private boolean runGeneralized() {
+        final var bottom = stackNode(stack.size() - 1);
+        var frontier = new LinkedHashMap<Status, Node>();
+        frontier.put(bottom.status, bottom);
+
+        while (true) {
+            final var token = tokens.get(position);
+            final var lookahead = token.getKind();
+            reduceAll(frontier, lookahead);
+
+            for (final var node : frontier.values()) {
+                if (actionsOf(node.status, lookahead).contains(Action.accept())) {
+                    collapse(node, false);
+                    notifyAccept(node.status);
+                    return true;
+                }
+            }
+
+            // 所有栈顶一起移入当前词法单元, 转移到同一状态的栈顶合并为同一个结点
+            final var next = new LinkedHashMap<Status, Node>();
+            TokenLeaf leaf = null;
+            for (final var node : frontier.values()) {
+                for (final var action : actionsOf(node.status, lookahead)) {
+                    if (action.getKind() != Action.ActionKind.Shift) {
+                        continue;
+                    }
+
+                    if (leaf == null) {
+                        leaf = new TokenLeaf(position, node.status);
+                    }
+                    next.computeIfAbsent(action.getStatus(), Node::new).addLink(new Link(node, leaf));
+                }
+            }
+
+            if (next.isEmpty()) {
+                throw new RuntimeException("Unexpected token %s at status %s".formatted(token, frontier.keySet()));
+            }
+
+            position++;
+            frontier = next;
+            if (frontier.size() == 1 && collapse(frontier.values().iterator().next(), true)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 在当前向前看符号下, 对所有栈顶反复执行规约, 直到不再产生新的栈顶或新的边
+     */
+    private void reduceAll(Map<Status, Node> frontier, TokenKind lookahead) {
+        final var pending = new ArrayDeque<>(frontier.values());
+        final var processed = new LinkedHashSet<Node>();
+        final var symbols = new HashMap<SymbolKey, SymbolNode>();
+
+        while (!pending.isEmpty()) {
+            final var node = pending.poll();
+            processed.add(node);
+
+            for (final var action : actionsOf(node.status, lookahead)) {
+                if (action.getKind() == Action.ActionKind.Reduce) {
+                    reduceVia(node, action.getProduction(), null, frontier, pending, processed, symbols, lookahead);
+                }
+            }
+        }
+    }
+
+    /**
+     * 沿 node 往下所有长度为产生式体长度的路径执行规约
+     * <br>
+     * 规约只会向 frontier 与 pending 中加入结点, 不会改变 processed, 因此可以在递归中直接遍历 processed
+     *
+     * @param required 若非 null, 则只对经过这条边的路径执行规约 (用于新加入的边)
+     */
+    private void reduceVia(Node node, Production production, Link required, Map<Status, Node> frontier,
+                           Deque<Node> pending, Set<Node> processed, Map<SymbolKey, SymbolNode> symbols,
+                           TokenKind lookahead) {
+        final var length = production.body().size();
+        final var paths = new ArrayList<Path>();
+        collectPaths(node, new ForestNode[length], length, required == null, required, paths);
+
+        for (final var path : paths) {
+            final var start = path.start();
+            final var target = start.status.getGoto(production.head());
+            if (target.isError()) {
+                continue;
+            }
+
+            final var symbol = symbols.computeIfAbsent(new SymbolKey(production.head(), start), key -> new SymbolNode());
+            symbol.addAlternative(new Packed(production, node.status, path.children()));
+
+            final var existing = frontier.get(target);
+            if (existing == null) {
+                final var created = new Node(target);
+                created.addLink(new Link(start, symbol));
+                frontier.put(target, created);
+                pending.add(created);
+                continue;
+            }
+
+            // 从同一个起点规约出同一个非终结符, 只会落在同一个状态上, 此时只是为该符号增加了一种推导
+            linksOf(existing);
+            if (existing.hasLinkTo(start)) {
+                continue;
+            }
+
+            final var link = new Link(start, symbol);
+            existing.addLink(link);
+
+            // 已经处理过的栈顶需要沿着新加入的边重新规约; 空产生式规约出的边可能使其他栈顶的路径也经过这条新边
+            if (processed.contains(existing)) {
+                for (final var other : processed) {
+                    for (final var action : actionsOf(other.status, lookahead)) {
+                        if (action.getKind() == Action.ActionKind.Reduce) {
+                            reduceVia(other, action.getProduction(), link, frontier, pending, processed, symbols, lookahead);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 状态在该向前看符号下的所有动作, 包括冲突的动作, 不含错误动作
+     */
+    private List<Action> actionsOf(Status status, TokenKind lookahead) {
+        final var primary = status.getAction(lookahead);
+        if (primary.getKind() == Action.ActionKind.Error) {
+            return List.of();
+        }
+
+        final var others = conflicts.getOthers(status, lookahead);
+        if (others.isEmpty()) {
+            return List.of(primary);
+        }
+
+        final var actions = new ArrayList<Action>(others.size() + 1);
+        actions.add(primary);
+        actions.addAll(others);
+        return actions;
+    }
+
+    private void collectPaths(Node node, ForestNode[] children, int remaining, boolean satisfied, Link required,
+                              List<Path> paths) {
+        if (remaining == 0) {
+            if (satisfied) {
+                paths.add(new Path(node, children.clone()));
+            }
+            return;
+        }
+
+        for (final var link : linksOf(node)) {
+            children[remaining - 1] = link.symbol;
+            collectPaths(link.to, children, remaining - 1, satisfied || link == required, required, paths);
+        }
+    }
+
+    /**
+     * 将 top 往下直到确定模式状态栈中的部分合并回状态栈, 并按顺序补发其中尚未通知观察者的移入与规约
+     *
+     * @param top          GSS 的栈顶
+     * @param mustBeLinear 为 true 时, 若途中有结点存在多条边 (即存在多种分析栈), 则放弃合并
+     * @return 是否已合并
+     */
+    private boolean collapse(Node top, boolean mustBeLinear) {
+        final var chain = new ArrayList<Node>();
+        var node = top;
+        while (node.stackIndex < 0) {
+            final var links = linksOf(node);
+            if (links.size() != 1) {
+                if (mustBeLinear) {
+                    return false;
+                }
+                ambiguityCount++;
+            }
+
+            chain.add(node);
+            node = links.get(0).to;
+        }
+
+        // 进入 GLR 模式时位于栈顶的结点也可能被加上新的边
+        if (node.links.size() > (node.linkedBelow ? 1 : 0)) {
+            if (mustBeLinear) {
+                return false;
+            }
+            ambiguityCount++;
+        }
+
+        // 合并后状态栈的内容发生了变化, 之前按需建立的结点 (及其上新加入的边) 都不再有效
+        stackNodes.clear();
+        truncateStack(node.stackIndex + 1);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            replay(chain.get(i).links.get(0).symbol);
+            stack.add(chain.get(i).status);
+        }
+
+        return true;
+    }
+
+    /**
+     * 按 LR 分析的顺序 (即推导树的后序) 通知观察者 root 下的所有移入与规约
+     */
+    private void replay(ForestNode root) {
+        final var work = new ArrayDeque<Object>();
+        work.push(root);
+
+        while (!work.isEmpty()) {
+            final var item = work.pop();
+            if (item instanceof TokenLeaf leaf) {
+                notifyShift(leaf.status, tokens.get(leaf.position));
+            } else if (item instanceof SymbolNode symbol) {
+                if (symbol.alternatives.size() > 1) {
+                    ambiguityCount++;
+                }
+
+                final var chosen = symbol.alternatives.get(0);
+                // 规约在其所有子结点之后通知, 子结点按从左到右的顺序出栈
+                work.push(chosen);
+                for (int i = chosen.children.length - 1; i >= 0; i--) {
+                    work.push(chosen.children[i]);
+                }
+            } else if (item instanceof Packed packed) {
+                notifyReduce(packed.status, packed.production);
+            }
+        }
+    }
+
+    private List<Link> linksOf(Node node) {
+        // 状态栈中的结点到其下方结点的边在第一次用到时才建立
+        if (node.stackIndex > 0 && !node.linkedBelow) {
+            final var below = stackNode(node.stackIndex - 1);
+            node.links.add(0, new Link(below, Notified.INSTANCE));
+            node.linkTargets.add(below);
+            node.linkedBelow = true;
+        }
+
+        return node.links;
+    }
+
+    private Node stackNode(int index) {
+        while (stackNodes.size() <= index) {
+            stackNodes.add(null);
+        }
+
+        var node = stackNodes.get(index);
+        if (node == null) {
+            node = new Node(stack.get(index), index);
+            stackNodes.set(index, node);
+        }
+
+        return node;
+    }
+
+    private void truncateStack(int size) {
+        stack.subList(size, stack.size()).clear();
+    }
+
+    private void notifyShift(Status status, Token token) {
+        attributes.shift(token);
+        for (final var handler : shiftHandlers[token.getKind().getOrdinal()]) {
+            handler.handle(status, token);
+        }
+    }
+
+    private void notifyReduce(Status status, Production production) {
+        attributes.beginReduce(production.body().size());
+        for (final var handler : reduceHandlers[production.index()]) {
+            handler.handle(status, production);
+        }
+        attributes.endReduce();
+    }
+
+    private void notifyAccept(Status status) {
+        for (final var observer : observers) {
+            observer.whenAccept(status);
+        }
+        attributes.clear();
+    }
+
+    /**
+     * GSS 中的结点. 来自确定模式状态栈的结点记录其在栈中的下标, 其余结点的下标为 -1
+     */
+    private static final class Node {
+        private final Status status;
+        private final int stackIndex;
+        private final List<Link> links = new ArrayList<>(1);
+        // links 中各边指向的结点, 以结点本身判等, 用于判断两结点之间是否已有边
+        private final Set<Node> linkTargets = new HashSet<>(2);
+        private boolean linkedBelow;
+
+        private Node(Status status) {
+            this(status, -1);
+        }
+
+        private Node(Status status, int stackIndex) {
+            this.status = status;
+            this.stackIndex = stackIndex;
+        }
+
+        private void addLink(Link link) {
+            links.add(link);
+            linkTargets.add(link.to);
+        }
+
+        private boolean hasLinkTo(Node node) {
+            return linkTargets.contains(node);
+        }
+    }
+
+    /**
+     * GSS 中的边, 指向栈中的下一个结点, 并带有该段对应的文法符号在森林中的结点
+     */
+    private record Link(Node to, ForestNode symbol) {
+    }
+
+    private record Path(Node start, ForestNode[] children) {
+    }
+
+    private record SymbolKey(NonTerminal head, Node start) {
+    }
+
+    /**
+     * SPPF 中的结点
+     */
+    private sealed interface ForestNode permits TokenLeaf, SymbolNode, Notified {
+    }
+
+    /**
+     * 移入的词法单元. status 为移入它的 (第一个) 栈顶状态
+     */
+    private record TokenLeaf(int position, Status status) implements ForestNode {
+    }
+
+    /**
+     * 确定模式中已经通知过观察者的文法符号
+     */
+    private enum Notified implements ForestNode {
+        INSTANCE
+    }
+
+    /**
+     * 规约出的非终结符, 可能有多种推导
+     */
+    private static final class SymbolNode implements ForestNode {
+        private final List<Packed> alternatives = new ArrayList<>(1);
+
+        private void addAlternative(Packed packed) {
+            if (!alternatives.contains(packed)) {
+                alternatives.add(packed);
+            }
+        }
+    }
+
+    /**
+     * 非终结符的一种推导: 以 status 状态下规约 production 得到, 产生式体各符号对应 children
+     */
+    private record Packed(Production production, Status status, ForestNode[] children) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Packed packed
+                && packed.production.equals(production)
+                && Arrays.equals(packed.children, children);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(production, Arrays.hashCode(children));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package cn.edu.hitsz.compiler.parser;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注实现某个语义动作的方法, 语义动作由动作文件中的名字引用, 见 {@link AttributeGrammar}
+ * <br>
+ * 方法的参数依次是动作文件中列出的各个产生式体符号的属性, 返回值是产生式头部的属性; 头部没有属性时声明为 void.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface GrammarAction {
+    /**
+     * @return 动作文件中引用该动作的名字
+     */
+    String value();
+}
@@ -1,25 +1,27 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
+import cn.edu.hitsz.compiler.ir.IRBuffer;
+import cn.edu.hitsz.compiler.ir.IRBuilder;
+import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariableFactory;
 import cn.edu.hitsz.compiler.ir.Instruction;
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
-import cn.edu.hitsz.compiler.parser.table.Term;
-import cn.edu.hitsz.compiler.symtab.SourceCodeType;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.util.LinkedList;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
 import static cn.edu.hitsz.compiler.ir.IRImmediate.of;
-import static cn.edu.hitsz.compiler.ir.IRVariable.named;
-import static cn.edu.hitsz.compiler.ir.IRVariable.temp;
-import static cn.edu.hitsz.compiler.ir.Instruction.*;
 
 // TODO: 实验三: 实现 IR 生成
 
@@ -29,176 +31,180 @@ import static cn.edu.hitsz.compiler.ir.Instruction.*;
 
 public class IRGenerator implements ActionObserver {
     private SymbolTable symbolTable;
-    private final Stack<TermThis> propertiesStack = new Stack<>();
-    private final List<Instruction> instructionsList = new LinkedList<>();
+    //本次编译的 IR 变量都由它创建, 编号稠密
+    private final IRVariableFactory variables;
+    //驱动程序维护的属性栈: id 的属性是同名的 IR 变量, IntConst 的属性是 IR 立即数, 非终结符的属性是存放其值的 IR 值,
+    //它们都以句柄的形式写在 IR 值一列: IR 变量的句柄为其编号 * 2, 立即数的句柄为其在 immediates 中的下标 * 2 + 1
+    private AttributeStack attributes;
+    private final List<IRImmediate> immediates = new ArrayList<>();
+    //以符号编号为下标的句柄, 同一个变量名或常数只创建一次 IR 值, 还没有创建的为 NONE
+    private int[] handles = new int[0];
+    //各产生式的语义动作见 ir_actions.txt, 由下面标注了 GrammarAction 的方法实现
+    private final AttributeGrammar grammar = AttributeGrammar.load(FilePathConfig.IR_ACTIONS_PATH, MethodHandles.lookup(), this,
+        this::readerOf, this::writerOf);
+    //生成的指令以紧凑的形式存放在 IRBuffer 中
+    private final IRBuilder builder;
 
-    class TermThis extends Term {
+    static final int id = 51;
+    static final int IntConst = 52;
 
-        private String text;
-        private IRValue val;
+    public IRGenerator() {
+        this(new IRVariableFactory());
+    }
 
-        public TermThis(String termName) {
-            super(termName);
-        }
+    /**
+     * @param variables 创建 IR 变量所用的工厂
+     */
+    public IRGenerator(IRVariableFactory variables) {
+        this.variables = variables;
+        this.builder = new IRBuilder(variables);
+    }
 
-        public void setText(String name) {
-            this.text = name;
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        // TODO
+        int code = currentToken.getKind().getCode();
+        if(code != id && code != IntConst){
+            return;
         }
-
-        public void setVal(IRValue val){
-            this.val = val;
+        int row = attributes.top();
+        int symbol = attributes.symbol(row);
+        if(symbol >= handles.length){
+            int oldLength = handles.length;
+            handles = Arrays.copyOf(handles, Math.max(attributes.symbolCount(), oldLength * 2));
+            Arrays.fill(handles, oldLength, handles.length, AttributeStack.NONE);
         }
-
-        public String getText() {
-            return text;
+        if(handles[symbol] == AttributeStack.NONE){
+            handles[symbol] = handleOf(code == id ? variables.named(symbol, currentToken.getText()) : of(Integer.parseInt(currentToken.getText())));
         }
+        attributes.setValue(row, handles[symbol]);
+    }
 
-        public IRValue getVal() {
-            return val;
-        }
+    @Override
+    public boolean isInterestedIn(TokenKind kind) {
+        return kind.getCode() == id || kind.getCode() == IntConst;
+    }
 
+    private int handleOf(IRValue value) {
+        if(value instanceof IRVariable variable){
+            return variable.getId() << 1;
+        }
+        immediates.add((IRImmediate) value);
+        return ((immediates.size() - 1) << 1) | 1;
     }
 
-    static final int id = 51;
-    static final int IntConst = 52;
+    private IRValue valueOf(int handle) {
+        return (handle & 1) == 0 ? variables.get(handle >>> 1) : immediates.get(handle >>> 1);
+    }
 
-    @Override
-    public void whenShift(Status currentStatus, Token currentToken) {
-        // TODO
-        TermThis termThis = new TermThis(currentToken.getKind().getTermName());
-        int code = currentToken.getKind().getCode();
-        if(code == id){
-            termThis.setText(currentToken.getText());
-            termThis.setVal(named(currentToken.getText()));
+    //IRValue 与 IRVariable 的参数与返回值都经句柄存取 IR 值一列
+    private AttributeGrammar.AttributeReader readerOf(Class<?> type) {
+        if(type == IRValue.class || type == IRVariable.class){
+            return (stack, row) -> valueOf(stack.value(row));
         }
-        else if(code == IntConst){
-            termThis.setVal(of(Integer.parseInt(currentToken.getText())));
+        return null;
+    }
+
+    private AttributeGrammar.AttributeWriter writerOf(Class<?> type) {
+        if(type == IRValue.class){
+            return (stack, row, value) -> stack.setValue(row, handleOf((IRValue) value));
         }
-        propertiesStack.push(termThis);
+        return null;
     }
 
     @Override
     public void whenReduce(Status currentStatus, Production production) {
         // TODO
-        switch(production.index()){
-            // S -> id = E
-            case 6:
-                TermThis E6 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis id6 = propertiesStack.pop();
-                IRVariable variable6 = named(id6.getText());
-                id6.setVal(variable6);
-                TermThis S6 = new TermThis("S");
-                propertiesStack.push(S6);
-                instructionsList.add(createMov(variable6,E6.getVal()));
-                break;
-            // S -> return E
-            case 7:
-                TermThis E7 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis S7 = new TermThis("S");
-                propertiesStack.push(S7);
-                instructionsList.add(createRet(E7.getVal()));
-                break;
-            // E -> E + A
-            case 8:
-                TermThis A8 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis E8 = propertiesStack.pop();
-                IRVariable temp8 = temp();
-                instructionsList.add(createAdd(temp8,E8.getVal(),A8.getVal()));
-                E8.setVal(temp8);
-                propertiesStack.push(E8);
-                break;
-            // E -> E - A
-            case 9:
-                TermThis A9 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis E9 = propertiesStack.pop();
-                IRVariable temp9 = temp();
-                instructionsList.add(createSub(temp9,E9.getVal(),A9.getVal()));
-                E9.setVal(temp9);
-                propertiesStack.push(E9);
-                break;
-            // E -> A
-            case 10:
-                TermThis A10 = propertiesStack.pop();
-                TermThis E10 = new TermThis("E");
-                E10.setVal(A10.getVal());
-                propertiesStack.push(E10);
-                break;
-            // A -> A * B
-            case 11:
-                TermThis B11 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis A11 = propertiesStack.pop();
-                IRVariable temp11 = temp();
-                instructionsList.add(createMul(temp11,A11.getVal(),B11.getVal()));
-                A11.setVal(temp11);
-                propertiesStack.push(A11);
-                break;
-            // A -> B
-            case 12:
-                TermThis B12 = propertiesStack.pop();
-                TermThis A12 = new TermThis("A");
-                A12.setVal(B12.getVal());
-                propertiesStack.push(A12);
-                break;
-            // B -> ( E )
-            case 13:
-                propertiesStack.pop();
-                TermThis E13 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis B13 = new TermThis("B");
-                B13.setVal(E13.getVal());
-                propertiesStack.push(B13);
-                break;
-            // B -> id
-            case 14:
-                TermThis id14 = propertiesStack.pop();
-                TermThis B14 = new TermThis("B");
-                B14.setVal(id14.getVal());
-                propertiesStack.push(B14);
-                break;
-            // B -> IntConst
-            case 15:
-                TermThis IntConst15 = propertiesStack.pop();
-                TermThis B15 = new TermThis("B");
-                B15.setVal(IntConst15.getVal());
-                propertiesStack.push(B15);
-                break;
-            default:
-                for(int num = 0; num < production.body().size(); num++){
-                    propertiesStack.pop();
-                }
-                propertiesStack.push(new TermThis(production.head().getTermName()));
-                break;
-        }
+        grammar.reduce(attributes, production);
+    }
+
+    // S -> id = E
+    @GrammarAction("assign")
+    private void assign(IRVariable variable, IRValue value) {
+        builder.mov(variable,value);
+    }
+
+    // S -> return E
+    @GrammarAction("ret")
+    private void ret(IRValue value) {
+        builder.ret(value);
+    }
+
+    // E -> E + A
+    @GrammarAction("add")
+    private IRValue add(IRValue left, IRValue right) {
+        IRVariable result = variables.temp();
+        builder.add(result,left,right);
+        return result;
     }
 
+    // E -> E - A
+    @GrammarAction("sub")
+    private IRValue sub(IRValue left, IRValue right) {
+        IRVariable result = variables.temp();
+        builder.sub(result,left,right);
+        return result;
+    }
+
+    // A -> A * B
+    @GrammarAction("mul")
+    private IRValue mul(IRValue left, IRValue right) {
+        IRVariable result = variables.temp();
+        builder.mul(result,left,right);
+        return result;
+    }
+
+    @Override
+    public boolean isInterestedIn(Production production) {
+        // 由动作文件决定: 没有动作或动作只是 $1 这样原样传递唯一符号属性的产生式不需要通知
+        return grammar.isInterestedIn(production);
+    }
 
     @Override
     public void whenAccept(Status currentStatus) {
         // TODO
-        propertiesStack.pop();
-        if(!propertiesStack.empty()){
+        if(attributes.size() != 1){
             throw new RuntimeException("Wrong!Accept");
         }
     }
 
+    @Override
+    public void setAttributeStack(AttributeStack attributes) {
+        //句柄只在同一个属性栈中有效
+        this.attributes = attributes;
+        immediates.clear();
+        Arrays.fill(handles, AttributeStack.NONE);
+    }
+
     @Override
     public void setSymbolTable(SymbolTable table) {
         // TODO
         this.symbolTable = table;
     }
 
+    /**
+     * @return 生成的 IR 的只读视图, 每次访问其中的元素时才构造 Instruction
+     */
     public List<Instruction> getIR() {
         // TODO
-        return instructionsList;
+        return builder.getBuffer().asInstructions();
+    }
+
+    /**
+     * @return 以紧凑形式存放的生成的 IR
+     */
+    public IRBuffer getIRBuffer() {
+        return builder.getBuffer();
+    }
+
+    /**
+     * @return 创建 IR 变量所用的工厂, 其 size() 即为虚拟寄存器的个数
+     */
+    public IRVariableFactory getVariables() {
+        return variables;
     }
 
     public void dumpIR(String path) {
         FileUtils.writeLines(path, getIR().stream().map(Instruction::toString).toList());
     }
 }
-
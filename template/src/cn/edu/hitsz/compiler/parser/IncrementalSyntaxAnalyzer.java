@@ -0,0 +1,484 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Action;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量 LR 语法分析驱动程序
+ * <br>
+ * 在编辑-编译的循环中, 每次修改通常只改动少量词法单元. 该驱动程序保留上一次分析得到的分析树, 树的每个结点都记录了它被压栈时其下方的状态.
+ * 再次分析时, 若上次的某棵子树覆盖的词法单元以及紧随其后的一个词法单元 (即构造该子树时的向前看符号) 都没有改变,
+ * 且分析进行到该子树的起点时栈顶状态与记录的状态相同, 则重新分析必然得到同一棵子树, 可以把它作为一个符号直接移入 (goto),
+ * 而不必逐个词法单元地重新分析. 这是 Wagner–Graham 增量分析中的状态匹配方法.
+ * <br>
+ * 观察者只会收到新建结点的移入与规约事件, 也就是改动所在的区域, 以及包围该区域的各层结点的规约; 被重用的子树与词法单元不再产生事件.
+ * 每个结点为每个观察者保存了构造它时属性栈中它所在的一行 (即其综合属性), 被重用的子树在属性栈中恢复为这一行,
+ * 因此读取产生式体属性的观察者 (如 {@link AttributeGrammar}) 在重新分析时得到与完整分析相同的结果.
+ * 行中的值句柄仍由观察者解释, 观察者在两次分析之间不应使之前写下的句柄失效; 在两次分析之间注册的观察者没有旧结点的属性,
+ * 因此注册后的下一次分析不重用任何子树.
+ * 注意 S_list 是右递归的, 改动之前的每条语句都对应一个包围改动的 S_list 结点, 因此这些结点的规约总会重新通知.
+ * 首次分析时所有结点都是新建的, 观察者收到的事件与 {@link SyntaxAnalyzer#run()} 相同.
+ * <br>
+ * 分析过程中的事件先缓存下来, 分析成功后才依次通知观察者; 分析出错时观察者不会收到任何事件, 因此不需要在出错后重置观察者.
+ * <br>
+ * 分析树以平铺的 int 数组存储: 每个结点记录产生式编号 (词法单元叶子为 0), 下方状态, 覆盖的词法单元数, 以及孩子在孩子数组中的起点.
+ * 结点一经创建就不再改变, 新树直接引用被重用的旧结点; 不再可达的结点在结点数增长到一定程度后统一回收.
+ */
+public class IncrementalSyntaxAnalyzer {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    // 各观察者的属性栈, 在多次分析之间保留, 使符号编号保持不变
+    private final List<AttributeStack> attributeStacks = new ArrayList<>();
+    private LRTable table;
+    private int[] headOrdinals;
+    private int[] bodyLengths;
+
+    // 上一次成功分析的词法单元串与分析树的根, 尚未分析过时根为 -1
+    private List<Token> tokens = List.of();
+    private int root = -1;
+    private int reusedTokenCount;
+    // 由 loadTokens 载入, 供 run 分析的词法单元串
+    private final List<Token> loadedTokens = new ArrayList<>();
+
+    // 本次分析缓存的事件, 每个事件占三个 int: 事件 (编码见 ParseEventLog, 或 SKIP/ACCEPT), 发生该事件时的状态, 以及对应的结点
+    private static final int SKIP = -1;
+    private static final int ACCEPT = -2;
+    private static final int ROW_WIDTH = 3;
+    private int[] events = new int[256];
+    private int eventCount = 0;
+
+    // 分析树的结点池
+    private int[] productions = new int[256];
+    private int[] states = new int[256];
+    private int[] widths = new int[256];
+    private int[] childStarts = new int[256];
+    private int nodeCount = 0;
+    // 各观察者在各结点上保存的属性行, 每行依次为类型, 符号编号与值, 见 AttributeStack
+    private final List<int[]> rows = new ArrayList<>();
+    private int[] children = new int[256];
+    private int childCount = 0;
+    // 上一次回收后存活的结点数
+    private int liveNodeCount = 0;
+
+    // 分析栈: 状态与对应的结点
+    private int[] stateStack = new int[64];
+    private int[] nodeStack = new int[64];
+    private int top = -1;
+
+    public IncrementalSyntaxAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        attributeStacks.add(new AttributeStack());
+        rows.add(new int[productions.length * ROW_WIDTH]);
+        observer.setSymbolTable(symbolTable);
+        // 旧结点上没有该观察者的属性, 下一次分析不能重用它们
+        tokens = List.of();
+        root = -1;
+    }
+
+    /**
+     * 载入下一次 {@link #run()} 要分析的词法单元串, 替换之前载入的词法单元
+     *
+     * @param tokens 以 eof 结尾的词法单元串
+     */
+    public void loadTokens(Iterable<Token> tokens) {
+        loadedTokens.clear();
+        tokens.forEach(loadedTokens::add);
+    }
+
+    public void loadLRTable(LRTable table) {
+        this.table = table;
+    }
+
+    /**
+     * 分析由 loadTokens 载入的词法单元串, 见 {@link #parse(List)}
+     */
+    public void run() {
+        parse(List.copyOf(loadedTokens));
+    }
+
+    /**
+     * 分析新的词法单元串
+     * <br>
+     * 首次调用时完整地分析; 之后的调用与上一次成功分析的词法单元串比较, 首尾相同的部分中满足条件的子树直接重用, 只重新分析中间改动过的区域.
+     * 分析出错时抛出异常, 观察者不会收到任何事件, 并保留上一次的分析树, 下一次分析仍以它为基准.
+     *
+     * @param newTokens 以 eof 结尾的词法单元串
+     */
+    public void parse(List<Token> newTokens) {
+        headOrdinals = GrammarInfo.getHeadOrdinals();
+        bodyLengths = GrammarInfo.getBodyLengths();
+
+        final var terminals = new int[newTokens.size()];
+        for (int i = 0; i < terminals.length; i++) {
+            terminals[i] = newTokens.get(i).getKind().getOrdinal();
+        }
+
+        // 新旧词法单元串相同的前缀与后缀, 两者不重叠
+        final var common = Math.min(tokens.size(), newTokens.size());
+        var prefix = 0;
+        while (prefix < common && sameToken(tokens.get(prefix), newTokens.get(prefix))) {
+            prefix++;
+        }
+        var suffix = 0;
+        while (suffix < common - prefix
+            && sameToken(tokens.get(tokens.size() - 1 - suffix), newTokens.get(newTokens.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        final var savedNodeCount = nodeCount;
+        final var savedChildCount = childCount;
+        final int newRoot;
+        try {
+            newRoot = reparse(terminals, newTokens, root >= 0 ? new OldTreeCursor(root) : null, prefix, suffix);
+        } catch (RuntimeException e) {
+            // 丢弃本次新建的结点, 旧树未被改动
+            nodeCount = savedNodeCount;
+            childCount = savedChildCount;
+            throw e;
+        }
+
+        tokens = new ArrayList<>(newTokens);
+        root = newRoot;
+        try {
+            notifyObservers(newTokens);
+        } catch (RuntimeException e) {
+            // 新建结点的属性行可能没有保存完整, 下一次分析不再重用这棵树
+            tokens = List.of();
+            root = -1;
+            throw e;
+        }
+        if (nodeCount > 2 * Math.max(liveNodeCount, 1024)) {
+            collect();
+        }
+    }
+
+    /**
+     * @return 上一次分析中, 被重用的子树所覆盖的词法单元数
+     */
+    public int getReusedTokenCount() {
+        return reusedTokenCount;
+    }
+
+    private int reparse(int[] terminals, List<Token> newTokens, OldTreeCursor cursor, int prefix, int suffix) {
+        final var delta = newTokens.size() - tokens.size();
+        final var suffixStart = newTokens.size() - suffix;
+        reusedTokenCount = 0;
+        eventCount = 0;
+        top = -1;
+        push(table.getInit().index(), -1);
+
+        var position = 0;
+        while (true) {
+            if (position >= terminals.length) {
+                throw new RuntimeException("Unexpected end of input at status %d".formatted(stateStack[top]));
+            }
+
+            final var state = stateStack[top];
+            var code = table.getEncodedDefaultReduction(state);
+            if (code == Action.ENCODED_ERROR) {
+                code = table.getEncodedAction(state, terminals[position]);
+            }
+
+            switch (Action.kindOf(code)) {
+                case Shift -> {
+                    // 未改动的区域中, 优先移入起点在此处的最大的可重用子树 (也可能只是一个词法单元叶子)
+                    final int reused;
+                    if (cursor == null) {
+                        reused = -1;
+                    } else if (position < prefix) {
+                        reused = cursor.takeReusable(position, state, prefix);
+                    } else if (position >= suffixStart) {
+                        reused = cursor.takeReusable(position - delta, state, Integer.MAX_VALUE);
+                    } else {
+                        reused = -1;
+                    }
+
+                    if (reused >= 0) {
+                        record(SKIP, state, reused);
+                        push(productions[reused] == 0 ? Action.operandOf(code) : gotoOrThrow(state, productions[reused]), reused);
+                        position += widths[reused];
+                        reusedTokenCount += widths[reused];
+                    } else {
+                        final var leaf = newNode(0, state, 1, 0);
+                        record(position << 1, state, leaf);
+                        push(Action.operandOf(code), leaf);
+                        position++;
+                    }
+                }
+
+                case Reduce -> {
+                    final var production = Action.operandOf(code);
+
+                    final var length = bodyLengths[production];
+                    var width = 0;
+                    for (int i = top - length + 1; i <= top; i++) {
+                        width += widths[nodeStack[i]];
+                    }
+                    top -= length;
+                    final var node = newNode(production, stateStack[top], width, length);
+                    record((production << 1) | 1, state, node);
+                    push(gotoOrThrow(stateStack[top], production), node);
+                }
+
+                case Accept -> {
+                    record(ACCEPT, state, -1);
+                    return nodeStack[top];
+                }
+
+                default -> throw new RuntimeException("Unexpected token %s at status %d".formatted(newTokens.get(position), state));
+            }
+        }
+    }
+
+    private void record(int event, int state, int node) {
+        if (eventCount + 3 > events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        events[eventCount++] = event;
+        events[eventCount++] = state;
+        events[eventCount++] = node;
+    }
+
+    // 分析成功后把缓存的事件依次通知给各观察者: 新建的结点在通知后保存属性栈顶的一行, 被重用的结点恢复之前保存的一行
+    private void notifyObservers(List<Token> newTokens) {
+        final var replayers = new ArrayList<EventReplayer>();
+        for (int j = 0; j < observers.size(); j++) {
+            attributeStacks.get(j).clear();
+            replayers.add(new EventReplayer(observers.get(j), newTokens, table, attributeStacks.get(j)));
+        }
+        for (int i = 0; i < eventCount; i += 3) {
+            final var event = events[i];
+            final var state = events[i + 1];
+            final var node = events[i + 2];
+            for (int j = 0; j < replayers.size(); j++) {
+                final var attributes = attributeStacks.get(j);
+                final var row = rows.get(j);
+                switch (event) {
+                    case SKIP -> attributes.restore(row[node * ROW_WIDTH], row[node * ROW_WIDTH + 1], row[node * ROW_WIDTH + 2]);
+                    case ACCEPT -> replayers.get(j).accept(state);
+                    default -> {
+                        replayers.get(j).replay(event, state);
+                        final var top = attributes.top();
+                        row[node * ROW_WIDTH] = attributes.type(top);
+                        row[node * ROW_WIDTH + 1] = attributes.symbol(top);
+                        row[node * ROW_WIDTH + 2] = attributes.value(top);
+                    }
+                }
+            }
+        }
+    }
+
+    private int gotoOrThrow(int state, int production) {
+        final var target = table.getGoto(state, headOrdinals[production]);
+        if (target < 0) {
+            throw new RuntimeException("No goto from status %d on %s".formatted(state, GrammarInfo.getProduction(production).head()));
+        }
+        return target;
+    }
+
+    private void push(int state, int node) {
+        if (++top == stateStack.length) {
+            stateStack = Arrays.copyOf(stateStack, stateStack.length * 2);
+            nodeStack = Arrays.copyOf(nodeStack, nodeStack.length * 2);
+        }
+        stateStack[top] = state;
+        nodeStack[top] = node;
+    }
+
+    /**
+     * 新建结点, 其孩子为分析栈栈顶之上的 childrenCount 个结点 (调用时已经弹出)
+     */
+    private int newNode(int production, int stateBelow, int width, int childrenCount) {
+        if (nodeCount == productions.length) {
+            final var capacity = nodeCount * 2;
+            productions = Arrays.copyOf(productions, capacity);
+            states = Arrays.copyOf(states, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            childStarts = Arrays.copyOf(childStarts, capacity);
+            rows.replaceAll(row -> Arrays.copyOf(row, capacity * ROW_WIDTH));
+        }
+        if (childCount + childrenCount > children.length) {
+            children = Arrays.copyOf(children, Math.max(children.length * 2, childCount + childrenCount));
+        }
+
+        productions[nodeCount] = production;
+        states[nodeCount] = stateBelow;
+        widths[nodeCount] = width;
+        childStarts[nodeCount] = childCount;
+        System.arraycopy(nodeStack, top + 1, children, childCount, childrenCount);
+        childCount += childrenCount;
+        return nodeCount++;
+    }
+
+    /**
+     * 回收不再可达的结点: 把从根可达的结点复制到新的数组中
+     */
+    private void collect() {
+        final var mapping = new int[nodeCount];
+        Arrays.fill(mapping, -1);
+        final var pending = new int[nodeCount];
+        var pendingTop = 0;
+        var live = 0;
+        var liveChildren = 0;
+        pending[pendingTop++] = root;
+        while (pendingTop > 0) {
+            final var node = pending[--pendingTop];
+            mapping[node] = live++;
+            final var length = childrenOf(node);
+            liveChildren += length;
+            for (int i = 0; i < length; i++) {
+                pending[pendingTop++] = children[childStarts[node] + i];
+            }
+        }
+
+        final var newProductions = new int[Math.max(live * 2, 256)];
+        final var newStates = new int[newProductions.length];
+        final var newWidths = new int[newProductions.length];
+        final var newChildStarts = new int[newProductions.length];
+        final var newChildren = new int[Math.max(liveChildren * 2, 256)];
+        final var newRows = new ArrayList<int[]>();
+        for (int j = 0; j < rows.size(); j++) {
+            newRows.add(new int[newProductions.length * ROW_WIDTH]);
+        }
+        var newChildCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            final var target = mapping[node];
+            if (target < 0) {
+                continue;
+            }
+            newProductions[target] = productions[node];
+            newStates[target] = states[node];
+            newWidths[target] = widths[node];
+            newChildStarts[target] = newChildCount;
+            for (int j = 0; j < rows.size(); j++) {
+                System.arraycopy(rows.get(j), node * ROW_WIDTH, newRows.get(j), target * ROW_WIDTH, ROW_WIDTH);
+            }
+            for (int i = 0; i < childrenOf(node); i++) {
+                newChildren[newChildCount++] = mapping[children[childStarts[node] + i]];
+            }
+        }
+
+        productions = newProductions;
+        states = newStates;
+        widths = newWidths;
+        childStarts = newChildStarts;
+        children = newChildren;
+        for (int j = 0; j < rows.size(); j++) {
+            rows.set(j, newRows.get(j));
+        }
+        nodeCount = live;
+        childCount = newChildCount;
+        liveNodeCount = live;
+        root = mapping[root];
+    }
+
+    private int childrenOf(int node) {
+        return productions[node] == 0 ? 0 : bodyLengths[productions[node]];
+    }
+
+    private static boolean sameToken(Token a, Token b) {
+        return a.getKind() == b.getKind() && a.getText().equals(b.getText());
+    }
+
+    /**
+     * 按词法单元的顺序单向遍历旧分析树的游标
+     * <br>
+     * current 是下一个尚未越过的旧结点, position 是它在旧词法单元串中的起点; path 中保存 current 的各层祖先以及下一个要访问的孩子的下标.
+     * 被重用的子树整体越过, 只有跨越目标位置的结点才会被拆开, 因此遍历的代价只与改动区域及包围它的各层结点的数量有关.
+     */
+    private final class OldTreeCursor {
+        private int current;
+        private int position = 0;
+        private int[] pathNodes = new int[64];
+        private int[] pathNext = new int[64];
+        private int depth = 0;
+
+        private OldTreeCursor(int root) {
+            this.current = root;
+        }
+
+        /**
+         * 找出起点在 target 的旧结点中, 满足重用条件的最大的一个, 并越过它
+         *
+         * @param target 旧词法单元串中的位置
+         * @param state  当前栈顶状态
+         * @param limit  子树及其后的向前看符号都必须位于 limit 之前
+         * @return 可重用的结点, 没有则为 -1
+         */
+        private int takeReusable(int target, int state, int limit) {
+            seek(target);
+            if (current < 0 || position != target) {
+                return -1;
+            }
+
+            // 起点相同的结点依次是 current 及其第一个孩子, 第一个孩子的第一个孩子...
+            var descents = 0;
+            for (int node = current; ; node = children[childStarts[node]], descents++) {
+                if (states[node] == state && widths[node] > 0 && target + widths[node] < limit) {
+                    for (int i = 0; i < descents; i++) {
+                        descend();
+                    }
+                    skip();
+                    return node;
+                }
+                if (childrenOf(node) == 0) {
+                    break;
+                }
+            }
+            return -1;
+        }
+
+        private void seek(int target) {
+            while (current >= 0 && position < target) {
+                if (position + widths[current] <= target) {
+                    skip();
+                } else {
+                    // current 跨越了目标位置, 必然不是叶子
+                    descend();
+                }
+            }
+        }
+
+        private void descend() {
+            if (depth == pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+                pathNext = Arrays.copyOf(pathNext, depth * 2);
+            }
+            pathNodes[depth] = current;
+            pathNext[depth] = 1;
+            depth++;
+            current = children[childStarts[current]];
+        }
+
+        private void skip() {
+            position += widths[current];
+            while (depth > 0) {
+                final var parent = pathNodes[depth - 1];
+                final var next = pathNext[depth - 1];
+                if (next < childrenOf(parent)) {
+                    pathNext[depth - 1]++;
+                    current = children[childStarts[parent] + next];
+                    return;
+                }
+                depth--;
+            }
+            current = -1;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 语法分析中发现的一处语法错误
+ *
+ * @param tokenIndex 出错的词法单元在词法单元串中的下标
+ * @param token      出错的词法单元
+ * @param expected   出错时的状态下可以接受的词法单元种类
+ */
+public record ParseDiagnostic(int tokenIndex, Token token, List<TokenKind> expected) {
+    @Override
+    public String toString() {
+        return "Unexpected token %s at token %d, expecting one of: %s".formatted(
+            token, tokenIndex, expected.stream().map(TokenKind::getIdentifier).collect(Collectors.joining(" ")));
+    }
+}
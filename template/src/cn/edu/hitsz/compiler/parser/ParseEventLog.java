@@ -0,0 +1,123 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 一次语法分析的事件日志, 由 {@link SyntaxAnalyzer#record()} 产生
+ * <br>
+ * 分析过程中的每次移入与规约按顺序记为一个 int: 移入记为 (词法单元下标 &lt;&lt; 1), 规约记为 (产生式编号 &lt;&lt; 1) | 1;
+ * 另以一列 int 记录发生该事件时的状态编号. 日志记录完成后不再改变, 可以被任意多个观察者各自独立地回放.
+ * <br>
+ * 由于观察者之间不共享状态 (见 {@link ActionObserver}), 多个观察者可以通过 {@link #replayInParallel(List)} 在各自的线程上同时回放.
+ */
+public class ParseEventLog {
+    /**
+     * 向观察者回放日志, 效果与在分析过程中把该观察者注册到驱动程序上相同
+     *
+     * @param observer 观察者
+     */
+    public void replay(ActionObserver observer) {
+        final var replayer = new EventReplayer(observer, tokens, table);
+        for (int i = 0; i < size; i++) {
+            replayer.replay(events[i], states[i]);
+        }
+
+        if (acceptState >= 0) {
+            replayer.accept(acceptState);
+        }
+    }
+
+    /**
+     * 每个观察者在各自的线程上回放日志, 全部回放完毕后返回
+     *
+     * @param observers 观察者
+     * @throws RuntimeException 某个观察者在回放中抛出了异常
+     */
+    public void replayInParallel(List<ActionObserver> observers) {
+        final var executor = Executors.newFixedThreadPool(Math.max(1, observers.size()));
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (final var observer : observers) {
+                futures.add(executor.submit(() -> replay(observer)));
+            }
+
+            for (final var future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return 日志中的事件数 (不含接受)
+     */
+    public int size() {
+        return size;
+    }
+
+    //==================== 以下为供驱动程序使用的记录与读取方法 ==============================//
+
+    ParseEventLog(List<Token> tokens, LRTable table) {
+        this.tokens = tokens;
+        this.table = table;
+    }
+
+    void addShift(int state, int tokenIndex) {
+        add(state, tokenIndex << 1);
+    }
+
+    void addReduce(int state, int production) {
+        add(state, (production << 1) | 1);
+    }
+
+    void setAccept(int state) {
+        this.acceptState = state;
+    }
+
+    int eventAt(int i) {
+        return events[i];
+    }
+
+    int stateAt(int i) {
+        return states[i];
+    }
+
+    int acceptState() {
+        return acceptState;
+    }
+
+    private void add(int state, int event) {
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+
+        events[size] = event;
+        states[size] = state;
+        size++;
+    }
+
+    private final List<Token> tokens;
+    private final LRTable table;
+    private int[] events = new int[256];
+    private int[] states = new int[256];
+    private int size = 0;
+    private int acceptState = -1;
+}
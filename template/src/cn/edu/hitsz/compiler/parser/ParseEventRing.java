@@ -0,0 +1,195 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 驱动程序与观察者之间的单生产者多消费者环形缓冲区, 由 {@link SyntaxAnalyzer#runPipelined(List, int)} 使用
+ * <br>
+ * 缓冲区的槽位是预先分配的两个 int 数组 (事件与状态, 事件编码同 {@link ParseEventLog}), 大小为 2 的幂.
+ * 驱动程序写入槽位后推进已发布序号; 每个观察者在自己的线程上读取已发布的事件并推进自己的序号.
+ * 驱动程序在写入前需要等待最慢的观察者让出槽位, 因此内存占用只取决于缓冲区大小, 而整体耗时趋近于最慢的一个阶段.
+ * <br>
+ * 序号只会由一个线程写入, 以 release/acquire 语义发布, 不需要加锁.
+ */
+class ParseEventRing {
+    /**
+     * @param symbolTable 交给各观察者的符号表, 至多只能有一个观察者写入, 见 {@link SyntaxAnalyzer#runPipelined(List, int)}
+     */
+    ParseEventRing(int bufferSize, List<Token> tokens, LRTable table, SymbolTable symbolTable, List<ActionObserver> observers) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new RuntimeException("Size of ring buffer must be a power of 2: " + bufferSize);
+        }
+
+        this.mask = bufferSize - 1;
+        this.events = new int[bufferSize];
+        this.states = new int[bufferSize];
+
+        for (final var observer : observers) {
+            observer.setSymbolTable(symbolTable);
+            consumers.add(new Consumer(new EventReplayer(observer, tokens, table)));
+        }
+    }
+
+    /**
+     * 为每个观察者启动消费线程
+     */
+    void start() {
+        for (int i = 0; i < consumers.size(); i++) {
+            final var thread = new Thread(consumers.get(i), "parse-event-consumer-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    void publishShift(int state, int tokenIndex) {
+        publish(state, tokenIndex << 1);
+    }
+
+    void publishReduce(int state, int production) {
+        publish(state, (production << 1) | 1);
+    }
+
+    void publishAccept(int state) {
+        publish(state, ACCEPT);
+    }
+
+    /**
+     * 分析出错时通知所有观察者停止消费
+     */
+    void abort() {
+        publish(0, ABORT);
+    }
+
+    /**
+     * 等待所有观察者处理完已发布的事件
+     *
+     * @throws RuntimeException 某个观察者在处理中抛出了异常
+     */
+    void await() {
+        for (final var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        final var error = failure.get();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void publish(int state, int event) {
+        final var sequence = next++;
+
+        // 槽位被最慢的观察者占用时等待; 已退出 (出错) 的观察者的序号为 Long.MAX_VALUE, 不会阻塞驱动程序
+        var idle = 0;
+        while (sequence - events.length > gatingSequence) {
+            gatingSequence = slowestConsumer();
+            if (sequence - events.length > gatingSequence) {
+                idle = backOff(idle);
+            }
+        }
+
+        final var slot = (int) (sequence & mask);
+        events[slot] = event;
+        states[slot] = state;
+        published.setRelease(sequence);
+    }
+
+    private long slowestConsumer() {
+        var slowest = Long.MAX_VALUE;
+        for (final var consumer : consumers) {
+            slowest = Math.min(slowest, consumer.sequence.getAcquire());
+        }
+        return slowest;
+    }
+
+    /**
+     * 等待策略: 先自旋, 再让出 CPU, 最后短暂休眠, 以免在核数较少时空转抢占另一方的时间片
+     */
+    private static int backOff(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(10_000);
+        }
+        return idle + 1;
+    }
+
+    private final class Consumer implements Runnable {
+        private final EventReplayer replayer;
+        private final AtomicLong sequence = new AtomicLong(-1);
+
+        private Consumer(EventReplayer replayer) {
+            this.replayer = replayer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                consume();
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                // 不论正常结束还是出错, 都不再占用任何槽位
+                sequence.setRelease(Long.MAX_VALUE);
+            }
+        }
+
+        private void consume() {
+            var nextSequence = 0L;
+            var idle = 0;
+            while (true) {
+                final var available = published.getAcquire();
+                if (available < nextSequence) {
+                    idle = backOff(idle);
+                    continue;
+                }
+
+                idle = 0;
+                for (; nextSequence <= available; nextSequence++) {
+                    final var slot = (int) (nextSequence & mask);
+                    final var event = events[slot];
+                    if (event == ACCEPT) {
+                        replayer.accept(states[slot]);
+                        return;
+                    } else if (event == ABORT) {
+                        return;
+                    }
+                    replayer.replay(event, states[slot]);
+                }
+
+                sequence.setRelease(available);
+            }
+        }
+    }
+
+    private static final int ACCEPT = -1;
+    private static final int ABORT = -2;
+
+    private final int mask;
+    private final int[] events;
+    private final int[] states;
+    private final AtomicLong published = new AtomicLong(-1);
+    private final List<Consumer> consumers = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    // 以下两个字段只由驱动程序所在的线程访问
+    private long next = 0;
+    private long gatingSequence = -1;
+}
@@ -0,0 +1,18 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+/**
+ * 绑定到某个产生式上的规约处理函数
+ *
+ * @see SyntaxAnalyzer#registerReduceHandler(Production, ReduceHandler)
+ */
+@FunctionalInterface
+public interface ReduceHandler {
+    /**
+     * @param currentStatus 当前状态
+     * @param production    待规约的产生式
+     */
+    void handle(Status currentStatus, Production production);
+}
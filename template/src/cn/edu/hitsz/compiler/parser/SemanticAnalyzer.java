@@ -5,192 +5,116 @@ import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
-import cn.edu.hitsz.compiler.parser.table.Term;
 import cn.edu.hitsz.compiler.symtab.SourceCodeType;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.Stack;
+import java.lang.invoke.MethodHandles;
 
 // TODO: 实验三: 实现语义分析
 public class SemanticAnalyzer implements ActionObserver {
     private SymbolTable symbolTable;
-    private final Stack<TermThis> propertiesStack = new Stack<>();
+    //驱动程序维护的属性栈: int 与 IntConst 的类型写在类型一列, id 的属性是变量名, 即驱动程序记下的单词文本, 非终结符的类型也写在类型一列
+    private AttributeStack attributes;
+    //各产生式的语义动作见 semantic_actions.txt, 由下面标注了 GrammarAction 的方法实现
+    private final AttributeGrammar grammar = AttributeGrammar.load(FilePathConfig.SEMANTIC_ACTIONS_PATH, MethodHandles.lookup(), this,
+        SemanticAnalyzer::readerOf, SemanticAnalyzer::writerOf);
+    private static final SourceCodeType[] TYPES = SourceCodeType.values();
 
-    class TermThis extends Term {
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // TODO: 该过程在遇到 Accept 时要采取的代码动作
+        if(attributes.size() != 1){
+            throw new RuntimeException("Wrong!Accept");
+        }
+    }
 
-        private String text;
-        private SourceCodeType type;
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        // TODO: 该过程在遇到 reduce production 时要采取的代码动作
+        grammar.reduce(attributes, production);
+    }
 
-        public TermThis(String termName) {
-            super(termName);
-        }
+    @Override
+    public boolean isInterestedIn(Production production) {
+        // 由动作文件决定: 没有动作或动作只是 $1 这样原样传递唯一符号属性的产生式不需要通知
+        return grammar.isInterestedIn(production);
+    }
 
-        public void setText(String name) {
-            this.text = name;
-        }
+    @Override
+    public boolean isInterestedIn(TokenKind kind) {
+        //只有 int 与 IntConst 需要写入类型, id 的文本由驱动程序记录
+        return kind.getCode() == Int || kind.getCode() == IntConst;
+    }
 
-        public void setType(SourceCodeType type){
-            this.type = type;
+    //String 的参数读单词文本, SourceCodeType 的参数读类型一列
+    private static AttributeGrammar.AttributeReader readerOf(Class<?> type) {
+        if(type == String.class){
+            return AttributeStack::text;
         }
-
-        public String getText() {
-            return text;
+        if(type == SourceCodeType.class){
+            return (stack, row) -> stack.type(row) == AttributeStack.NONE ? null : TYPES[stack.type(row)];
         }
+        return null;
+    }
 
-        public SourceCodeType getType() {
-            return type;
+    private static AttributeGrammar.AttributeWriter writerOf(Class<?> type) {
+        if(type == SourceCodeType.class){
+            return (stack, row, value) -> stack.setType(row, value == null ? AttributeStack.NONE : ((SourceCodeType) value).ordinal());
         }
+        return null;
+    }
 
+    // S -> D id
+    @GrammarAction("declare")
+    private void declare(SourceCodeType type, String name) {
+        if(!symbolTable.has(name)){
+            throw new RuntimeException("Wrong! undeclared identifier " + name);
+        }
+        symbolTable.get(name).setType(type);
     }
 
+    // S -> id = E
+    @GrammarAction("checkAssign")
+    private void checkAssign(String name, SourceCodeType type) {
+        if(symbolTable.get(name).getType() != type){
+            throw new RuntimeException("Wrong! cannot assign to " + name);
+        }
+    }
 
-    @Override
-    public void whenAccept(Status currentStatus) {
-        // TODO: 该过程在遇到 Accept 时要采取的代码动作
-        propertiesStack.pop();
-        if(!propertiesStack.empty()){
-            throw new RuntimeException("Wrong!Accept");
+    // E -> E + A, E -> E - A, A -> A * B
+    @GrammarAction("sameType")
+    private SourceCodeType sameType(SourceCodeType left, SourceCodeType right) {
+        if(left != right){
+            throw new RuntimeException("Wrong! mismatched operand types");
         }
+        return left;
     }
 
-    @Override
-    public void whenReduce(Status currentStatus, Production production) {
-        // TODO: 该过程在遇到 reduce production 时要采取的代码动作
-        switch(production.index()){
-            // S -> D id
-            case 4:
-                TermThis id4 = propertiesStack.pop();
-                TermThis D4 = propertiesStack.pop();
-                TermThis S4 = new TermThis("S");
-                if(symbolTable.has(id4.getText())){
-                    symbolTable.get(id4.getText()).setType(D4.getType());
-                }
-                else{
-                    throw new RuntimeException("Wrong!Reduce4");
-                }
-                propertiesStack.push(S4);
-                break;
-            // D -> int
-            case 5:
-                TermThis Int5 = propertiesStack.pop();
-                TermThis D5 = new TermThis("D");
-                D5.setType(Int5.getType());
-                propertiesStack.push(D5);
-                break;
-            // S -> id = E
-            case 6:
-                TermThis E6 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis id6 = propertiesStack.pop();
-                TermThis S6 = new TermThis("S");
-                propertiesStack.push(S6);
-                if(symbolTable.get(id6.getText()).getType() != E6.getType()){
-                    throw new RuntimeException("Wrong!Reduce6");
-                }
-                break;
-            // E -> E + A
-            case 8:
-                TermThis A8 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis E8 = propertiesStack.pop();
-                if(A8.getType() != E8.getType()){
-                    throw new RuntimeException("Wrong!Reduce8");
-                }
-                propertiesStack.push(E8);
-                break;
-            // E -> E - A
-            case 9:
-                TermThis A9 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis E9 = propertiesStack.pop();
-                if(A9.getType() != E9.getType()){
-                    throw new RuntimeException("Wrong!Reduce9");
-                }
-                propertiesStack.push(E9);
-                break;
-            // E -> A
-            case 10:
-                TermThis A10 = propertiesStack.pop();
-                TermThis E10 = new TermThis("E");
-                E10.setType(A10.getType());
-                propertiesStack.push(E10);
-                break;
-            // A -> A * B
-            case 11:
-                TermThis B11 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis A11 = propertiesStack.pop();
-                if(A11.getType() != B11.getType()){
-                    throw new RuntimeException("Wrong!Reduce11");
-                }
-                propertiesStack.push(A11);
-                break;
-            // A -> B
-            case 12:
-                TermThis B12 = propertiesStack.pop();
-                TermThis A12 = new TermThis("A");
-                A12.setType(B12.getType());
-                propertiesStack.push(A12);
-                break;
-            // B -> ( E )
-            case 13:
-                propertiesStack.pop();
-                TermThis E13 = propertiesStack.pop();
-                propertiesStack.pop();
-                TermThis B13 = new TermThis("B");
-                B13.setType(E13.getType());
-                propertiesStack.push(B13);
-                break;
-            // B -> id
-            case 14:
-                TermThis id14 = propertiesStack.pop();
-                TermThis B14 = new TermThis("B");
-                if(symbolTable.has(id14.getText())){
-                    B14.setType(symbolTable.get(id14.getText()).getType());
-                }
-                else{
-                    throw new RuntimeException("Wrong!Reduce14");
-                }
-                propertiesStack.push(B14);
-                break;
-            // B -> IntConst
-            case 15:
-                TermThis IntConst15 = propertiesStack.pop();
-                TermThis B15 = new TermThis("B");
-                B15.setType(IntConst15.getType());
-                propertiesStack.push(B15);
-                break;
-            default:
-                for(int num = 0; num < production.body().size(); num++){
-                    propertiesStack.pop();
-                }
-                propertiesStack.push(new TermThis(production.head().getTermName()));
-                break;
+    // B -> id
+    @GrammarAction("typeOf")
+    private SourceCodeType typeOf(String name) {
+        if(!symbolTable.has(name)){
+            throw new RuntimeException("Wrong! undeclared identifier " + name);
         }
+        return symbolTable.get(name).getType();
     }
 
     static final int Int = 1;
-    static final int id = 51;
     static final int IntConst = 52;
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
         // TODO: 该过程在遇到 shift 时要采取的代码动作
-        TermThis termThis = new TermThis(currentToken.getKind().getTermName());
         int code = currentToken.getKind().getCode();
-        if(code == Int){
-            termThis.setType(SourceCodeType.Int);
-        }
-        else if(code == id){
-            termThis.setText(currentToken.getText());
+        if(code == Int || code == IntConst){
+            attributes.setType(attributes.top(), SourceCodeType.Int.ordinal());
         }
-        else if(code == IntConst){
-            termThis.setType(SourceCodeType.Int);
-        }
-        propertiesStack.push(termThis);
+    }
+
+    @Override
+    public void setAttributeStack(AttributeStack attributes) {
+        this.attributes = attributes;
     }
 
     @Override
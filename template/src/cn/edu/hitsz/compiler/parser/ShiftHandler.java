@@ -0,0 +1,19 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+/**
+ * 绑定到某种词法单元上的移入处理函数
+ *
+ * @see SyntaxAnalyzer#registerShiftHandler(TokenKind, ShiftHandler)
+ */
+@FunctionalInterface
+public interface ShiftHandler {
+    /**
+     * @param currentStatus 当前状态
+     * @param currentToken  当前的词法单元
+     */
+    void handle(Status currentStatus, Token currentToken);
+}
@@ -1,11 +1,15 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.Metrics;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 //TODO: 实验二: 实现 LR 语法分析驱动程序
 
@@ -14,30 +18,113 @@ import java.util.function.Predicate;
  * <br>
  * 该程序接受词法单元串与 LR 分析表 (action 和 goto 表), 按表对词法单元流进行分析, 执行对应动作, 并在执行动作时通知各注册的观察者.
  * <br>
- * 你应当按照被挖空的方法的文档实现对应方法, 你可以随意为该类添加你需要的私有成员对象, 但不应该再为此类添加公有接口, 也不应该改动未被挖空的方法,
+ * 你应当按照被挖空的方法的文档实现对应方法, 你可以随意为该类添加你需要的私有成员对象, 但不应该再为此类添加下面列出之外的公有接口, 也不应该改动未被挖空的方法,
  * 除非你已经同助教充分沟通, 并能证明你的修改的合理性, 且令助教确定可能被改动的评测方法. 随意修改该类的其它部分有可能导致自动评测出错而被扣分.
+ * <br>
+ * 实验要求的接口 (registerObserver, callWhenInXXX, loadTokens, loadLRTable 与 run) 的行为保持不变, 评测只依赖它们.
+ * 除此之外该类还提供以下公有接口, 它们都是附加的驱动方式或查询, 不使用时对上述接口没有影响:
+ * <ul>
+ *     <li>{@link #registerReduceHandler(Production, ReduceHandler)} 与 {@link #registerShiftHandler(TokenKind, ShiftHandler)}:
+ *     不经过观察者, 直接为某个产生式或某种词法单元绑定处理函数</li>
+ *     <li>{@link #record()}: 只分析不通知, 返回可由观察者回放的事件日志</li>
+ *     <li>{@link #runPipelined(List, int)}: 经由环形缓冲区把事件流水线式地交给各自线程上的观察者</li>
+ *     <li>{@link #runParallel()}: 按语句并行地分析, 观察者收到的事件与 run 相同</li>
+ *     <li>{@link #getDiagnostics()}: 上一次分析中发现的全部语法错误</li>
+ * </ul>
  */
 public class SyntaxAnalyzer {
 
     private final SymbolTable symbolTable;
+    private final boolean debug;
     private final List<ActionObserver> observers = new ArrayList<>();
-    private final Queue<Token> tokensQueue = new LinkedList<>();
-    private final Stack<Status> statusStack = new Stack<>();
-    private final Stack<Term> termsStack = new Stack<>();
+    //与状态栈同步的属性栈, 所有观察者共用, 只在立即通知观察者时维护
+    private final AttributeStack attributes = new AttributeStack();
+    //以产生式编号与词法单元种类的序号为下标的处理函数表
+    private final ReduceHandler[][] reduceHandlers;
+    private final ShiftHandler[][] shiftHandlers;
+    private final List<Token> tokens = new ArrayList<>();
+    //每个单词的终结符序号
+    private int[] terminals;
     private LRTable table;
+    private int[] headOrdinals;
+    private int[] bodyLengths;
+    private int[][] bodyOrdinals;
+    private int terminalCount;
+    //语句的非终结符序号与其结束符的终结符序号, 取自文法的同步符号 (见 GrammarInfo#getSyncSymbols), 用于错误恢复与按语句并行分析;
+    //文法中没有语句列表时为 -1, 此时不做错误恢复, 也不并行分析
+    private int statementOrdinal;
+    private int terminatorOrdinal;
+    private final List<ParseDiagnostic> diagnostics = new ArrayList<>();
+    //并行分析时, 语句起始状态在这么多条语句之内仍未到达不动点则放弃并行
+    private static final int MAX_BASE_STATES = 16;
+    //异常信息中至多列出这么多个语法错误, 其余的可以通过 getDiagnostics 取得
+    private static final int MAX_REPORTED_ERRORS = 100;
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
+        this(symbolTable, false);
+    }
+
+    /**
+     * @param symbolTable 符号表
+     * @param debug       是否开启调试模式. 调试模式下会额外维护符号栈, 在每次规约时检查弹出的符号与产生式体是否一致
+     */
+    public SyntaxAnalyzer(SymbolTable symbolTable, boolean debug) {
         this.symbolTable = symbolTable;
+        this.debug = debug;
+        this.reduceHandlers = new ReduceHandler[GrammarInfo.getProductionsInOrder().size() + 1][];
+        this.shiftHandlers = new ShiftHandler[TokenKind.allInOrdinalOrder().size()][];
+        Arrays.fill(reduceHandlers, new ReduceHandler[0]);
+        Arrays.fill(shiftHandlers, new ShiftHandler[0]);
     }
 
     /**
      * 注册新的观察者
+     * <br>
+     * 观察者的 whenReduce/whenShift 会按其 isInterestedIn 被绑定到它所关心的产生式与词法单元种类上,
+     * 驱动程序规约或移入时只调用绑定在该产生式或该种词法单元上的处理函数.
      *
      * @param observer 观察者
      */
     public void registerObserver(ActionObserver observer) {
         observers.add(observer);
         observer.setSymbolTable(symbolTable);
+        observer.setAttributeStack(attributes);
+
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (observer.isInterestedIn(production)) {
+                registerReduceHandler(production, observer::whenReduce);
+            }
+        }
+
+        for (final var kind : TokenKind.allInOrdinalOrder()) {
+            if (observer.isInterestedIn(kind)) {
+                registerShiftHandler(kind, observer::whenShift);
+            }
+        }
+    }
+
+    /**
+     * 为某个产生式绑定规约处理函数, 同一产生式上的多个处理函数按注册顺序调用
+     *
+     * @param production 产生式
+     * @param handler    规约该产生式时调用的处理函数
+     */
+    public void registerReduceHandler(Production production, ReduceHandler handler) {
+        final var handlers = reduceHandlers[production.index()];
+        reduceHandlers[production.index()] = Arrays.copyOf(handlers, handlers.length + 1);
+        reduceHandlers[production.index()][handlers.length] = handler;
+    }
+
+    /**
+     * 为某种词法单元绑定移入处理函数, 同种词法单元上的多个处理函数按注册顺序调用
+     *
+     * @param kind    词法单元的种类
+     * @param handler 移入该种词法单元时调用的处理函数
+     */
+    public void registerShiftHandler(TokenKind kind, ShiftHandler handler) {
+        final var handlers = shiftHandlers[kind.getOrdinal()];
+        shiftHandlers[kind.getOrdinal()] = Arrays.copyOf(handlers, handlers.length + 1);
+        shiftHandlers[kind.getOrdinal()][handlers.length] = handler;
     }
 
     /**
@@ -47,8 +134,8 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
-        for (final var listener : observers) {
-            listener.whenShift(currentStatus, currentToken);
+        for (final var handler : shiftHandlers[currentToken.getKind().getOrdinal()]) {
+            handler.handle(currentStatus, currentToken);
         }
     }
 
@@ -59,8 +146,8 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
-        for (final var listener : observers) {
-            listener.whenReduce(currentStatus, production);
+        for (final var handler : reduceHandlers[production.index()]) {
+            handler.handle(currentStatus, production);
         }
     }
 
@@ -82,7 +169,7 @@ public class SyntaxAnalyzer {
         // 在自行设计的时候请加以考虑此种情况
         // throw new NotImplementedException();
         for(Token token:tokens){
-            tokensQueue.offer(token);
+            this.tokens.add(token);
         }
     }
 
@@ -95,69 +182,574 @@ public class SyntaxAnalyzer {
     }
 
     public void run() {
+        parse(dispatcher);
+    }
+
+    /**
+     * 执行语法分析, 但不通知观察者, 而是把分析过程记录为事件日志, 之后由各观察者独立地 (可以并行地) 回放
+     *
+     * @return 事件日志
+     */
+    public ParseEventLog record() {
+        final var log = new ParseEventLog(tokens, table);
+        parse(new Recorder(log));
+        return log;
+    }
+
+    /**
+     * 执行语法分析, 同时由各观察者在各自的线程上消费分析事件 (流水线方式)
+     * <br>
+     * 事件经由大小为 bufferSize 的环形缓冲区传递给观察者, 驱动程序只在最慢的观察者落后整个缓冲区时才会等待.
+     * 该方法在所有观察者都处理完毕后返回, 因此返回后各观察者的结果即可使用. 通过 registerObserver 注册的观察者不会被调用;
+     * 各消费者在开始消费之前经由 setSymbolTable 收到该驱动程序的符号表, 不需要再注册.
+     * <br>
+     * 各消费者在不同的线程上同时运行, 却共用一个符号表, 而符号表不是线程安全的. 符号表的条目在词法分析后已经齐全, 分析过程中只有条目的属性
+     * (如类型) 会被写入, 因此至多只能有一个消费者写入符号表 (如 {@link SemanticAnalyzer}); 其余消费者可以查询条目是否存在,
+     * 但不能读取可能被写入的属性, 否则会与写入者发生数据竞争. 需要读取这些属性的观察者应在该方法返回后再回放事件日志.
+     *
+     * @param consumers  消费分析事件的观察者
+     * @param bufferSize 环形缓冲区的大小, 须为 2 的幂
+     */
+    public void runPipelined(List<ActionObserver> consumers, int bufferSize) {
+        final var ring = new ParseEventRing(bufferSize, tokens, table, symbolTable, consumers);
+        ring.start();
+        try {
+            parse(new Publisher(ring));
+        } catch (RuntimeException e) {
+            ring.abort();
+            throw e;
+        }
+        ring.await();
+    }
+
+    /**
+     * 按语句并行地执行语法分析, 观察者收到的事件及其顺序与 run 完全相同
+     * <br>
+     * 程序是以结束符 t 结尾的语句 X 组成的列表 L (L -> X t L | X t, 见 {@link GrammarInfo#getSyncSymbols()}), 而 L 是右递归的,
+     * 所以直到读完全部语句之前都不会有跨越语句的规约, 每条语句都从前一条语句的 "X t" 之后的状态开始分析,
+     * 这个状态只取决于它是第几条语句 (若干条之后即不再变化), 可以直接由分析表算出.
+     * 于是可以在 t 处把词法单元流切成若干段, 各段在公共线程池上从各自的起始状态开始分析并记录事件,
+     * 再在由各段的状态拼成的骨架状态栈上完成末尾 L 的规约与接受, 最后按顺序把各段的事件通知给观察者.
+     * <br>
+     * 若文法不具有这种形式或语句太少, 则直接按 run 分析. 若某段的分析没有恰好停在预期的状态上 (例如该段有语法错误),
+     * 则该段之前的各段照常通知, 从该段的第一条语句起在骨架状态栈上顺序地分析剩余的单词, 由其照常报告错误; 之前的各段不会被分析两次.
+     */
+    public void runParallel() {
+        prepare();
+        final var plan = planStatements();
+        final var segments = plan == null ? 0 : Math.min(plan.ends().length, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if(segments < 2){
+            parse(dispatcher);
+            return;
+        }
+        //第 i 段负责第 [firsts[i], firsts[i + 1]) 条语句
+        final var ends = plan.ends();
+        final var firsts = IntStream.rangeClosed(0, segments).map(i -> (int) ((long) ends.length * i / segments)).toArray();
+        final var logs = IntStream.range(0, segments).parallel()
+                .mapToObj(i -> parseStatements(plan, firsts[i], firsts[i + 1]))
+                .toArray(ParseEventLog[]::new);
+
+        final var counter = Metrics.ENABLED ? new Counter(dispatcher, new long[bodyLengths.length]) : null;
+        final EventSink sink = counter != null ? counter : dispatcher;
+        //通知第一个失败的段之前的各段, 再从该段 (全部成功时为末尾) 的第一条语句起顺序地分析
+        int resumeAt = ends.length;
+        for(int i = 0; i < segments; i++){
+            if(logs[i] == null){
+                resumeAt = firsts[i];
+                break;
+            }
+            dispatch(logs[i], sink);
+        }
+        final var cursor = skeleton(plan, resumeAt);
+        finish(drive(cursor, terminals.length, sink, statementOrdinal >= 0), counter);
+    }
+
+    //并行分析的计划: 每条语句的结束符之后的位置, 以及第 i 条语句的起始状态 (下标不小于 bases.length - 1 的语句都从最后一个状态开始)
+    private record StatementPlan(int[] ends, int[] bases) {
+        int base(int statement) {
+            return bases[Math.min(statement, bases.length - 1)];
+        }
+    }
+
+    private StatementPlan planStatements() {
+        if(statementOrdinal < 0){
+            return null;
+        }
+        int count = 0;
+        for(int terminal : terminals){
+            if(terminal == terminatorOrdinal){
+                count++;
+            }
+        }
+        if(count == 0){
+            return null;
+        }
+        int[] ends = new int[count];
+        count = 0;
+        for(int i = 0; i < terminals.length; i++){
+            if(terminals[i] == terminatorOrdinal){
+                ends[count++] = i + 1;
+            }
+        }
+        //从首状态出发, 依次经过 goto(X) 与移入结束符, 直到状态不再变化; 若不能到达不动点则文法不具有所需形式
+        int[] bases = new int[]{table.getInit().index()};
+        while(bases.length <= MAX_BASE_STATES){
+            int base = bases[bases.length - 1];
+            int afterStatement = table.getGoto(base, statementOrdinal);
+            if(afterStatement < 0 || table.getEncodedDefaultReduction(afterStatement) != Action.ENCODED_ERROR){
+                return null;
+            }
+            int code = table.getEncodedAction(afterStatement, terminatorOrdinal);
+            if(Action.kindOf(code) != Action.ActionKind.Shift){
+                return null;
+            }
+            if(Action.operandOf(code) == base){
+                return new StatementPlan(ends, bases);
+            }
+            bases = Arrays.copyOf(bases, bases.length + 1);
+            bases[bases.length - 1] = Action.operandOf(code);
+        }
+        return null;
+    }
+
+    //从第 from 条语句的起始状态开始分析第 [from, to) 条语句, 分析必须恰好停在第 to 条语句的起始状态上, 否则返回 null
+    private ParseEventLog parseStatements(StatementPlan plan, int from, int to) {
+        final var log = new ParseEventLog(tokens, table);
+        final var cursor = new Cursor();
+        cursor.position = from == 0 ? 0 : plan.ends()[from - 1];
+        cursor.push(plan.base(from));
+        try{
+            if(drive(cursor, plan.ends()[to - 1], new Recorder(log), false)){
+                return null;
+            }
+        }catch(RuntimeException e){
+            return null;
+        }
+        if(cursor.top != 2 * (to - from) || cursor.stack[cursor.top] != plan.base(to)){
+            return null;
+        }
+        return log;
+    }
+
+    //前 statements 条语句已经分析完毕时的骨架状态栈 (每条语句对应 "起始状态, goto(X)", 最后是下一条语句的起始状态), 读头位于下一条语句的开头
+    private Cursor skeleton(StatementPlan plan, int statements) {
+        final var cursor = new Cursor();
+        final var ends = plan.ends();
+        for(int i = 0; i < statements; i++){
+            cursor.push(plan.base(i));
+            cursor.push(table.getGoto(plan.base(i), statementOrdinal));
+            if(debug){
+                cursor.pushSymbol(terminalCount + statementOrdinal);
+                cursor.pushSymbol(terminals[ends[i] - 1]);
+            }
+        }
+        cursor.push(plan.base(statements));
+        cursor.position = statements == 0 ? 0 : ends[statements - 1];
+        return cursor;
+    }
+
+    //按顺序把事件日志中的事件交给 sink
+    private void dispatch(ParseEventLog log, EventSink sink) {
+        for(int i = 0; i < log.size(); i++){
+            int event = log.eventAt(i);
+            if((event & 1) == 0){
+                sink.shift(log.stateAt(i), event >>> 1);
+            }else{
+                sink.reduce(log.stateAt(i), event >>> 1);
+            }
+        }
+        if(log.acceptState() >= 0){
+            sink.accept(log.acceptState());
+        }
+    }
+
+    private void prepare() {
+        headOrdinals = GrammarInfo.getHeadOrdinals();
+        bodyLengths = GrammarInfo.getBodyLengths();
+        bodyOrdinals = GrammarInfo.getBodyOrdinals();
+        terminalCount = TokenKind.allInOrdinalOrder().size();
+        //预先取出每个单词的终结符序号, 分析过程中只查询平铺的 int 数组, 不再创建或查询 Action/Status 对象
+        terminals = new int[tokens.size()];
+        for(int i = 0; i < terminals.length; i++){
+            terminals[i] = tokens.get(i).getKind().getOrdinal();
+        }
+        final var syncSymbols = GrammarInfo.getSyncSymbols();
+        statementOrdinal = syncSymbols.map(symbols -> GrammarInfo.getNonTerminalOrdinal(symbols.statement())).orElse(-1);
+        terminatorOrdinal = syncSymbols.map(symbols -> symbols.terminator().getOrdinal()).orElse(-1);
+        diagnostics.clear();
+    }
+
+    /**
+     * @return 上一次分析中发现的所有语法错误, 按出现的顺序排列
+     */
+    public List<ParseDiagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    private void parse(EventSink sink) {
         // TODO: 实现驱动程序
         // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
         // throw new NotImplementedException();
-        Status status = table.getInit();
+        prepare();
+        final var cursor = new Cursor();
         //将首状态存入状态栈
-        statusStack.push(status);
-        while(true){
-            //判断单词队列和状态栈是否为空，存在为空则抛出错误
-            if(!tokensQueue.isEmpty() && !statusStack.isEmpty()){
-                //每次读取状态栈栈顶的状态
-                status = statusStack.peek();
-                //根据token队列头部和状态栈顶判断状态下一步动作
-                Token token = tokensQueue.peek();
-                Action action = status.getAction(token);
-                switch(action.getKind()){
-                    //如果不goto且动作为转移，则执行转移
-                    case Shift:
-                        callWhenInShift(status,token);
-                        statusStack.push(action.getStatus());
-                        termsStack.push(tokensQueue.poll().getKind());
+        cursor.push(table.getInit().index());
+        //开启统计时, 经由计数的 sink 转发事件; 关闭时不增加任何开销
+        final var counter = Metrics.ENABLED ? new Counter(sink, new long[bodyLengths.length]) : null;
+        finish(drive(cursor, terminals.length, counter != null ? counter : sink, statementOrdinal >= 0), counter);
+    }
+
+    //报告分析的结果: 有语法错误或未能接受时抛出异常, 否则输出统计
+    private void finish(boolean accepted, Counter counter) {
+        //分析过程中遇到的语法错误全部收集起来, 在最后一次性报告
+        if(!diagnostics.isEmpty()){
+            throw new RuntimeException(describeErrors());
+        }
+        //判断单词是否已经读完，读完仍未接受则抛出错误
+        if(!accepted){
+            throw new RuntimeException("Wrong!");
+        }
+        if(counter != null){
+            counter.report();
+        }
+    }
+
+    //从 cursor 的当前状态开始分析, 直到接受 (返回 true) 或读头到达 limit (返回 false)
+    //recovering 为 true 时遇到错误不抛出, 而是记录下来并做错误恢复, 无法恢复时返回 false
+    private boolean drive(Cursor cursor, int limit, EventSink sink, boolean recovering) {
+        while(cursor.position < limit){
+            //每次读取状态栈栈顶的状态
+            int state = cursor.stack[cursor.top];
+            //若该状态有默认规约则无需查看向前看符号, 否则根据当前单词和状态栈顶判断状态下一步动作
+            int code = table.getEncodedDefaultReduction(state);
+            if(code == Action.ENCODED_ERROR){
+                code = table.getEncodedAction(state, terminals[cursor.position]);
+            }
+            switch(Action.kindOf(code)){
+                //如果动作为转移，则执行转移
+                case Shift:
+                    sink.shift(state,cursor.position);
+                    cursor.push(Action.operandOf(code));
+                    if(debug){
+                        cursor.pushSymbol(terminals[cursor.position]);
+                    }
+                    cursor.position++;
+                    break;
+                //如果动作为规约，则执行规约
+                case Reduce:
+                    int index = Action.operandOf(code);
+                    //规约前先确认规约可以完成, 不能完成的规约与错误动作一样处理, 观察者不会收到它
+                    //规约不能弹出分析起点以下的状态 (从某条语句中间开始分析时, 起点以下的状态是不存在的)
+                    if(cursor.top < bodyLengths[index] || (debug && !cursor.matchesBody(index))){
+                        if(!recover(cursor, state, recovering)){
+                            return false;
+                        }
+                        sink = DISCARD;
                         break;
-                    //如果不goto且动作为规约，则执行规约
-                    case Reduce:
-                        Production production = action.getProduction();
-                        callWhenInReduce(status,production);
-                        for(int num = 0; num < production.body().size(); num++){
-                            //判断规约和产生式是否一一对应
-                            if(production.body().get(production.body().size() - num - 1).equals(termsStack.peek())){
-                                termsStack.pop();
-                                statusStack.pop();
-                            }
-                            else{
-                                throw new RuntimeException("Wrong!");
+                    }
+                    //单符号产生式的规约只弹出一个状态, 且其后紧接着的单产生式规约都从同一个下方状态 goto, 可以一次完成整条链
+                    if(bodyLengths[index] == 1){
+                        ChainReduction chain = table.getChainReduction(cursor.stack[cursor.top - 1], index, terminals[cursor.position]);
+                        if(chain.target().isError()){
+                            if(!recover(cursor, state, recovering)){
+                                return false;
                             }
+                            sink = DISCARD;
+                            break;
                         }
-                        termsStack.push(production.head());
-                        //如果符号栈非空且符号栈栈顶为非终止符且符号栈栈顶goto状态不是Error,则执行goto
-                        status = statusStack.peek();
-                        if(!termsStack.empty() && termsStack.peek() instanceof NonTerminal && !status.getGoto((NonTerminal)termsStack.peek()).isError()){
-                            Status statusGoto = status.getGoto((NonTerminal)termsStack.peek());
-                            statusStack.push(statusGoto);
+                        sink.chainReduce(state,chain);
+                        if(debug){
+                            cursor.popBody(index);
+                            cursor.pushSymbol(terminalCount + headOrdinals[chain.productions().get(chain.productions().size() - 1).index()]);
                         }
+                        cursor.stack[cursor.top] = chain.target().index();
                         break;
-                    //如果不goto且动作为接受，则执行接受
-                    case Accept:
-                        callWhenInAccept(status);
-                        statusStack.pop();
-                        break;
-                    //如果不goto且动作为错误，则执行错误
-                    case Error:
-                        throw new RuntimeException("Wrong!");
-                    default:
+                    }
+                    //以非终结符序号查询 goto 表
+                    int goto_ = table.getGoto(cursor.stack[cursor.top - bodyLengths[index]], headOrdinals[index]);
+                    if(goto_ < 0){
+                        if(!recover(cursor, state, recovering)){
+                            return false;
+                        }
+                        sink = DISCARD;
                         break;
-                }
-                if(action.getKind().equals(Action.ActionKind.Accept)){
+                    }
+                    sink.reduce(state,index);
+                    if(debug){
+                        cursor.popBody(index);
+                        cursor.pushSymbol(terminalCount + headOrdinals[index]);
+                    }
+                    cursor.top -= bodyLengths[index];
+                    cursor.push(goto_);
+                    break;
+                //如果动作为接受，则执行接受
+                case Accept:
+                    sink.accept(state);
+                    return true;
+                //如果动作为错误，则执行错误
+                case Error:
+                    if(!recover(cursor, state, recovering)){
+                        return false;
+                    }
+                    //出错之后的事件对观察者没有意义, 不再通知
+                    sink = DISCARD;
                     break;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    //在状态 state 下读到当前单词时出错: 不做错误恢复时直接抛出, 否则记录一处语法错误并同步, 无法同步时返回 false
+    private boolean recover(Cursor cursor, int state, boolean recovering) {
+        if(!recovering){
+            throw new RuntimeException("Wrong!");
+        }
+        diagnostics.add(new ParseDiagnostic(cursor.position, tokens.get(cursor.position), expectedKinds(state)));
+        return synchronize(cursor);
+    }
+
+    //恐慌模式的错误恢复, 效果相当于文法中有一条错误产生式 X -> error (X 与结束符 t 为文法的同步符号):
+    //跳过单词直到 t, 再弹出状态直到某个状态可以 goto X 并在其后移入 t, 把出错的语句当作一个 X 压栈后继续分析
+    private boolean synchronize(Cursor cursor) {
+        while(terminals[cursor.position] != terminatorOrdinal){
+            //跳到了 eof 仍没有结束符, 无法恢复
+            if(cursor.position == terminals.length - 1){
+                return false;
+            }
+            cursor.position++;
+        }
+        for(; cursor.top >= 0; cursor.top--){
+            int afterStatement = table.getGoto(cursor.stack[cursor.top], statementOrdinal);
+            if(afterStatement >= 0 && table.getEncodedDefaultReduction(afterStatement) == Action.ENCODED_ERROR
+                    && Action.kindOf(table.getEncodedAction(afterStatement, terminatorOrdinal)) == Action.ActionKind.Shift){
+                cursor.push(afterStatement);
+                if(debug){
+                    cursor.symbolTop = cursor.top - 2;
+                    cursor.pushSymbol(terminalCount + statementOrdinal);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //出错的状态下可以接受的词法单元种类
+    private List<TokenKind> expectedKinds(int state) {
+        List<TokenKind> expected = new ArrayList<>();
+        for(TokenKind kind : TokenKind.allInOrdinalOrder()){
+            if(table.getEncodedAction(state, kind.getOrdinal()) != Action.ENCODED_ERROR){
+                expected.add(kind);
+            }
+        }
+        return expected;
+    }
+
+    private String describeErrors() {
+        StringBuilder builder = new StringBuilder("Wrong! %d syntax error(s)".formatted(diagnostics.size()));
+        for(int i = 0; i < Math.min(diagnostics.size(), MAX_REPORTED_ERRORS); i++){
+            builder.append(System.lineSeparator()).append(diagnostics.get(i));
+        }
+        if(diagnostics.size() > MAX_REPORTED_ERRORS){
+            builder.append(System.lineSeparator()).append("... and %d more, see getDiagnostics()".formatted(diagnostics.size() - MAX_REPORTED_ERRORS));
+        }
+        return builder.toString();
+    }
+
+    //一次分析 (或并行分析中的一段) 的状态栈, 符号栈与读头位置
+    private final class Cursor {
+        //状态栈中只存放状态的编号
+        private int[] stack = new int[64];
+        private int top = -1;
+        //符号栈中存放的是文法符号的符号序号, 见 GrammarInfo; 只在调试模式下维护, 用于检查规约时弹出的符号与产生式体是否一致
+        private int[] symbolStack = new int[64];
+        private int symbolTop = -1;
+        private int position;
+
+        private void push(int state){
+            if(++top == stack.length){
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top] = state;
+        }
+
+        //判断符号栈顶的符号与产生式体是否一一对应
+        private boolean matchesBody(int index){
+            if(symbolTop + 1 < bodyLengths[index]){
+                return false;
+            }
+            for(int num = bodyLengths[index] - 1; num >= 0; num--){
+                if(bodyOrdinals[index][num] != symbolStack[symbolTop - (bodyLengths[index] - 1 - num)]){
+                    return false;
                 }
             }
-            else{
-                throw new RuntimeException("Wrong!");
+            return true;
+        }
+
+        private void popBody(int index){
+            symbolTop -= bodyLengths[index];
+        }
+
+        private void pushSymbol(int symbol){
+            if(++symbolTop == symbolStack.length){
+                symbolStack = Arrays.copyOf(symbolStack, symbolStack.length * 2);
+            }
+            symbolStack[symbolTop] = symbol;
+        }
+    }
+
+    //驱动程序产生的事件的去向: 立即通知观察者, 或记录到事件日志中
+    private interface EventSink {
+        void shift(int state, int position);
+
+        void reduce(int state, int production);
+
+        void chainReduce(int state, ChainReduction chain);
+
+        void accept(int state);
+    }
+
+    private static final EventSink DISCARD = new EventSink() {
+        @Override
+        public void shift(int state, int position) {
+        }
+
+        @Override
+        public void reduce(int state, int production) {
+        }
+
+        @Override
+        public void chainReduce(int state, ChainReduction chain) {
+        }
+
+        @Override
+        public void accept(int state) {
+        }
+    };
+
+    private final EventSink dispatcher = new EventSink() {
+        @Override
+        public void shift(int state, int position) {
+            attributes.shift(tokens.get(position));
+            callWhenInShift(table.getStatus(state), tokens.get(position));
+        }
+
+        @Override
+        public void reduce(int state, int production) {
+            attributes.beginReduce(bodyLengths[production]);
+            callWhenInReduce(table.getStatus(state), GrammarInfo.getProduction(production));
+            attributes.endReduce();
+        }
+
+        @Override
+        public void chainReduce(int state, ChainReduction chain) {
+            //链中的产生式体都只有一个符号, 整条链的规约都作用在栈顶一行上; 对观察者而言链只是依次发生的若干次规约,
+            //每次都带着逐个规约时栈顶的状态经由处理函数表分派, 不关心单产生式的观察者不会被调用
+            final var productions = chain.productions();
+            attributes.beginReduce(1);
+            for (int i = 0; i < productions.size(); i++) {
+                callWhenInReduce(table.getStatus(chain.stateAt(i, state)), productions.get(i));
+            }
+            attributes.endReduce();
+        }
+
+        @Override
+        public void accept(int state) {
+            callWhenInAccept(table.getStatus(state));
+            attributes.clear();
+        }
+    };
+
+    private record Publisher(ParseEventRing ring) implements EventSink {
+        @Override
+        public void shift(int state, int position) {
+            ring.publishShift(state, position);
+        }
+
+        @Override
+        public void reduce(int state, int production) {
+            ring.publishReduce(state, production);
+        }
+
+        @Override
+        public void chainReduce(int state, ChainReduction chain) {
+            final var productions = chain.productions();
+            for (int i = 0; i < productions.size(); i++) {
+                ring.publishReduce(chain.stateAt(i, state), productions.get(i).index());
+            }
+        }
+
+        @Override
+        public void accept(int state) {
+            ring.publishAccept(state);
+        }
+    }
+
+    private record Recorder(ParseEventLog log) implements EventSink {
+        @Override
+        public void shift(int state, int position) {
+            log.addShift(state, position);
+        }
+
+        @Override
+        public void reduce(int state, int production) {
+            log.addReduce(state, production);
+        }
+
+        @Override
+        public void chainReduce(int state, ChainReduction chain) {
+            final var productions = chain.productions();
+            for (int i = 0; i < productions.size(); i++) {
+                log.addReduce(chain.stateAt(i, state), productions.get(i).index());
+            }
+        }
+
+        @Override
+        public void accept(int state) {
+            log.setAccept(state);
+        }
+    }
+
+    //统计移入与各产生式规约的次数, counts[0] 为移入次数, counts[i] 为第 i 个产生式的规约次数
+    private record Counter(EventSink sink, long[] counts) implements EventSink {
+        @Override
+        public void shift(int state, int position) {
+            counts[0]++;
+            sink.shift(state, position);
+        }
+
+        @Override
+        public void reduce(int state, int production) {
+            counts[production]++;
+            sink.reduce(state, production);
+        }
+
+        @Override
+        public void chainReduce(int state, ChainReduction chain) {
+            for (final var production : chain.productions()) {
+                counts[production.index()]++;
+            }
+            sink.chainReduce(state, chain);
+        }
+
+        @Override
+        public void accept(int state) {
+            sink.accept(state);
+        }
+
+        void report() {
+            long reduces = 0;
+            for (int i = 1; i < counts.length; i++) {
+                reduces += counts[i];
+                if (counts[i] > 0) {
+                    Metrics.count("parser_production_reduce_total{production=\"%s\"}".formatted(GrammarInfo.getProduction(i)), counts[i]);
+                }
             }
+            Metrics.count("parser_shift_total", counts[0]);
+            Metrics.count("parser_reduce_total", reduces);
         }
     }
 }
@@ -0,0 +1,196 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 具体语法树 (CST) 的构造器
+ * <br>
+ * 该类将自己注册为 LR 驱动程序的动作观察者, 在每次移入时新建一个叶子, 每次规约时新建一个以栈顶若干结点为孩子的内部结点,
+ * 分析结束后即得到整棵具体语法树. 树不由对象构成, 而是存放在几个平行的 int 数组中, 结点以其下标表示:
+ * <ul>
+ *     <li>kind: 内部结点为规约的产生式编号 (从 1 开始), 叶子为 -(词法单元种类的序号 + 1), 因此可以用 kind &lt; 0 判断叶子;</li>
+ *     <li>firstChild / nextSibling: 第一个孩子与下一个兄弟, 没有则为 -1;</li>
+ *     <li>tokenIndex: 叶子为其词法单元在 {@link #getTokens()} 中的下标, 内部结点为其第一个词法单元的下标, 不覆盖任何词法单元时为 -1.</li>
+ * </ul>
+ * 结点按创建顺序编号, 而 LR 分析的移入与规约顺序正是树的后序, 因此按编号从小到大遍历所有结点就是一次后序遍历, 根是编号最大的结点.
+ * 之后的各遍可以这样反复遍历这棵树, 而不必再次分析或分配任何对象.
+ */
+public class SyntaxTreeBuilder implements ActionObserver {
+    private int[] kinds = new int[256];
+    private int[] firstChildren = new int[256];
+    private int[] nextSiblings = new int[256];
+    private int[] tokenIndexes = new int[256];
+    private int nodeCount = 0;
+    private final List<Token> tokens = new ArrayList<>();
+
+    // 尚未成为任何结点的孩子的结点, 与驱动程序的状态栈一一对应
+    private int[] stack = new int[64];
+    private int top = -1;
+    private int root = -1;
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        final var node = newNode(-(currentToken.getKind().getOrdinal() + 1), tokens.size());
+        tokens.add(currentToken);
+        push(node);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        // 依次弹出产生式体对应的结点, 从后往前串成兄弟链
+        var first = -1;
+        for (int i = 0; i < production.body().size(); i++) {
+            final var child = stack[top--];
+            nextSiblings[child] = first;
+            first = child;
+        }
+
+        final var node = newNode(production.index(), first < 0 ? -1 : tokenIndexes[first]);
+        firstChildren[node] = first;
+        push(node);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // 接受代替了对起始产生式的规约 (见 ProductionCollector), 在此补上根结点
+        final var beginProduction = GrammarInfo.getBeginProduction();
+        if (top != 0 || kinds[stack[top]] != beginProduction.index()) {
+            whenReduce(currentStatus, beginProduction);
+        }
+        root = stack[top--];
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    /**
+     * @return 树根, 分析尚未接受时为 -1
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * @return 结点数, 结点的编号为 [0, getNodeCount())
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getKind(int node) {
+        return kinds[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return kinds[node] < 0;
+    }
+
+    /**
+     * @param node 内部结点
+     * @return 规约为该结点的产生式
+     */
+    public Production getProduction(int node) {
+        return GrammarInfo.getProduction(kinds[node]);
+    }
+
+    /**
+     * @param node 叶子
+     * @return 叶子的词法单元
+     */
+    public Token getToken(int node) {
+        return tokens.get(tokenIndexes[node]);
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getTokenIndex(int node) {
+        return tokenIndexes[node];
+    }
+
+    /**
+     * @return 按移入顺序排列的所有词法单元
+     */
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * 将树以缩进的形式输出到文件, 每行一个结点, 内部结点输出其产生式, 叶子输出其词法单元
+     *
+     * @param path 文件路径
+     */
+    public void dumpToFile(String path) {
+        final var lines = new ArrayList<String>(nodeCount);
+        final var pending = new int[nodeCount + 1];
+        final var depths = new int[nodeCount + 1];
+        var pendingTop = 0;
+        if (root >= 0) {
+            pending[pendingTop++] = root;
+        }
+
+        while (pendingTop > 0) {
+            final var node = pending[--pendingTop];
+            final var depth = depths[pendingTop];
+            lines.add("  ".repeat(depth) + (isLeaf(node) ? getToken(node).toString() : getProduction(node).toString()));
+
+            // 孩子逆序入栈, 以便按从左到右的顺序输出
+            final var begin = pendingTop;
+            for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+                pending[pendingTop] = child;
+                depths[pendingTop++] = depth + 1;
+            }
+            reverse(pending, begin, pendingTop);
+        }
+
+        FileUtils.writeLines(path, lines);
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            final var temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    private int newNode(int kind, int tokenIndex) {
+        if (nodeCount == kinds.length) {
+            final var capacity = nodeCount * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+        }
+
+        kinds[nodeCount] = kind;
+        firstChildren[nodeCount] = -1;
+        nextSiblings[nodeCount] = -1;
+        tokenIndexes[nodeCount] = tokenIndex;
+        return nodeCount++;
+    }
+
+    private void push(int node) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = node;
+    }
+}
@@ -38,6 +38,50 @@ public class Action {
         return errorInstance;
     }
 
+    /**
+     * 获得动作的紧凑整数编码, 以便 LR 表以 int 数组的形式存储 ACTION 部分:
+     * <ul>
+     *     <li>错误: 0</li>
+     *     <li>接受: 1</li>
+     *     <li>移入: (目标状态编号 &lt;&lt; 2) | 2</li>
+     *     <li>规约: (产生式编号 &lt;&lt; 2) | 3</li>
+     * </ul>
+     *
+     * @return 动作的编码
+     */
+    public int encode() {
+        return switch (kind) {
+            case Error -> ENCODED_ERROR;
+            case Accept -> ENCODED_ACCEPT;
+            case Shift -> (status.index() << 2) | 2;
+            case Reduce -> (production.index() << 2) | 3;
+        };
+    }
+
+    /**
+     * @param code 动作的编码
+     * @return 编码所代表的动作类型
+     */
+    public static ActionKind kindOf(int code) {
+        return switch (code & 3) {
+            case 0 -> ActionKind.Error;
+            case 1 -> ActionKind.Accept;
+            case 2 -> ActionKind.Shift;
+            default -> ActionKind.Reduce;
+        };
+    }
+
+    /**
+     * @param code 移入或规约动作的编码
+     * @return 移入的目标状态编号, 或规约的产生式编号
+     */
+    public static int operandOf(int code) {
+        return code >>> 2;
+    }
+
+    public static final int ENCODED_ERROR = 0;
+    public static final int ENCODED_ACCEPT = 1;
+
     public ActionKind getKind() {
         return kind;
     }
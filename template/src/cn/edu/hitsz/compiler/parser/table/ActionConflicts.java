@@ -0,0 +1,79 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保留冲突构造 LR 表时 (见 {@link TableGenerator#TableGenerator(TableGenerator.BuildMode, boolean)}) 被记录下来的冲突动作
+ * <br>
+ * 表本身的每个单元格只存放一个动作 (最先填入的那个), 与之冲突的其余动作以 (状态编号, 终结符序号) 为键存放在这里, 供 GLR 驱动程序使用.
+ * 无冲突的表对应 {@link #none()}.
+ */
+public class ActionConflicts {
+    /**
+     * @return 不含任何冲突的实例
+     */
+    public static ActionConflicts none() {
+        return noneInstance;
+    }
+
+    /**
+     * @param status 状态
+     * @return 该状态下是否存在冲突
+     */
+    public boolean hasConflicts(Status status) {
+        return conflictedStatuses.containsKey(status.index());
+    }
+
+    /**
+     * @param status   状态
+     * @param terminal 终结符
+     * @return 除表中的动作以外, 与之冲突的其余动作; 没有冲突时为空列表
+     */
+    public List<Action> getOthers(Status status, TokenKind terminal) {
+        final var others = conflicts.get(keyOf(status.index(), terminal));
+        return others == null ? List.of() : Collections.unmodifiableList(others);
+    }
+
+    /**
+     * @return 存在冲突的状态的个数
+     */
+    public int getConflictedStatusCount() {
+        return conflictedStatuses.size();
+    }
+
+    public boolean isEmpty() {
+        return conflicts.isEmpty();
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    ActionConflicts() {
+    }
+
+    /**
+     * 记录一个与表中已有动作冲突的动作, 重复的动作只记录一次
+     */
+    void add(Status status, TokenKind terminal, Action action) {
+        final var others = conflicts.computeIfAbsent(keyOf(status.index(), terminal), key -> new ArrayList<>(1));
+        if (!others.contains(action)) {
+            others.add(action);
+            conflictedStatuses.merge(status.index(), 1, Integer::sum);
+        }
+    }
+
+    private static long keyOf(int status, TokenKind terminal) {
+        return ((long) status << 32) | terminal.getOrdinal();
+    }
+
+    private final Map<Long, List<Action>> conflicts = new HashMap<>();
+    // 以状态编号为键, 该状态下冲突动作的个数
+    private final Map<Integer, Integer> conflictedStatuses = new HashMap<>();
+
+    private static final ActionConflicts noneInstance = new ActionConflicts();
+}
@@ -0,0 +1,26 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.List;
+
+/**
+ * 一条单产生式规约链
+ * <br>
+ * 对形如 E -> A, A -> B, B -> id 的单符号产生式, 规约 B -> id 之后在同一个向前看符号下往往紧接着规约 A -> B 与 E -> A.
+ * 这些规约每次都只弹出一个状态, 且都从同一个 "下方状态" 做 goto, 因此整条链可以一次完成: 弹出一个状态, 压入链末端的 goto 目标.
+ *
+ * @param productions 链上依次规约的产生式, 第一个为触发该链的产生式
+ * @param gotos       依次规约各产生式后 goto 到的状态, 即规约下一个产生式时栈顶的状态, 最后一个与 target 相同
+ * @param target      整条链规约完成后应压入状态栈的状态
+ */
+public record ChainReduction(List<Production> productions, List<Status> gotos, Status target) {
+    /**
+     * 获得规约链上第 i 个产生式时栈顶的状态, 即逐个规约时观察者在这次规约中看到的状态
+     *
+     * @param i     产生式在链上的下标
+     * @param first 规约链上第一个产生式时的状态编号
+     * @return 状态编号
+     */
+    public int stateAt(int i, int first) {
+        return i == 0 ? first : gotos.get(i - 1).index();
+    }
+}
@@ -0,0 +1,45 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 两个版本的文法之间的差异
+ * <br>
+ * 产生式的编号即其行号, 在文法文件被编辑后并不稳定, 因此这里以产生式的文本 (即 {@link Production#toString()}) 判断两条产生式是否相同.
+ *
+ * @param added   新文法中新增的产生式
+ * @param removed 旧文法中被删除的产生式
+ */
+public record GrammarDiff(List<Production> added, List<Production> removed) {
+    /**
+     * @param before 旧文法的产生式
+     * @param after  新文法的产生式
+     * @return 从旧文法到新文法的差异
+     */
+    public static GrammarDiff between(List<Production> before, List<Production> after) {
+        final var beforeTexts = before.stream().map(Objects::toString).collect(Collectors.toSet());
+        final var afterTexts = after.stream().map(Objects::toString).collect(Collectors.toSet());
+
+        return new GrammarDiff(
+            after.stream().filter(production -> !beforeTexts.contains(production.toString())).toList(),
+            before.stream().filter(production -> !afterTexts.contains(production.toString())).toList());
+    }
+
+    /**
+     * @return 产生式集合发生了变化的非终结符的名字
+     */
+    public Set<String> affectedHeads() {
+        final var result = new HashSet<String>();
+        added.forEach(production -> result.add(production.head().getTermName()));
+        removed.forEach(production -> result.add(production.head().getTermName()));
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+}
@@ -4,12 +4,15 @@ import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 表示 LR 文法分析表, 你不应该修改此文件
  * <br>
+ * 构造时各状态的动作与转移被编码为平铺数组 (合并相同行后的 ACTION 表, GOTO 表与默认规约), 之后不再保留构造时传入的状态.
+ * 表中的状态 (包括交给观察者的状态) 的 action/goto Map 只是这些数组之上的只读视图, 动作对象也按目标状态与产生式各只有一个,
+ * 因此每个状态不再各自持有 HashMap, 合并相同的 ACTION 行会真正减少表所占的内存.
  */
 public class LRTable {
     /**
@@ -20,8 +23,7 @@ public class LRTable {
      * @return 应采取的动作
      */
     public Action getAction(Status status, Token token) {
-        final var tokenKind = token.getKind();
-        return status.getAction(tokenKind);
+        return decode(getEncodedAction(status.index(), token.getKind().getOrdinal()));
     }
 
     /**
@@ -35,6 +37,139 @@ public class LRTable {
         return status.getGoto(nonTerminal);
     }
 
+    /**
+     * 获得状态的默认规约: 若该状态下唯一的非错误动作是规约同一个产生式, 则无需查看向前看符号即可直接规约
+     *
+     * @param status 当前状态
+     * @return 默认规约动作, 若该状态没有默认规约则返回错误动作
+     */
+    public Action getDefaultReduction(Status status) {
+        return decode(defaultReductionCodes[status.index()]);
+    }
+
+    /**
+     * 以编号获得状态
+     *
+     * @param index 状态编号
+     * @return 对应的状态
+     */
+    public Status getStatus(int index) {
+        return statusInIndexOrder.get(index);
+    }
+
+    /**
+     * 以编号查询 GOTO 表
+     *
+     * @param status             当前状态的编号
+     * @param nonTerminalOrdinal 规约出的非终结符的序号, 见 {@link GrammarInfo#getNonTerminalOrdinal(NonTerminal)}
+     * @return 应转移到的状态的编号, 不存在时为 -1
+     */
+    public int getGoto(int status, int nonTerminalOrdinal) {
+        return gotoCells[status * nonTerminalCount + nonTerminalOrdinal];
+    }
+
+    /**
+     * 以编码形式获得 ACTION 表中的动作, 编码方式见 {@link Action#encode()}
+     *
+     * @param status   当前状态
+     * @param terminal 向前看符号
+     * @return 动作的编码
+     */
+    public int getEncodedAction(Status status, TokenKind terminal) {
+        return getEncodedAction(status.index(), terminal.getOrdinal());
+    }
+
+    /**
+     * 以编号查询 ACTION 表, 结果为动作的编码, 编码方式见 {@link Action#encode()}
+     *
+     * @param status          当前状态的编号
+     * @param terminalOrdinal 向前看符号的序号, 见 {@link TokenKind#getOrdinal()}
+     * @return 动作的编码
+     */
+    public int getEncodedAction(int status, int terminalOrdinal) {
+        return actionCells[actionRowOffsets[status] + terminalOrdinal];
+    }
+
+    /**
+     * 以编码形式获得状态的默认规约
+     *
+     * @param status 当前状态的编号
+     * @return 默认规约动作的编码, 若该状态没有默认规约则为 {@link Action#ENCODED_ERROR}
+     */
+    public int getEncodedDefaultReduction(int status) {
+        return defaultReductionCodes[status];
+    }
+
+    /**
+     * @return 合并相同行之后 ACTION 表实际存储的行数
+     */
+    public int getActionRowCount() {
+        return actionCells.length / actionWidth;
+    }
+
+    /**
+     * 获得规约单符号产生式后, 在同一个向前看符号下连续发生的单产生式规约链. 结果按 (下方状态, 产生式, 向前看符号) 缓存
+     *
+     * @param below      状态栈中位于当前状态之下的状态, 即规约该产生式后做 goto 的状态
+     * @param production 要规约的产生式, 其产生式体只有一个符号
+     * @param lookahead  向前看符号
+     * @return 规约链, 至少包含 production 本身
+     */
+    public ChainReduction getChainReduction(Status below, Production production, TokenKind lookahead) {
+        return getChainReduction(below.index(), production.index(), lookahead.getOrdinal());
+    }
+
+    /**
+     * 以编号获得单产生式规约链, 见 {@link #getChainReduction(Status, Production, TokenKind)}
+     * <br>
+     * 缓存以产生式编号分组, 每组按 (下方状态, 向前看符号) 平铺为数组, 查询时不会产生任何对象. 多个线程同时填充缓存时至多重复计算, 结果相同
+     *
+     * @param below           下方状态的编号
+     * @param production      产生式编号
+     * @param lookaheadOrdinal 向前看符号的序号
+     * @return 规约链
+     */
+    public ChainReduction getChainReduction(int below, int production, int lookaheadOrdinal) {
+        var chains = chainReductions[production];
+        if (chains == null) {
+            chains = new ChainReduction[statusInIndexOrder.size() * actionWidth];
+            chainReductions[production] = chains;
+        }
+
+        final var slot = below * actionWidth + lookaheadOrdinal;
+        var chain = chains[slot];
+        if (chain == null) {
+            chain = calcChainReduction(statusInIndexOrder.get(below), GrammarInfo.getProduction(production),
+                TokenKind.allInOrdinalOrder().get(lookaheadOrdinal));
+            chains[slot] = chain;
+        }
+
+        return chain;
+    }
+
+    private ChainReduction calcChainReduction(Status below, Production production, TokenKind lookahead) {
+        final var productions = new ArrayList<Production>();
+        final var gotos = new ArrayList<Status>();
+        productions.add(production);
+        var target = below.getGoto(production.head());
+        gotos.add(target);
+
+        // 只要 goto 后的状态在该向前看符号下还是规约单符号产生式, 链就可以继续延伸
+        // 无冲突的文法中不会出现单产生式的环, 这里的长度限制只是为了防止错误的表导致死循环
+        while (productions.size() <= nonTerminals.size()) {
+            final var action = target.getAction(lookahead);
+            if (action.getKind() != Action.ActionKind.Reduce || action.getProduction().body().size() != 1) {
+                break;
+            }
+
+            productions.add(action.getProduction());
+            target = below.getGoto(action.getProduction().head());
+            gotos.add(target);
+        }
+
+        return new ChainReduction(List.copyOf(productions), List.copyOf(gotos), target);
+    }
+
     /**
      * @return 起始状态
      */
@@ -68,6 +203,27 @@ public class LRTable {
         FileUtils.writeFile(path, text.toString());
     }
 
+    /**
+     * @return 按编号顺序排列的所有状态, 第 i 个元素的编号为 i
+     */
+    public List<Status> getStatusInIndexOrder() {
+        return Collections.unmodifiableList(statusInIndexOrder);
+    }
+
+    /**
+     * @return 表中 ACTION 部分的所有终结符
+     */
+    public List<TokenKind> getTerminals() {
+        return Collections.unmodifiableList(terminals);
+    }
+
+    /**
+     * @return 表中 GOTO 部分的所有非终结符
+     */
+    public List<NonTerminal> getNonTerminals() {
+        return Collections.unmodifiableList(nonTerminals);
+    }
+
     private String convertToGotoString(Status status) {
         if (status.equals(Status.error())) {
             return "";
@@ -77,12 +233,201 @@ public class LRTable {
     }
 
     LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals) {
-        this.statusInIndexOrder = statusInIndexOrder;
         this.terminals = terminals;
         this.nonTerminals = nonTerminals;
+
+        // 以 TokenKind 的序号为列, 将每个状态的 ACTION 行编码为 int 数组, 相同的行只存一份, 所有行依次平铺在 actionCells 中
+        final var statusCount = statusInIndexOrder.size();
+        final var width = TokenKind.allInOrdinalOrder().size();
+        final var rowIndex = new HashMap<ActionRow, Integer>();
+        final var rows = new ArrayList<int[]>();
+        this.actionWidth = width;
+        this.actionRowOffsets = new int[statusCount];
+        this.defaultReductionCodes = new int[statusCount];
+
+        for (final var status : statusInIndexOrder) {
+            final var codes = new int[width];
+            var defaultReduction = Action.error();
+            var onlyOneReduction = true;
+
+            for (final var terminal : terminals) {
+                final var action = status.getAction(terminal);
+                codes[terminal.getOrdinal()] = action.encode();
+
+                if (action.getKind() == Action.ActionKind.Error) {
+                    continue;
+                }
+
+                if (action.getKind() != Action.ActionKind.Reduce
+                    || (defaultReduction.getKind() == Action.ActionKind.Reduce && !defaultReduction.equals(action))) {
+                    onlyOneReduction = false;
+                }
+                defaultReduction = action;
+            }
+
+            actionRowOffsets[status.index()] = width * rowIndex.computeIfAbsent(new ActionRow(codes), row -> {
+                rows.add(row.codes());
+                return rows.size() - 1;
+            });
+            defaultReductionCodes[status.index()] = onlyOneReduction ? defaultReduction.encode() : Action.ENCODED_ERROR;
+        }
+
+        this.actionCells = new int[rows.size() * width];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, actionCells, i * width, width);
+        }
+
+        // GOTO 表以非终结符序号为列, 同样平铺为一维数组
+        this.nonTerminalOrdinals = new HashMap<>();
+        for (final var nonTerminal : nonTerminals) {
+            nonTerminalOrdinals.put(nonTerminal, GrammarInfo.getNonTerminalOrdinal(nonTerminal));
+        }
+        this.nonTerminalCount = GrammarInfo.getNonTerminals().size();
+        this.gotoCells = new int[statusCount * nonTerminalCount];
+        Arrays.fill(gotoCells, -1);
+        for (final var status : statusInIndexOrder) {
+            for (final var nonTerminal : nonTerminals) {
+                gotoCells[status.index() * nonTerminalCount + nonTerminalOrdinals.get(nonTerminal)] = status.getGoto(nonTerminal).index();
+            }
+        }
+
+        // 以视图代替传入状态中的 HashMap, 移入与规约动作按目标状态与产生式各构造一次
+        final var statuses = new ArrayList<Status>(statusCount);
+        this.shiftActions = new Action[statusCount];
+        for (int i = 0; i < statusCount; i++) {
+            final var status = new Status(i, new ActionView(i), new GotoView(i));
+            statuses.add(status);
+            shiftActions[i] = Action.shift(status);
+        }
+        this.statusInIndexOrder = List.copyOf(statuses);
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        this.reduceActions = new Action[productions.size() + 1];
+        for (final var production : productions) {
+            reduceActions[production.index()] = Action.reduce(production);
+        }
+
+        this.chainReductions = new ChainReduction[productions.size() + 1][];
+    }
+
+    /**
+     * 将动作的编码还原为动作, 同一编码总是得到同一个对象
+     *
+     * @param code 动作的编码, 见 {@link Action#encode()}
+     * @return 对应的动作
+     */
+    public Action decode(int code) {
+        return switch (Action.kindOf(code)) {
+            case Error -> Action.error();
+            case Accept -> Action.accept();
+            case Shift -> shiftActions[Action.operandOf(code)];
+            case Reduce -> reduceActions[Action.operandOf(code)];
+        };
+    }
+
+    /**
+     * 某一状态的 ACTION 行在平铺数组上的只读视图, 只包含非错误的动作
+     */
+    private final class ActionView extends AbstractMap<TokenKind, Action> {
+        private final int status;
+
+        private ActionView(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public Action get(Object key) {
+            if (!(key instanceof TokenKind terminal)) {
+                return null;
+            }
+
+            final var code = getEncodedAction(status, terminal.getOrdinal());
+            return code == Action.ENCODED_ERROR ? null : decode(code);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<TokenKind, Action>> entrySet() {
+            final var entries = new LinkedHashMap<TokenKind, Action>();
+            for (final var terminal : terminals) {
+                final var action = get(terminal);
+                if (action != null) {
+                    entries.put(terminal, action);
+                }
+            }
+            return Collections.unmodifiableMap(entries).entrySet();
+        }
+    }
+
+    /**
+     * 某一状态的 GOTO 行在平铺数组上的只读视图, 只包含存在的转移
+     */
+    private final class GotoView extends AbstractMap<NonTerminal, Status> {
+        private final int status;
+
+        private GotoView(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public Status get(Object key) {
+            final var ordinal = nonTerminalOrdinals.get(key);
+            if (ordinal == null) {
+                return null;
+            }
+
+            final var goto_ = getGoto(status, ordinal);
+            return goto_ < 0 ? null : statusInIndexOrder.get(goto_);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<NonTerminal, Status>> entrySet() {
+            final var entries = new LinkedHashMap<NonTerminal, Status>();
+            for (final var nonTerminal : nonTerminals) {
+                final var goto_ = get(nonTerminal);
+                if (goto_ != null) {
+                    entries.put(nonTerminal, goto_);
+                }
+            }
+            return Collections.unmodifiableMap(entries).entrySet();
+        }
+    }
+
+    /**
+     * ACTION 表中的一行, 以内容判等, 用于合并相同的行
+     */
+    private record ActionRow(int[] codes) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ActionRow row && Arrays.equals(row.codes, codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(codes);
+        }
     }
 
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
+    private final int actionWidth;
+    private final int[] actionCells;
+    private final int[] actionRowOffsets;
+    private final int nonTerminalCount;
+    private final int[] gotoCells;
+    private final int[] defaultReductionCodes;
+    private final Map<NonTerminal, Integer> nonTerminalOrdinals;
+    private final Action[] shiftActions;
+    private final Action[] reduceActions;
+    private final ChainReduction[][] chainReductions;
 }
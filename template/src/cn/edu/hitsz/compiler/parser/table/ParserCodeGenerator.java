@@ -0,0 +1,260 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.CompiledSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 将 LR 分析表编译为 Java 代码形式的语法分析器
+ * <br>
+ * 生成的类继承 {@link CompiledSyntaxAnalyzer}. 每个状态编译为一个方法, 在其中按当前词法单元的序号 switch 出写死的移入/规约动作,
+ * 有默认规约的状态不查看向前看符号; parse 方法只按状态所在的组 (每组 {@value #STATES_PER_GROUP} 个状态) 分派给组方法,
+ * 组方法再分派给状态方法. 这样即使状态很多, 每个方法也都远小于 JIT 内联与编译的字节码上限以及 64KB 的方法上限.
+ * <br>
+ * 每个产生式编译为一个规约方法与一个语义钩子 whenReduceN, 规约方法中写死了产生式体的长度与头部的序号; 钩子默认通知绑定在该产生式上的
+ * 观察者, 继承生成的类并覆盖钩子即可把语义动作直接写在代码中. 单符号产生式的规约与 SyntaxAnalyzer 一样按单产生式规约链一次完成.
+ */
+public class ParserCodeGenerator {
+    public static final int STATES_PER_GROUP = 64;
+
+    public ParserCodeGenerator(LRTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     * @return 生成的 Java 源代码
+     */
+    public String generate(String packageName, String className) {
+        final var code = new StringBuilder();
+        code.append("package ").append(packageName).append(";\n\n");
+        code.append("import cn.edu.hitsz.compiler.parser.CompiledSyntaxAnalyzer;\n");
+        code.append("import cn.edu.hitsz.compiler.symtab.SymbolTable;\n\n");
+        code.append("/**\n * 由 ParserCodeGenerator 生成, 请勿手动修改. 需要内嵌语义动作时继承该类并覆盖 whenReduceN\n */\n");
+        code.append("public class ").append(className).append(" extends CompiledSyntaxAnalyzer {\n");
+        code.append("    public ").append(className).append("(SymbolTable symbolTable) {\n");
+        code.append("        super(symbolTable);\n");
+        code.append("    }\n\n");
+
+        final var statuses = table.getStatusInIndexOrder();
+        final var groups = (statuses.size() + STATES_PER_GROUP - 1) / STATES_PER_GROUP;
+        code.append("    @Override\n");
+        code.append("    protected void parse() {\n");
+        code.append("        push(%d);\n".formatted(table.getInit().index()));
+        code.append("        var accepted = false;\n");
+        code.append("        while (!accepted) {\n");
+        code.append("            final var state = top();\n");
+        code.append("            accepted = switch (state / %d) {\n".formatted(STATES_PER_GROUP));
+        for (int group = 0; group < groups; group++) {
+            code.append("                case %d -> group%d(state);\n".formatted(group, group));
+        }
+        code.append("                default -> throw new IllegalStateException(\"Unknown status \" + state);\n");
+        code.append("            };\n");
+        code.append("        }\n");
+        code.append("    }\n");
+
+        for (int group = 0; group < groups; group++) {
+            generateGroup(code, group, statuses.subList(group * STATES_PER_GROUP, Math.min(statuses.size(), (group + 1) * STATES_PER_GROUP)));
+        }
+        for (final var status : statuses) {
+            generateStatus(code, status);
+        }
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        for (final var production : productions) {
+            generateReduce(code, production);
+        }
+        generateChainDispatch(code, productions);
+        for (final var production : productions) {
+            generateHook(code, production);
+        }
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 生成代码并写入文件
+     *
+     * @param path        文件路径
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     */
+    public void dump(String path, String packageName, String className) {
+        FileUtils.writeFile(path, generate(packageName, className));
+    }
+
+    /**
+     * 生成代码并用当前 JDK 自带的编译器编译, 加载到一个新的类加载器中. 用于不经过构建过程直接使用生成的分析器, 例如测试与基准测试
+     *
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     * @return 以符号表构造生成的分析器的函数
+     * @throws RuntimeException 当前运行在没有编译器的 JRE 上, 或生成的代码编译失败
+     */
+    public Function<SymbolTable, CompiledSyntaxAnalyzer> compile(String packageName, String className) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No system Java compiler, generated parsers can only be compiled on a JDK");
+        }
+
+        try {
+            final var directory = Files.createTempDirectory("parser");
+            final var source = directory.resolve(className + ".java");
+            Files.writeString(source, generate(packageName, className));
+
+            final var errors = new ByteArrayOutputStream();
+            final var result = compiler.run(null, null, errors,
+                "-encoding", "UTF-8", "-d", directory.toString(), "-classpath", System.getProperty("java.class.path"), source.toString());
+            deleteOnExit(directory);
+            if (result != 0) {
+                throw new RuntimeException("Failed to compile generated parser " + className + ":\n" + errors);
+            }
+
+            final var loader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, CompiledSyntaxAnalyzer.class.getClassLoader());
+            final var constructor = loader.loadClass(packageName + "." + className)
+                .asSubclass(CompiledSyntaxAnalyzer.class)
+                .getConstructor(SymbolTable.class);
+            return symbolTable -> {
+                try {
+                    return constructor.newInstance(symbolTable);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("Failed to instantiate generated parser " + className, e);
+                }
+            };
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to load generated parser " + className, e);
+        }
+    }
+
+    private final LRTable table;
+
+    private static void deleteOnExit(Path directory) throws IOException {
+        // deleteOnExit 按登记的逆序删除, 目录先于其中的文件登记, 退出时便先删文件再删目录
+        try (final var paths = Files.walk(directory)) {
+            paths.forEach(path -> path.toFile().deleteOnExit());
+        }
+    }
+
+    private void generateGroup(StringBuilder code, int group, List<Status> statuses) {
+        code.append("\n");
+        code.append("    private boolean group%d(int state) {\n".formatted(group));
+        code.append("        return switch (state) {\n");
+        for (final var status : statuses) {
+            code.append("            case %d -> state%d();\n".formatted(status.index(), status.index()));
+        }
+        code.append("            default -> throw new IllegalStateException(\"Unknown status \" + state);\n");
+        code.append("        };\n");
+        code.append("    }\n");
+    }
+
+    private void generateStatus(StringBuilder code, Status status) {
+        final var state = status.index();
+        code.append("\n");
+        code.append("    // %s\n".formatted(status));
+        code.append("    private boolean state%d() {\n".formatted(state));
+
+        // 默认规约不需要查看向前看符号
+        final var defaultReduction = table.getDefaultReduction(status);
+        if (defaultReduction.getKind() == Action.ActionKind.Reduce) {
+            code.append("        // default: %s\n".formatted(defaultReduction));
+            code.append("        reduce%d(%d);\n".formatted(defaultReduction.getProduction().index(), state));
+            code.append("        return false;\n");
+            code.append("    }\n");
+            return;
+        }
+
+        // 把动作相同的终结符合并为同一个 case
+        final var terminalsOfAction = new LinkedHashMap<Action, List<TokenKind>>();
+        for (final var terminal : table.getTerminals()) {
+            final var action = status.getAction(terminal);
+            if (action.getKind() != Action.ActionKind.Error) {
+                terminalsOfAction.computeIfAbsent(action, key -> new ArrayList<>()).add(terminal);
+            }
+        }
+
+        code.append("        switch (lookahead()) {\n");
+        for (final var entry : terminalsOfAction.entrySet()) {
+            final var action = entry.getKey();
+            final var terminals = entry.getValue();
+            final var labels = terminals.stream().map(terminal -> Integer.toString(terminal.getOrdinal())).collect(Collectors.joining(", "));
+            final var names = terminals.stream().map(TokenKind::getIdentifier).collect(Collectors.joining(" "));
+
+            code.append("            // %s: %s\n".formatted(names, action));
+            switch (action.getKind()) {
+                case Shift -> code.append("            case %s -> shift(%d, %d);\n"
+                    .formatted(labels, state, action.getStatus().index()));
+                case Reduce -> code.append("            case %s -> reduce%d(%d);\n"
+                    .formatted(labels, action.getProduction().index(), state));
+                case Accept -> {
+                    code.append("            case %s -> {\n".formatted(labels));
+                    code.append("                accept(%d);\n".formatted(state));
+                    code.append("                return true;\n");
+                    code.append("            }\n");
+                }
+                default -> throw new RuntimeException("Unexpected action " + action);
+            }
+        }
+        code.append("            default -> error(%d);\n".formatted(state));
+        code.append("        }\n");
+        code.append("        return false;\n");
+        code.append("    }\n");
+    }
+
+    private void generateReduce(StringBuilder code, Production production) {
+        final var index = production.index();
+        final var length = production.body().size();
+        code.append("\n");
+        code.append("    // %s\n".formatted(production));
+        code.append("    private void reduce%d(int state) {\n".formatted(index));
+        if (length == 1) {
+            code.append("        chainReduce(state, %d);\n".formatted(index));
+        } else {
+            code.append("        beginReduce(%d);\n".formatted(length));
+            code.append("        whenReduce%d(state);\n".formatted(index));
+            code.append("        endReduce(%d, %d);\n".formatted(length, GrammarInfo.getNonTerminalOrdinal(production.head())));
+        }
+        code.append("    }\n");
+    }
+
+    // 单产生式规约链中只会出现单符号产生式, 只需为它们分派
+    private void generateChainDispatch(StringBuilder code, List<Production> productions) {
+        code.append("\n");
+        code.append("    @Override\n");
+        code.append("    protected void whenChainReduce(int state, int production) {\n");
+        code.append("        switch (production) {\n");
+        for (final var production : productions) {
+            if (production.body().size() == 1) {
+                code.append("            case %d -> whenReduce%d(state);\n".formatted(production.index(), production.index()));
+            }
+        }
+        code.append("            default -> throw new IllegalStateException(\"Not a unit production \" + production);\n");
+        code.append("        }\n");
+        code.append("    }\n");
+    }
+
+    private void generateHook(StringBuilder code, Production production) {
+        code.append("\n");
+        code.append("    /**\n");
+        code.append("     * 规约 %s 时的语义动作, 默认通知绑定在该产生式上的观察者\n".formatted(production));
+        code.append("     */\n");
+        code.append("    protected void whenReduce%d(int state) {\n".formatted(production.index()));
+        code.append("        notifyReduce(state, %d);\n".formatted(production.index()));
+        code.append("    }\n");
+    }
+}
@@ -0,0 +1,15 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+/**
+ * 语句列表的同步符号, 由 {@link GrammarInfo#getSyncSymbols()} 从文法中找出
+ * <br>
+ * 对形如 L -> X t L 与 L -> X t 的语句列表, 每条语句 X 都以终结符 t 结尾. 驱动程序在 t 处切分词法单元流以按语句并行地分析,
+ * 也在 t 处从语法错误中恢复 (把出错的语句当作一个 X).
+ *
+ * @param statement  语句的非终结符
+ * @param terminator 语句的结束符
+ */
+public record SyncSymbols(NonTerminal statement, TokenKind terminator) {
+}
@@ -0,0 +1,203 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 以文法指纹为键缓存 TableGenerator 构造出的 LR 分析表
+ * <br>
+ * 指纹为缓存格式版本 {@link #FORMAT_VERSION}, 语法文件, 码点文件, 构造模式以及是否保留冲突的 SHA-256,
+ * 缓存文件以指纹命名存放在缓存目录 (默认为 {@link FilePathConfig#LR_TABLE_CACHE_DIR}) 中.
+ * 命中时直接从缓存读取分析表; 未命中时调用 TableGenerator 构造, 并先写入临时文件再原子地移动到缓存位置,
+ * 这样即使构造中途被打断或有多个进程同时构造, 也不会留下不完整的缓存文件. 只修改源程序时文法不变, 因此永远不必重新构造分析表.
+ * <br>
+ * 缓存文件的格式为: 第一行是空格分割的终结符, 第二行是空格分割的非终结符, 之后每行依次是一个状态在各终结符上的动作与在各非终结符上的转移.
+ * 动作写作 s[状态编号], r[产生式编号], acc, 转移写作 [状态编号], 错误动作与转移均写作 -. 保留冲突的表中, 有冲突的单元格依次写出所有动作,
+ * 以 / 分割, 第一个是表中的动作.
+ */
+public class TableCache {
+    /**
+     * 缓存格式与表构造算法的版本. 缓存文件只以输入文件为指纹, 因此每当 TableGenerator 构造出的表的内容 (状态编号, 动作的选择等)
+     * 或缓存文件的格式发生变化时, 都必须增加该版本号, 使旧的缓存文件失效
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    public TableCache() {
+        this(TableGenerator.BuildMode.Sequential);
+    }
+
+    public TableCache(TableGenerator.BuildMode mode) {
+        this(FilePathConfig.LR_TABLE_CACHE_DIR, mode, false);
+    }
+
+    /**
+     * @param cacheDir      缓存目录
+     * @param mode          未命中时构造分析表的方式
+     * @param keepConflicts 是否保留冲突, 见 {@link TableGenerator#TableGenerator(TableGenerator.BuildMode, boolean)}
+     */
+    public TableCache(String cacheDir, TableGenerator.BuildMode mode, boolean keepConflicts) {
+        this.cacheDir = cacheDir;
+        this.mode = mode;
+        this.keepConflicts = keepConflicts;
+    }
+
+    /**
+     * 获取当前文法对应的 LR 分析表, 必要时构造并写入缓存
+     *
+     * @return LR 分析表
+     */
+    public LRTable load() {
+        final var path = Paths.get(cacheDir, "lr-%s.txt".formatted(fingerprint()));
+        if (Files.exists(path)) {
+            conflicts = new ActionConflicts();
+            return read(FileUtils.readLines(path.toString()), conflicts);
+        }
+
+        final var generator = new TableGenerator(mode, keepConflicts);
+        generator.run();
+        final var table = generator.getTable();
+        conflicts = generator.getConflicts();
+        store(path, write(table, conflicts));
+        return table;
+    }
+
+    /**
+     * @return 上一次 load 得到的表中的冲突动作, 不保留冲突时总是为空
+     */
+    public ActionConflicts getConflicts() {
+        return conflicts;
+    }
+
+    private final String cacheDir;
+    private final TableGenerator.BuildMode mode;
+    private final boolean keepConflicts;
+    private ActionConflicts conflicts = ActionConflicts.none();
+
+    private String fingerprint() {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update("lr-table-cache %d\n".formatted(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+            for (final var input : List.of(GrammarInfo.getGrammarPath(), FilePathConfig.CODING_MAP_PATH)) {
+                final var bytes = Files.readAllBytes(Paths.get(input));
+                // 先写入长度, 避免两个文件的内容拼接后产生歧义
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(bytes);
+            }
+            digest.update("%s %b".formatted(mode.name(), keepConflicts).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception while fingerprinting grammar", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void store(Path path, List<String> lines) {
+        try {
+            Files.createDirectories(path.getParent());
+            final var temp = Files.createTempFile(path.getParent(), "lr-", ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    private static List<String> write(LRTable table, ActionConflicts conflicts) {
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+
+        final var lines = new ArrayList<String>();
+        lines.add(String.join(" ", terminals.stream().map(Term::getTermName).toList()));
+        lines.add(String.join(" ", nonTerminals.stream().map(Term::getTermName).toList()));
+
+        for (final var status : table.getStatusInIndexOrder()) {
+            final var cells = new ArrayList<String>();
+            for (final var terminal : terminals) {
+                final var cell = new StringBuilder(encodeAction(status.getAction(terminal)));
+                for (final var other : conflicts.getOthers(status, terminal)) {
+                    cell.append('/').append(encodeAction(other));
+                }
+                cells.add(cell.toString());
+            }
+            for (final var nonTerminal : nonTerminals) {
+                final var goto_ = status.getGoto(nonTerminal);
+                cells.add(goto_.isError() ? "-" : Integer.toString(goto_.index()));
+            }
+            lines.add(String.join(" ", cells));
+        }
+
+        return lines;
+    }
+
+    private static String encodeAction(Action action) {
+        return switch (action.getKind()) {
+            case Shift -> "s" + action.getStatus().index();
+            case Reduce -> "r" + action.getProduction().index();
+            case Accept -> "acc";
+            case Error -> "-";
+        };
+    }
+
+    private static Action decodeAction(String cell, List<Status> statusInIndexOrder) {
+        return switch (cell.charAt(0)) {
+            case 's' -> Action.shift(statusInIndexOrder.get(Integer.parseInt(cell.substring(1))));
+            case 'r' -> Action.reduce(GrammarInfo.getProduction(Integer.parseInt(cell.substring(1))));
+            case 'a' -> Action.accept();
+            case '-' -> Action.error();
+            default -> throw new RuntimeException("Illegal action in table cache: " + cell);
+        };
+    }
+
+    private static LRTable read(List<String> lines, ActionConflicts conflicts) {
+        final var terminals = Arrays.stream(lines.get(0).split(" ")).map(TokenKind::fromString).toList();
+        final var nonTerminals = Arrays.stream(lines.get(1).split(" ")).map(GrammarInfo::getNonTerminal).toList();
+
+        final var rows = lines.subList(2, lines.size());
+        final var statusInIndexOrder = new ArrayList<Status>(rows.size());
+        for (int idx = 0; idx < rows.size(); idx++) {
+            statusInIndexOrder.add(Status.create(idx));
+        }
+
+        for (int idx = 0; idx < rows.size(); idx++) {
+            final var status = statusInIndexOrder.get(idx);
+            final var cells = rows.get(idx).split(" ");
+
+            for (int col = 0; col < terminals.size(); col++) {
+                final var alternatives = cells[col].split("/");
+                status.setAction(terminals.get(col), decodeAction(alternatives[0], statusInIndexOrder));
+                for (int i = 1; i < alternatives.length; i++) {
+                    conflicts.add(status, terminals.get(col), decodeAction(alternatives[i], statusInIndexOrder));
+                }
+            }
+
+            for (int col = 0; col < nonTerminals.size(); col++) {
+                final var cell = cells[terminals.size() + col];
+                final var goto_ = cell.equals("-") ? Status.error() : statusInIndexOrder.get(Integer.parseInt(cell));
+                status.setGoto(nonTerminals.get(col), goto_);
+            }
+        }
+
+        return new LRTable(statusInIndexOrder, terminals, nonTerminals);
+    }
+}
@@ -4,8 +4,9 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * 根据语法文件构造 LR 分析表.
@@ -13,10 +14,38 @@ import java.util.stream.Stream;
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
  */
 public class TableGenerator {
+    /**
+     * 规范项目集族的构造方式
+     * <br>
+     * Parallel 模式逐层地在 ForkJoinPool 上并行求出 BFS 同一层所有状态的后继项目集, 适合于大型文法; 两种模式构造出的状态编号完全一致
+     */
+    public enum BuildMode {Sequential, Parallel}
+
     public TableGenerator() {
+        this(BuildMode.Sequential);
+    }
+
+    public TableGenerator(BuildMode mode) {
+        this(mode, false);
+    }
+
+    /**
+     * @param mode          规范项目集族的构造方式
+     * @param keepConflicts 为 true 时, 动作冲突不会报错, 表中保留最先填入的动作, 其余动作记录在 {@link #getConflicts()} 中,
+     *                      构造出的表只能与冲突一起交给 GLR 驱动程序使用
+     */
+    public TableGenerator(BuildMode mode, boolean keepConflicts) {
+        this.mode = mode;
+        this.keepConflicts = keepConflicts;
         this.productions = GrammarInfo.getProductionsInOrder();
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
         this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        // 按 GrammarInfo 的非终结符序号与 TokenKind 的序号排序, 使编号与输出顺序不依赖于 HashSet 的遍历顺序
+        this.nonTerminalsInOrder = nonTerminals.stream()
+            .sorted(Comparator.comparingInt(GrammarInfo::getNonTerminalOrdinal)).toList();
+        this.terminalsInOrder = terminals.stream()
+            .sorted(Comparator.comparingInt(TokenKind::getOrdinal)).toList();
+        this.words = (TokenKind.allInOrdinalOrder().size() + 63) >>> 6;
 
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
@@ -27,22 +56,43 @@ public class TableGenerator {
      * 主体方法
      */
     public void run() {
+        indexGrammar();
         calcFirst();
         calcFollow();
         constructDFA();
-        dumpItems();
         genTable();
     }
 
     /**
-     * 将该分析表生成的 LR(0) 规范集族打印到某个文件之中, 用于调试
+     * 在文法被编辑后, 基于旧文法的构造结果增量地构造分析表
+     * <br>
+     * 调用前应先以 {@link GrammarInfo#reload()} 读入新文法再构造本对象. 只有产生式集合发生变化的非终结符 (见 {@link GrammarDiff})
+     * 会影响到项集闭包, 闭包中不含这些非终结符的旧状态会直接复用旧的闭包; 与旧状态核相同的新状态会尽量沿用旧状态的编号.
+     * first/follow 与 action/goto 的填充都是线性的, 仍然全部重新计算.
+     *
+     * @param previous 已经对旧文法执行过 run 或 runIncremental 的构造器
+     */
+    public void runIncremental(TableGenerator previous) {
+        if (previous.stateItems.isEmpty()) {
+            throw new RuntimeException("The previous table generator has not been run yet");
+        }
+
+        indexGrammar();
+        calcFirst();
+        calcFollow();
+        constructDFAIncrementally(previous, GrammarDiff.between(previous.productions, productions));
+        genTable();
+    }
+
+    /**
+     * 将该分析表生成的 LR(0) 规范集族打印到 data/out/items.txt 之中, 用于调试. 需在 run 或 runIncremental 之后调用
      */
     public void dumpItems() {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+            for (final var item : stateItems.get(status.index())) {
+                lines.add("    " + itemToString(item));
             }
         }
 
@@ -53,352 +103,800 @@ public class TableGenerator {
      * @return 构造出的 LR 表
      */
     public LRTable getTable() {
-        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
+        return new LRTable(allStatusInIndexOrder, terminalsInOrder, nonTerminalsInOrder);
     }
 
+    /**
+     * @return 保留冲突构造时记录下的冲突动作; 不保留冲突时总是为空
+     */
+    public ActionConflicts getConflicts() {
+        return conflicts;
+    }
+
+    private final BuildMode mode;
+    private final boolean keepConflicts;
+    private final ActionConflicts conflicts = new ActionConflicts();
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
 
-    private final Map<Term, Set<TokenKind>> first = new HashMap<>();
-    private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
+    /**
+     * 非终结符的稠密编号, 与 {@link GrammarInfo#getNonTerminalOrdinal(NonTerminal)} 相同; 终结符则直接使用 {@link TokenKind#getOrdinal()} 作为编号
+     */
+    private final List<NonTerminal> nonTerminalsInOrder;
+    private final Map<NonTerminal, Integer> nonTerminalIndex = new HashMap<>();
+
+    /**
+     * 每个终结符位集所需的 long 个数
+     */
+    private final int words;
+
+    /**
+     * 以非终结符编号为下标的 nullable 标记与 first/follow 位集, 位集的第 i 位代表序号为 i 的终结符
+     */
+    private boolean[] nullable;
+    private long[][] first;
+    private long[][] follow;
 
-    private final Set<Term> visited = new HashSet<>();
+    /**
+     * usedBy[A] 为产生式体中出现了 A 的产生式下标, definedBy[A] 为以 A 为头的产生式下标
+     */
+    private int[][] usedBy;
+    private int[][] definedBy;
 
     /**
-     * 计算所有符号的 first 集合 <br>
-     * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
+     * 以不动点迭代计算所有非终结符的 nullable 与 first 集合 <br>
+     * 每当某个非终结符的结果发生变化, 只有在产生式体中用到了它的产生式需要被重新计算, 因此采用工作表而不是反复全量扫描
      */
     private void calcFirst() {
-        for (final var terminal : terminals) {
-            first.put(terminal, Set.of(terminal));
-        }
+        final var n = nonTerminalsInOrder.size();
+        nullable = new boolean[n];
+        first = new long[n][words];
 
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFirst(nonTerminal);
+        final var worklist = new Worklist(productions.size());
+        for (int i = 0; i < productions.size(); i++) {
+            worklist.push(i);
         }
 
-    }
+        final var bodyFirst = new long[words];
+        while (!worklist.isEmpty()) {
+            final var production = productions.get(worklist.pop());
+            final var head = indexOf(production.head());
 
-    /**
-     * 递归计算特定非终结符的 first
-     *
-     * @param nonTerminal 非终结符
-     * @return 其 first 集合
-     */
-    private Set<TokenKind> calcFirst(Term nonTerminal) {
-        // 如果已经被计算, 则直接返回缓存的结果
-        if (first.containsKey(nonTerminal)) {
-            return first.get(nonTerminal);
-        }
-
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
+            Arrays.fill(bodyFirst, 0);
+            final var bodyNullable = firstOfSequence(production.body(), bodyFirst);
+
+            var changed = or(first[head], bodyFirst);
+            if (bodyNullable && !nullable[head]) {
+                nullable[head] = true;
+                changed = true;
+            }
+
+            if (changed) {
+                for (final var user : usedBy[head]) {
+                    worklist.push(user);
                 }
             }
         }
-
-        first.put(nonTerminal, result);
-        return result;
     }
 
-
     /**
-     * 计算所有非终结符的 follow 集合
+     * 以不动点迭代计算所有非终结符的 follow 集合 <br>
+     * 对产生式 A -> alpha B beta, first(beta) 属于 follow(B), 且当 beta 可空时 follow(A) 也属于 follow(B).
+     * 只有 follow(A) 的变化会影响其它结果, 所以当 follow(A) 变化时只需重新计算以 A 为头的产生式
      */
     private void calcFollow() {
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFollow(nonTerminal);
+        final var n = nonTerminalsInOrder.size();
+        follow = new long[n][words];
+        // 文法的开始符号后面紧跟着 EOF
+        set(follow[indexOf(productions.get(0).head())], TokenKind.eof().getOrdinal());
+
+        final var worklist = new Worklist(productions.size());
+        for (int i = 0; i < productions.size(); i++) {
+            worklist.push(i);
+        }
+
+        final var trailer = new long[words];
+        while (!worklist.isEmpty()) {
+            final var production = productions.get(worklist.pop());
+            final var body = production.body();
+
+            // 从产生式体末尾向前扫描, trailer 为当前符号之后的串的 first 集合 (若其可空则并上 follow(A))
+            System.arraycopy(follow[indexOf(production.head())], 0, trailer, 0, words);
+            for (int i = body.size() - 1; i >= 0; i--) {
+                final var symbol = body.get(i);
+                if (symbol instanceof TokenKind tokenKind) {
+                    Arrays.fill(trailer, 0);
+                    set(trailer, tokenKind.getOrdinal());
+                } else {
+                    final var idx = indexOf(symbol);
+                    if (or(follow[idx], trailer)) {
+                        for (final var definition : definedBy[idx]) {
+                            worklist.push(definition);
+                        }
+                    }
+
+                    if (!nullable[idx]) {
+                        Arrays.fill(trailer, 0);
+                    }
+                    or(trailer, first[idx]);
+                }
+            }
         }
 
         // 对于找完所有产生式了都还没没有 follow 的非终结符
         // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
-        nonTerminals.stream()
-            .map(follow::get).filter(Set::isEmpty)
-            .forEach(set -> set.add(TokenKind.eof()));
+        for (final var set : follow) {
+            if (isEmpty(set)) {
+                set(set, TokenKind.eof().getOrdinal());
+            }
+        }
     }
 
     /**
-     * 递归计算给定非终结符的 follow 集合
+     * 计算符号串 body 的 first 集合, 并将其并入 result
      *
-     * @param nonTerminal 给定的非终止符
-     * @return 其 follow 集合
+     * @return 该符号串是否可空
      */
-    private Set<TokenKind> calcFollow(NonTerminal nonTerminal) {
-        // 与 first 类似, 先查找缓存
-        if (follow.containsKey(nonTerminal)) {
-            return follow.get(nonTerminal);
+    private boolean firstOfSequence(List<Term> body, long[] result) {
+        for (final var symbol : body) {
+            if (symbol instanceof TokenKind tokenKind) {
+                set(result, tokenKind.getOrdinal());
+                return false;
+            }
+
+            final var idx = indexOf(symbol);
+            or(result, first[idx]);
+            if (!nullable[idx]) {
+                return false;
+            }
         }
 
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            final var body = production.body();
+        return true;
+    }
 
-            // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
-            // 我们直接枚举每条产生式体的每个项
-            for (int i = 0; i < body.size() - 1; i++) {
-                // 如果发现目前的 curr 的话, 后面跟着的符号的 first 就是它的 follow
-                final var symbol = body.get(i);
-                final var next = body.get(i + 1);
+    /**
+     * 为非终结符编号, 并建立 "用到某非终结符的产生式" 与 "定义某非终结符的产生式" 两个反向索引
+     */
+    private void indexGrammar() {
+        for (int i = 0; i < nonTerminalsInOrder.size(); i++) {
+            nonTerminalIndex.put(nonTerminalsInOrder.get(i), i);
+        }
 
-                if (symbol.equals(nonTerminal)) {
-                    result.addAll(first.get(next));
-                }
-            }
+        final var users = new ArrayList<List<Integer>>();
+        final var definitions = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminalsInOrder.size(); i++) {
+            users.add(new ArrayList<>());
+            definitions.add(new ArrayList<>());
+        }
 
-            // 如果该非终结符出现在产生式的末尾, 那么该产生式的头的 follow 集合也要加入其 follow 集合中
-            final var lastInBody = body.get(body.size() - 1);
-            if (lastInBody.equals(nonTerminal)) {
-                final var head = production.head();
-                if (visited.contains(head)) {
-                    // 如果该产生式头已经在栈中了, 那么意味着这个非终结符有可能一直展开自己
-                    // 这时候 EOF 也可能是它的 Follow
-                    result.add(TokenKind.eof());
-                } else {
-                    // 否则直接递归查找
-                    visited.add(head);
-                    result.addAll(calcFollow(head));
+        for (int i = 0; i < productions.size(); i++) {
+            final var production = productions.get(i);
+            definitions.get(indexOf(production.head())).add(i);
+            for (final var symbol : production.body()) {
+                if (symbol instanceof NonTerminal) {
+                    final var list = users.get(indexOf(symbol));
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                        list.add(i);
+                    }
                 }
             }
         }
 
-        follow.put(nonTerminal, result);
-        return result;
+        usedBy = toArrays(users);
+        definedBy = toArrays(definitions);
+    }
+
+    private int indexOf(Term nonTerminal) {
+        final var idx = nonTerminalIndex.get(nonTerminal);
+        if (idx == null) {
+            throw new RuntimeException("Unknown non-terminal: " + nonTerminal);
+        }
+
+        return idx;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        return lists.stream()
+            .map(list -> list.stream().mapToInt(Integer::intValue).toArray())
+            .toArray(int[][]::new);
+    }
+
+    //==================== 终结符位集操作 ==============================//
+
+    private static void set(long[] bits, int ordinal) {
+        bits[ordinal >>> 6] |= 1L << ordinal;
     }
 
     /**
-     * 表示一个项目
-     * <br>
-     * 对于 A -> B . C, 其 production 为 A -> B C, dot 为 1 (其下一个项 C 的索引) <br>
-     * 对于 A -> B C ., 其 production 为 A -> B C, dot 为 2 (其产生式体的项数量) <br>
+     * 将 from 并入 to
      *
-     * @param production 产生式
-     * @param dot        目前解析到的位置
+     * @return to 是否发生了变化
      */
-    private record Item(Production production, int dot) {
-        /**
-         * @return 点的位置是否在产生式的末尾
-         */
-        public boolean isDotAtEnd() {
-            return production.body().size() == dot;
-        }
-
-        /**
-         * @return 获得点后面的文法符号; 若点的位置在末尾则返回空
-         */
-        public Optional<Term> getAfterDot() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(production.body().get(dot));
+    private static boolean or(long[] to, long[] from) {
+        var changed = false;
+        for (int i = 0; i < to.length; i++) {
+            final var merged = to[i] | from[i];
+            if (merged != to[i]) {
+                to[i] = merged;
+                changed = true;
             }
         }
 
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
+        return changed;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (final var word : bits) {
+            if (word != 0) {
+                return false;
             }
         }
 
-        @Override
-        public String toString() {
-            final var builder = new StringBuilder();
-
-            builder.append(production.head());
-            builder.append(" -> ");
+        return true;
+    }
 
-            final var body = production.body();
-            for (int i = 0; i < body.size(); i++) {
-                if (i == dot) {
-                    builder.append(" .");
-                }
-                builder.append(" ").append(body.get(i));
+    /**
+     * @return 位集中的所有终结符
+     */
+    private List<TokenKind> terminalsIn(long[] bits) {
+        final var all = TokenKind.allInOrdinalOrder();
+        final var result = new ArrayList<TokenKind>();
+        for (int i = 0; i < bits.length; i++) {
+            var word = bits[i];
+            while (word != 0) {
+                result.add(all.get((i << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
             }
+        }
 
-            if (dot == body.size()) {
-                builder.append(" .");
+        return result;
+    }
+
+    /**
+     * 不重复地存放产生式下标的工作表
+     */
+    private static final class Worklist {
+        private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        private final boolean[] queued;
+
+        Worklist(int size) {
+            this.queued = new boolean[size];
+        }
+
+        void push(int idx) {
+            if (!queued[idx]) {
+                queued[idx] = true;
+                queue.addLast(idx);
             }
+        }
+
+        int pop() {
+            final int idx = queue.pollFirst();
+            queued[idx] = false;
+            return idx;
+        }
+
+        boolean isEmpty() {
+            return queue.isEmpty();
+        }
+    }
+
+    //==================== LR(0) 规范项目集族 ==============================//
+    //
+    // 项目用整数编码: 产生式 p 的点在位置 dot 的项目编号为 itemBase[p] + dot.
+    // 文法符号同样用整数编码: 非终结符为其编号 [0, N), 终结符为 N + 其在 terminalsInOrder 中的位置.
+    // 后继状态按符号编号从小到大的顺序产生, 这与先前 "先非终结符后终结符" 的遍历顺序一致.
+
+    private final List<TokenKind> terminalsInOrder;
+
+    /**
+     * terminalSymbol[t] 为序号为 t 的终结符的符号编号
+     */
+    private int[] terminalSymbol;
+
+    private int[] itemBase;
+    private int[] itemProduction;
+
+    /**
+     * itemAfterDot[i] 为项目 i 中点后面的符号编号; 若点在末尾则为 -1
+     */
+    private int[] itemAfterDot;
+
+    /**
+     * 以项目编号排好序的项集, 用作以项集为键的 Map 的键
+     */
+    private record ItemSet(int[] items) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ItemSet other && Arrays.equals(items, other.items);
+        }
 
-            return builder.toString();
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(items);
         }
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
+    /**
+     * 以状态编号为下标: 每个状态的闭包项集, 以及其所有转移的符号与目标状态编号 (按符号编号升序)
+     */
+    private final List<int[]> stateItems = new ArrayList<>();
+    private final List<int[]> transitionSymbols = new ArrayList<>();
+    private final List<int[]> transitionTargets = new ArrayList<>();
     private final List<Status> allStatusInIndexOrder = new ArrayList<>();
 
     /**
-     * 构造出所有状态并维护状态与项集之间的对应关系
+     * 为所有项目与文法符号编号
      */
-    private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
+    private void indexItems() {
+        final var nonTerminalCount = nonTerminalsInOrder.size();
+        terminalSymbol = new int[TokenKind.allInOrdinalOrder().size()];
+        for (int i = 0; i < terminalsInOrder.size(); i++) {
+            terminalSymbol[terminalsInOrder.get(i).getOrdinal()] = nonTerminalCount + i;
+        }
+
+        itemBase = new int[productions.size()];
+        var itemCount = 0;
+        for (int p = 0; p < productions.size(); p++) {
+            itemBase[p] = itemCount;
+            itemCount += productions.get(p).body().size() + 1;
+        }
+
+        itemProduction = new int[itemCount];
+        itemAfterDot = new int[itemCount];
+        for (int p = 0; p < productions.size(); p++) {
+            final var body = productions.get(p).body();
+            for (int dot = 0; dot <= body.size(); dot++) {
+                final var item = itemBase[p] + dot;
+                itemProduction[item] = p;
+                itemAfterDot[item] = dot == body.size() ? -1 : symbolOf(body.get(dot));
+            }
+        }
+    }
 
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+    private int symbolOf(Term term) {
+        if (term instanceof TokenKind tokenKind) {
+            return terminalSymbol[tokenKind.getOrdinal()];
+        } else {
+            return indexOf(term);
+        }
+    }
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+    private Term termOf(int symbol) {
+        final var nonTerminalCount = nonTerminalsInOrder.size();
+        if (symbol < nonTerminalCount) {
+            return nonTerminalsInOrder.get(symbol);
+        } else {
+            return terminalsInOrder.get(symbol - nonTerminalCount);
         }
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * 构造出所有状态
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private void constructDFA() {
+        indexItems();
+        // 起始项目 S -> . S'
+        final var initKernel = new int[]{itemBase[0]};
+        switch (mode) {
+            case Sequential -> constructCanonicalLRCollection(initKernel);
+            case Parallel -> constructCanonicalLRCollectionInParallel(initKernel);
+        }
+
+        for (int idx = 0; idx < stateItems.size(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
+        }
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * 构造项集 {@code kernel} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * <br>
+     * 由于点在开头的项目只由其产生式头决定, 每个非终结符在一次闭包中至多展开一次, 展开时直接通过 definedBy 索引取得其产生式
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
+     * @param kernel 项集 I 的核
+     * @return 以项目编号排序的闭包
      */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
+    private int[] constructClosure(int[] kernel) {
+        final var expanded = new boolean[nonTerminalsInOrder.size()];
+        var result = Arrays.copyOf(kernel, Math.max(kernel.length * 2, 8));
+        var size = kernel.length;
+
+        // 采用 BFS 的方法, result 中 [0, size) 为已找到的项目, 其中 [scan, size) 为还未展开的项目
+        for (int scan = 0; scan < size; scan++) {
+            final var afterDot = itemAfterDot[result[scan]];
+            if (afterDot < 0 || afterDot >= expanded.length || expanded[afterDot]) {
+                continue;
+            }
+
+            expanded[afterDot] = true;
+            for (final var production : definedBy[afterDot]) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = itemBase[production];
+            }
         }
 
-        return result;
+        // 核中可能已含有点在开头的项目 (起始项目), 排序后去重
+        final var sorted = Arrays.copyOf(result, size);
+        Arrays.sort(sorted);
+        var distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
+     * 相当于理论课中的 GO(I, X) 函数 (转移函数), 但一次性对 I 的所有 X 求出后继项目集的核
+     * <br>
+     * 对 I 中的每个项目只扫描两次 (计数与填充), 按点后面的符号分组, 每组项目的后继项就是对应后继项目集的核
      *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
+     * @param items   当前项集 I
+     * @param symbols 输出参数, 将被填入按升序排列的各组的符号编号
+     * @return 与 symbols 一一对应的各组的核; 由于 I 有序, 核中的项目同样升序排列
      */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
+    private int[][] constructGotoKernels(int[] items, List<Integer> symbols) {
+        final var count = new int[nonTerminalsInOrder.size() + terminalsInOrder.size()];
+        for (final var item : items) {
+            final var afterDot = itemAfterDot[item];
+            if (afterDot >= 0 && count[afterDot]++ == 0) {
+                symbols.add(afterDot);
+            }
+        }
+
+        symbols.sort(null);
+        final var kernels = new int[symbols.size()][];
+        final var slot = new int[count.length];
+        for (int i = 0; i < symbols.size(); i++) {
+            kernels[i] = new int[count[symbols.get(i)]];
+            slot[symbols.get(i)] = i;
+            count[symbols.get(i)] = 0;
+        }
+
+        for (final var item : items) {
+            final var afterDot = itemAfterDot[item];
+            if (afterDot >= 0) {
+                kernels[slot[afterDot]][count[afterDot]++] = item + 1;
+            }
+        }
 
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+        return kernels;
     }
 
     /**
      * 构造 LR(0) 规范项目集族
+     * <br>
+     * 后继项目集以其核去重: 同一个核的闭包必然相同, 因此只有新出现的核才需要求闭包
+     *
+     * @param initKernel 起始项目集的核 { S -> . S' }
+     */
+    private void constructCanonicalLRCollection(int[] initKernel) {
+        final var stateOfKernel = new HashMap<ItemSet, Integer>();
+        stateOfKernel.put(new ItemSet(initKernel), 0);
+        stateItems.add(constructClosure(initKernel));
+
+        // 同样以 BFS 形式搜索, stateItems 中下标不小于 next 的状态即为待探索的状态
+        for (int next = 0; next < stateItems.size(); next++) {
+            final var groupSymbols = new ArrayList<Integer>();
+            final var kernels = constructGotoKernels(stateItems.get(next), groupSymbols);
+            final var symbols = new int[kernels.length];
+            final var targets = new int[kernels.length];
+
+            for (int i = 0; i < kernels.length; i++) {
+                final var kernel = kernels[i];
+                final var key = new ItemSet(kernel);
+                var target = stateOfKernel.get(key);
+                if (target == null) {
+                    // 新的核, 构造其闭包并加入待探索列表中
+                    target = stateItems.size();
+                    stateOfKernel.put(key, target);
+                    stateItems.add(constructClosure(kernel));
+                }
+
+                symbols[i] = groupSymbols.get(i);
+                targets[i] = target;
+            }
+
+            transitionSymbols.add(symbols);
+            transitionTargets.add(targets);
+        }
+    }
+
+    /**
+     * 并行地构造 LR(0) 规范项目集族
+     * <br>
+     * 按 BFS 的层推进: 同一层中各状态的后继核与闭包互不依赖, 可以在 ForkJoinPool (并行流所用的公共池) 上并行求出,
+     * 不同状态求出的相同闭包通过并发 Map 去重, 每个核只求一次闭包. 随后按状态编号顺序, 在每个状态内按符号编号顺序为新出现的核编号,
+     * 这正是顺序 BFS 的发现顺序, 因此状态编号与 {@link #constructCanonicalLRCollection} 的结果相同.
+     *
+     * @param initKernel 起始项目集的核 { S -> . S' }
+     */
+    private void constructCanonicalLRCollectionInParallel(int[] initKernel) {
+        final var closures = new ConcurrentHashMap<ItemSet, int[]>();
+        final var stateOfKernel = new HashMap<ItemSet, Integer>();
+        stateOfKernel.put(new ItemSet(initKernel), 0);
+        stateItems.add(constructClosure(initKernel));
+
+        var levelBegin = 0;
+        while (levelBegin < stateItems.size()) {
+            final var levelEnd = stateItems.size();
+            final var levelSymbols = new int[levelEnd - levelBegin][];
+            final var levelKernels = new ItemSet[levelEnd - levelBegin][];
+
+            final var begin = levelBegin;
+            IntStream.range(begin, levelEnd).parallel().forEach(state -> {
+                final var groupSymbols = new ArrayList<Integer>();
+                final var kernels = constructGotoKernels(stateItems.get(state), groupSymbols);
+                final var keys = new ItemSet[kernels.length];
+                for (int i = 0; i < kernels.length; i++) {
+                    final var kernel = kernels[i];
+                    keys[i] = new ItemSet(kernel);
+                    closures.computeIfAbsent(keys[i], key -> constructClosure(kernel));
+                }
+
+                levelSymbols[state - begin] = groupSymbols.stream().mapToInt(Integer::intValue).toArray();
+                levelKernels[state - begin] = keys;
+            });
+
+            // 按顺序为本层发现的新状态编号, 它们构成下一层
+            for (int state = levelBegin; state < levelEnd; state++) {
+                final var keys = levelKernels[state - levelBegin];
+                final var targets = new int[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    var target = stateOfKernel.get(keys[i]);
+                    if (target == null) {
+                        target = stateItems.size();
+                        stateOfKernel.put(keys[i], target);
+                        stateItems.add(closures.get(keys[i]));
+                    }
+                    targets[i] = target;
+                }
+
+                transitionSymbols.add(levelSymbols[state - levelBegin]);
+                transitionTargets.add(targets);
+            }
+
+            levelBegin = levelEnd;
+        }
+    }
+
+    /**
+     * 基于旧文法的项目集族增量地构造规范项目集族, 之后按 "尽量沿用旧编号" 的原则为状态重新编号
      *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
+     * @param previous 旧文法的构造器
+     * @param diff     旧文法到新文法的差异
      */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
-
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
+    private void constructDFAIncrementally(TableGenerator previous, GrammarDiff diff) {
+        indexItems();
+
+        // 旧项目到新项目的映射, 被删除的产生式的项目映射为 -1
+        final var newProductionOfText = new HashMap<String, Integer>();
+        for (int p = 0; p < productions.size(); p++) {
+            newProductionOfText.put(productions.get(p).toString(), p);
+        }
+
+        final var oldToNew = new int[previous.itemProduction.length];
+        for (int p = 0; p < previous.productions.size(); p++) {
+            final var newProduction = newProductionOfText.get(previous.productions.get(p).toString());
+            for (int dot = 0; dot <= previous.productions.get(p).body().size(); dot++) {
+                oldToNew[previous.itemBase[p] + dot] = newProduction == null ? -1 : itemBase[newProduction] + dot;
+            }
+        }
+
+        final var affectedHeads = diff.affectedHeads();
+        final var oldNonTerminalCount = previous.nonTerminalsInOrder.size();
+        final var oldAffected = new boolean[oldNonTerminalCount];
+        for (int i = 0; i < oldNonTerminalCount; i++) {
+            oldAffected[i] = affectedHeads.contains(previous.nonTerminalsInOrder.get(i).getTermName());
+        }
+
+        // 以翻译到新编码的核为键, 记录所有旧状态, 以及其中闭包可以直接复用的旧状态
+        final var oldStateOfKernel = new HashMap<ItemSet, Integer>();
+        final var reusable = new HashSet<Integer>();
+        for (int state = 0; state < previous.stateItems.size(); state++) {
+            var kernelSurvived = true;
+            var clean = true;
+            final var kernel = new ArrayList<Integer>();
+
+            for (final var item : previous.stateItems.get(state)) {
+                final var production = previous.itemProduction[item];
+                final var isKernelItem = item != previous.itemBase[production] || (state == 0 && production == 0);
+                final var afterDot = previous.itemAfterDot[item];
+
+                if (oldToNew[item] < 0) {
+                    clean = false;
+                    kernelSurvived &= !isKernelItem;
+                } else if (isKernelItem) {
+                    kernel.add(oldToNew[item]);
+                }
+
+                if (afterDot >= 0 && afterDot < oldNonTerminalCount && oldAffected[afterDot]) {
+                    clean = false;
+                }
+            }
+
+            if (kernelSurvived) {
+                final var key = new ItemSet(kernel.stream().mapToInt(Integer::intValue).sorted().toArray());
+                oldStateOfKernel.put(key, state);
+                if (clean) {
+                    reusable.add(state);
+                }
+            }
+        }
+
+        // 与 constructCanonicalLRCollection 相同的 BFS, 只是可复用的状态直接翻译旧闭包
+        final var kernels = new ArrayList<ItemSet>();
+        final var stateOfKernel = new HashMap<ItemSet, Integer>();
+        final Function<int[], int[]> closureOf = kernel -> {
+            final var old = oldStateOfKernel.get(new ItemSet(kernel));
+            if (old == null || !reusable.contains(old)) {
+                return constructClosure(kernel);
+            }
+
+            final var items = previous.stateItems.get(old);
+            final var translated = new int[items.length];
+            for (int i = 0; i < items.length; i++) {
+                translated[i] = oldToNew[items[i]];
+            }
+            Arrays.sort(translated);
+            return translated;
+        };
+
+        final var initKernel = new int[]{itemBase[0]};
+        kernels.add(new ItemSet(initKernel));
+        stateOfKernel.put(kernels.get(0), 0);
+        stateItems.add(closureOf.apply(initKernel));
+
+        for (int next = 0; next < stateItems.size(); next++) {
+            final var groupSymbols = new ArrayList<Integer>();
+            final var groupKernels = constructGotoKernels(stateItems.get(next), groupSymbols);
+            final var symbols = new int[groupKernels.length];
+            final var targets = new int[groupKernels.length];
+
+            for (int i = 0; i < groupKernels.length; i++) {
+                final var key = new ItemSet(groupKernels[i]);
+                var target = stateOfKernel.get(key);
+                if (target == null) {
+                    target = stateItems.size();
+                    stateOfKernel.put(key, target);
+                    kernels.add(key);
+                    stateItems.add(closureOf.apply(groupKernels[i]));
+                }
+
+                symbols[i] = groupSymbols.get(i);
+                targets[i] = target;
+            }
+
+            transitionSymbols.add(symbols);
+            transitionTargets.add(targets);
+        }
+
+        // 重新编号: 起始状态总是 0 号, 与旧状态核相同的状态尽量沿用旧编号, 其余状态按发现顺序填补剩下的编号
+        final var count = stateItems.size();
+        final var renumber = new int[count];
+        final var taken = new boolean[count];
+        Arrays.fill(renumber, -1);
+        renumber[0] = 0;
+        taken[0] = true;
+
+        for (int state = 1; state < count; state++) {
+            final var old = oldStateOfKernel.get(kernels.get(state));
+            if (old != null && old < count && !taken[old]) {
+                renumber[state] = old;
+                taken[old] = true;
+            }
+        }
+
+        var free = 0;
+        for (int state = 1; state < count; state++) {
+            if (renumber[state] < 0) {
+                while (taken[free]) {
+                    free++;
                 }
+                renumber[state] = free;
+                taken[free] = true;
+            }
+        }
+
+        final var items = new int[count][];
+        final var symbols = new int[count][];
+        final var targets = new int[count][];
+        for (int state = 0; state < count; state++) {
+            items[renumber[state]] = stateItems.get(state);
+            symbols[renumber[state]] = transitionSymbols.get(state);
+            targets[renumber[state]] = Arrays.stream(transitionTargets.get(state)).map(target -> renumber[target]).toArray();
+        }
+
+        stateItems.clear();
+        transitionSymbols.clear();
+        transitionTargets.clear();
+        for (int state = 0; state < count; state++) {
+            stateItems.add(items[state]);
+            transitionSymbols.add(symbols[state]);
+            transitionTargets.add(targets[state]);
+            allStatusInIndexOrder.add(Status.create(state));
+        }
+    }
+
+    /**
+     * 对于 A -> B . C, 输出 "A -> B . C" 形式的字符串
+     *
+     * @param item 项目编号
+     * @return 项目的字符串表示
+     */
+    private String itemToString(int item) {
+        final var production = productions.get(itemProduction[item]);
+        final var dot = item - itemBase[itemProduction[item]];
+        final var builder = new StringBuilder();
+
+        builder.append(production.head());
+        builder.append(" -> ");
+
+        final var body = production.body();
+        for (int i = 0; i < body.size(); i++) {
+            if (i == dot) {
+                builder.append(" .");
             }
+            builder.append(" ").append(body.get(i));
+        }
+
+        if (dot == body.size()) {
+            builder.append(" .");
         }
 
-        return new ArrayList<>(result);
+        return builder.toString();
     }
 
     /**
      * 构造 LR 分析表 (填充各个 status 中的 action 与 goto)
      */
     private void genTable() {
-        // 依索引顺序对每个状态的每个项目
+        final var argumentProduction = 0;
+
+        // 依索引顺序对每个状态
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
-                final var afterDotOpt = item.getAfterDot();
-
-                // 根据项目的点的位置和点后面跟着的文法符号进行分类
-                if (afterDotOpt.isEmpty()) {
-                    final var argumentProduction = productions.get(0);
-                    if (item.production().equals(argumentProduction)) {
-                        // S -> S' .
-                        // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
-                        status.setAction(TokenKind.eof(), Action.accept());
-                    } else {
-                        // A -> alpha .
-                        // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
-                        final var production = item.production();
-                        final var head = production.head();
-                        for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
-                        }
-                    }
+            // 点后面跟着文法符号的项目, 其动作由状态的转移决定
+            final var symbols = transitionSymbols.get(status.index());
+            final var targets = transitionTargets.get(status.index());
+            for (int i = 0; i < symbols.length; i++) {
+                final var symbol = termOf(symbols[i]);
+                final var next = allStatusInIndexOrder.get(targets[i]);
+
+                if (symbol instanceof TokenKind tokenKind) {
+                    // A -> alpha . a beta
+                    // 如果项目代表某个产生式的中间, 并且接着一个终结符的情况, 我们就移入该终结符
+                    putAction(status, tokenKind, Action.shift(next));
+                } else if (symbol instanceof NonTerminal nonTerminal) {
+                    // A -> alpha . B beta
+                    // 如果项目代表某个产生式的中间, 并且接着一个非终结符的情况,
+                    // 我们就转移到 B 解析之后的状态中去 (即 GO(I, B) 对应的状态)
+                    status.setGoto(nonTerminal, next);
+                } else {
+                    throw new RuntimeException("Unknown type of Term");
+                }
+            }
+
+            // 点在末尾的项目
+            for (final var item : stateItems.get(status.index())) {
+                if (itemAfterDot[item] >= 0) {
+                    continue;
+                }
 
+                if (itemProduction[item] == argumentProduction) {
+                    // S -> S' .
+                    // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
+                    putAction(status, TokenKind.eof(), Action.accept());
                 } else {
-                    final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
-
-                    if (symbol instanceof TokenKind tokenKind) {
-                        // A -> alpha . a beta
-                        // 如果项目代表某个产生式的中间, 并且接着一个终结符的情况, 我们就移入该终结符
-                        status.setAction(tokenKind, Action.shift(next));
-                    } else if (symbol instanceof NonTerminal nonTerminal) {
-                        // A -> alpha . B beta
-                        // 如果项目代表某个产生式的中间, 并且接着一个非终结符的情况,
-                        // 我们就转移到 B 解析之后的状态中去 (即 GO(I, B) 对应的状态)
-                        status.setGoto(nonTerminal, next);
-                    } else {
-                        throw new RuntimeException("Unknown type of Term");
+                    // A -> alpha .
+                    // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
+                    final var production = productions.get(itemProduction[item]);
+                    for (final var a : terminalsIn(follow[indexOf(production.head())])) {
+                        putAction(status, a, Action.reduce(production));
                     }
                 }
             }
@@ -407,4 +905,18 @@ public class TableGenerator {
 
     // 我们在 Status.setAction/setGoto 中检查规约-规约冲突与移入-规约冲突
     // 如果有冲突, 它们会抛出 RuntimeException
+    // 保留冲突时, 表中保留最先填入的动作, 与之冲突的动作记录到 conflicts 中
+    private void putAction(Status status, TokenKind terminal, Action action) {
+        if (!keepConflicts) {
+            status.setAction(terminal, action);
+            return;
+        }
+
+        final var primary = status.getAction(terminal);
+        if (primary.getKind() == Action.ActionKind.Error) {
+            status.setAction(terminal, action);
+        } else if (!primary.equals(action)) {
+            conflicts.add(status, terminal, action);
+        }
+    }
 }
@@ -81,6 +81,8 @@ public class TableLoader {
 
     private final List<Status> statusInIndexOrder = new ArrayList<>();
     private final Map<Integer, Status> statuses = new HashMap<>();
+    // 以产生式编号为下标的规约动作, 规约同一产生式的单元格共用一个动作
+    private Action[] reduceActions;
 
     /**
      * 解析 ACTION 表的字符串
@@ -107,10 +109,7 @@ public class TableLoader {
                 yield Action.shift(status);
             }
 
-            case "reduce" -> {
-                final var production = GrammarInfo.getProductionByText(words[1]);
-                yield Action.reduce(production);
-            }
+            case "reduce" -> reduceAction(words[1]);
 
             case "accept" -> Action.accept();
 
@@ -118,6 +117,33 @@ public class TableLoader {
         };
     }
 
+    /**
+     * 把形如 "E -> E + A" 的产生式换成各符号的序号, 以序号查找产生式
+     *
+     * @param text 规约动作的载荷
+     * @return 规约该产生式的动作
+     */
+    private Action reduceAction(String text) {
+        final var sides = text.split(" -> ", 2);
+        final var headOrdinal = GrammarInfo.getNonTerminalOrdinal(GrammarInfo.getNonTerminal(sides[0]));
+        final var bodyWords = sides.length > 1 && !sides[1].isBlank() ? sides[1].split(" ") : new String[0];
+        final var bodyOrdinals = new int[bodyWords.length];
+        for (int i = 0; i < bodyWords.length; i++) {
+            final var word = bodyWords[i];
+            final Term term = TokenKind.isAllowed(word) ? TokenKind.fromString(word) : GrammarInfo.getNonTerminal(word);
+            bodyOrdinals[i] = GrammarInfo.getSymbolOrdinal(term);
+        }
+
+        final var production = GrammarInfo.findProduction(headOrdinal, bodyOrdinals);
+        if (reduceActions == null) {
+            reduceActions = new Action[GrammarInfo.getProductionsInOrder().size() + 1];
+        }
+        if (reduceActions[production.index()] == null) {
+            reduceActions[production.index()] = Action.reduce(production);
+        }
+        return reduceActions[production.index()];
+    }
+
     /**
      * 解析 GOTO 表中的字符串
      *
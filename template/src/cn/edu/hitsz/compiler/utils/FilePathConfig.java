@@ -26,6 +26,16 @@ public final class FilePathConfig {
      */
     public final static String LR1_TABLE_PATH = "data/in/LR1_table.csv";
 
+    /**
+     * SemanticAnalyzer 的语义动作, 格式见 AttributeGrammar
+     */
+    public static final String SEMANTIC_ACTIONS_PATH = "data/in/semantic_actions.txt";
+
+    /**
+     * IRGenerator 的语义动作, 格式见 AttributeGrammar
+     */
+    public static final String IR_ACTIONS_PATH = "data/in/ir_actions.txt";
+
 
     //==================================== 输出文件 ========================================//
     /**
@@ -63,6 +73,16 @@ public final class FilePathConfig {
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * 统计信息, 仅在以 -Dcompiler.metrics=true 运行时输出
+     */
+    public static final String METRICS_PATH = "data/out/metrics.txt";
+
+    /**
+     * 由 TableGenerator 构造出的 LR 分析表的缓存目录
+     */
+    public static final String LR_TABLE_CACHE_DIR = "data/out/table_cache";
+
     private FilePathConfig() {
     }
 }
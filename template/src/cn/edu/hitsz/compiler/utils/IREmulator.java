@@ -1,48 +1,50 @@
 package cn.edu.hitsz.compiler.utils;
 
+import cn.edu.hitsz.compiler.ir.IRBuffer;
 import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariableFactory;
 import cn.edu.hitsz.compiler.ir.Instruction;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
  * 用来模拟执行 IR 的类
+ * <br>
+ * 各 IR 变量的值存放在以变量编号为下标的数组中, 见 {@link IRVariableFactory}
  */
 public class IREmulator {
     public static IREmulator load(List<Instruction> instructions) {
-        return new IREmulator(instructions);
+        return new IREmulator(instructions, null);
+    }
+
+    /**
+     * 直接执行紧凑形式的 IR, 不构造 Instruction 对象
+     */
+    public static IREmulator load(IRBuffer buffer) {
+        return new IREmulator(null, buffer);
     }
 
     public Optional<Integer> execute() {
+        // 变量数在 IR 生成之后才确定, 因此在执行时才分配数组
+        final var size = buffer != null ? buffer.getVariables().size() : variableCount(instructions);
+        values = new int[size];
+        assigned = new boolean[size];
+        if (buffer != null) {
+            return executeBuffer();
+        }
+
         for (final var instruction : instructions) {
             switch (instruction.getKind()) {
-                case MOV -> {
-                    final var from = eval(instruction.getFrom());
-                    environment.put(instruction.getResult(), from);
-                }
+                case MOV -> assign(instruction.getResult(), evalInt(instruction.getFrom()));
 
-                case ADD -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs + rhs);
-                }
+                case ADD -> assign(instruction.getResult(), evalInt(instruction.getLHS()) + evalInt(instruction.getRHS()));
 
-                case SUB -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs - rhs);
-                }
+                case SUB -> assign(instruction.getResult(), evalInt(instruction.getLHS()) - evalInt(instruction.getRHS()));
 
-                case MUL -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs * rhs);
-                }
+                case MUL -> assign(instruction.getResult(), evalInt(instruction.getLHS()) * evalInt(instruction.getRHS()));
 
                 case RET -> this.returnValue = eval(instruction.getReturnValue());
 
@@ -53,23 +55,103 @@ public class IREmulator {
         return Optional.ofNullable(this.returnValue);
     }
 
+    // 同一段 IR 中的变量来自同一个工厂, 编号稠密, 因此变量数为指令中出现的最大编号加一
+    private static int variableCount(List<Instruction> instructions) {
+        var count = 0;
+        for (final var instruction : instructions) {
+            if (!instruction.getKind().isReturn()) {
+                count = Math.max(count, instruction.getResult().getId() + 1);
+            }
+            for (final var operand : instruction.getOperands()) {
+                if (operand instanceof IRVariable variable) {
+                    count = Math.max(count, variable.getId() + 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    private Optional<Integer> executeBuffer() {
+        for (int i = 0; i < buffer.size(); i++) {
+            switch (buffer.getKind(i)) {
+                case MOV -> assign(buffer.getResultId(i), evalOperand(i, 0));
+
+                case ADD -> assign(buffer.getResultId(i), evalOperand(i, 0) + evalOperand(i, 1));
+
+                case SUB -> assign(buffer.getResultId(i), evalOperand(i, 0) - evalOperand(i, 1));
+
+                case MUL -> assign(buffer.getResultId(i), evalOperand(i, 0) * evalOperand(i, 1));
+
+                case RET -> {
+                    final var value = buffer.getOperand(i, 0);
+                    this.returnValue = buffer.isImmediate(i, 0) ? Integer.valueOf(value) : assigned[value] ? Integer.valueOf(values[value]) : null;
+                }
+
+                default -> throw new RuntimeException("Unknown instruction kind: " + buffer.getKind(i));
+            }
+        }
+
+        return Optional.ofNullable(this.returnValue);
+    }
+
+    private int evalOperand(int index, int operand) {
+        final var value = buffer.getOperand(index, operand);
+        if (buffer.isImmediate(index, operand)) {
+            return value;
+        }
+        if (!assigned[value]) {
+            throw new RuntimeException("Variable %s is used before assignment".formatted(buffer.getVariables().get(value)));
+        }
+        return values[value];
+    }
+
+    /**
+     * @return 值的当前结果, 尚未赋值的变量为 null
+     */
     public Integer eval(IRValue value) {
         if (value instanceof IRImmediate immediate) {
             return immediate.getValue();
         } else if (value instanceof IRVariable variable) {
-            return environment.get(variable);
+            return assigned[variable.getId()] ? values[variable.getId()] : null;
+        } else {
+            throw new RuntimeException("Unknown IR value type");
+        }
+    }
+
+    private int evalInt(IRValue value) {
+        if (value instanceof IRImmediate immediate) {
+            return immediate.getValue();
+        } else if (value instanceof IRVariable variable) {
+            if (!assigned[variable.getId()]) {
+                throw new RuntimeException("Variable %s is used before assignment".formatted(variable));
+            }
+            return values[variable.getId()];
         } else {
             throw new RuntimeException("Unknown IR value type");
         }
     }
 
-    private IREmulator(List<Instruction> instructions) {
+    private void assign(IRVariable variable, int value) {
+        assign(variable.getId(), value);
+    }
+
+    private void assign(int id, int value) {
+        values[id] = value;
+        assigned[id] = true;
+    }
+
+    private IREmulator(List<Instruction> instructions, IRBuffer buffer) {
         this.instructions = instructions;
-        this.environment = new HashMap<>();
+        this.buffer = buffer;
+        this.values = new int[0];
+        this.assigned = new boolean[0];
         this.returnValue = null;
     }
 
+    //两者之一为 null
     private final List<Instruction> instructions;
-    private final Map<IRVariable, Integer> environment;
+    private final IRBuffer buffer;
+    private int[] values;
+    private boolean[] assigned;
     private Integer returnValue;
 }
@@ -0,0 +1,134 @@
+package cn.edu.hitsz.compiler.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 编译过程的统计信息
+ * <br>
+ * 以 {@code -Dcompiler.metrics=true} 开启. 开启后各部分通过 {@link #count(String, long)} 累加计数器,
+ * Main 以 {@link #time(String, Runnable)} 包围每个阶段, 记录其耗时与调用线程上分配的字节数, 最后由 {@link #dumpToFile(String)}
+ * 以 Prometheus 文本格式 (每行 {@code 名称{标签} 数值}) 输出, 便于其它工具抓取.
+ * <br>
+ * {@link #ENABLED} 是常量, 关闭时各处以它为条件的统计代码会被 JIT 整段消除. 各阶段的 JFR 事件 ({@link PhaseEvent}) 与该开关无关,
+ * 只在 JFR 录制启用了它时才会被提交.
+ */
+public final class Metrics {
+    /**
+     * 是否开启统计
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("compiler.metrics");
+
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+    /**
+     * 累加计数器, 计数器不存在时以 0 为初值创建. 可以被多个线程同时调用
+     *
+     * @param name  计数器的名称, 可以带 Prometheus 形式的标签, 如 {@code parser_production_reduce_total{production="B -> id"}}
+     * @param delta 增量
+     */
+    public static void count(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * 开始一个阶段, 在 try-with-resources 中使用:
+     * <pre>
+     * try (final var phase = Metrics.phase("lexing")) {
+     *     lexer.run();
+     * }
+     * </pre>
+     *
+     * @param name 阶段名称
+     * @return 关闭时结束该阶段
+     */
+    public static Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * 作为一个阶段执行 body, 并在其结束或抛出异常时结束该阶段
+     *
+     * @param name 阶段名称
+     * @param body 阶段的内容
+     */
+    public static void time(String name, Runnable body) {
+        final var phase = phase(name);
+        try {
+            body.run();
+        } finally {
+            phase.close();
+        }
+    }
+
+    /**
+     * 作为一个阶段执行 body 并返回其结果, 并在其结束或抛出异常时结束该阶段
+     *
+     * @param name 阶段名称
+     * @param body 阶段的内容
+     * @return body 的结果
+     */
+    public static <T> T time(String name, Supplier<T> body) {
+        final var phase = phase(name);
+        try {
+            return body.get();
+        } finally {
+            phase.close();
+        }
+    }
+
+    /**
+     * 以 Prometheus 文本格式输出所有计数器, 按名称排序
+     *
+     * @param path 文件路径
+     */
+    public static void dumpToFile(String path) {
+        final var lines = new ArrayList<String>();
+        counters.forEach((name, value) -> lines.add(name + " " + value.sum()));
+        FileUtils.writeLines(path, lines);
+    }
+
+    /**
+     * 编译的一个阶段, 结束时累加 {@code phase_wall_nanos} 与 {@code phase_allocated_bytes} 两个计数器, 并提交 JFR 事件.
+     * 分配的字节数只统计调用线程, 不包括阶段内其它线程 (如并行回放观察者的线程) 上的分配.
+     */
+    public static final class Phase implements AutoCloseable {
+        private final String name;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long beginNanos;
+        private final long beginBytes;
+
+        private Phase(String name) {
+            this.name = name;
+            this.event.begin();
+            this.beginNanos = ENABLED ? System.nanoTime() : 0;
+            this.beginBytes = ENABLED || event.isEnabled() ? allocatedBytes() : 0;
+        }
+
+        @Override
+        public void close() {
+            event.end();
+            if (ENABLED) {
+                count("phase_wall_nanos{phase=\"%s\"}".formatted(name), System.nanoTime() - beginNanos);
+                count("phase_allocated_bytes{phase=\"%s\"}".formatted(name), allocatedBytes() - beginBytes);
+            }
+
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.allocatedBytes = allocatedBytes() - beginBytes;
+                event.commit();
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private Metrics() {
+    }
+}
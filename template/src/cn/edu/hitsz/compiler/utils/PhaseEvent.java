@@ -0,0 +1,22 @@
+package cn.edu.hitsz.compiler.utils;
+
+import jdk.jfr.*;
+
+/**
+ * 编译器各阶段的 JDK Flight Recorder 事件, 由 {@link Metrics#phase(String)} 产生
+ * <br>
+ * 只有在 JFR 录制中启用了该事件时才会被提交, 例如 {@code java -XX:StartFlightRecording=filename=compile.jfr ...},
+ * 之后可以用 {@code jfr print --events cn.edu.hitsz.compiler.Phase compile.jfr} 查看.
+ */
+@Name("cn.edu.hitsz.compiler.Phase")
+@Label("Compiler Phase")
+@Category("Compiler")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated Bytes")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,154 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 各测试共用的输入程序与分析辅助函数, 路径均相对于 template 目录
+ */
+public final class TestPrograms {
+    /**
+     * 读取码点文件. TokenKind 只能被加载一次, 而各测试类可能在同一个 JVM 中运行
+     */
+    public static void loadTokenKinds() {
+        if (TokenKind.allAllowedTokenKinds().isEmpty()) {
+            TokenKind.loadTokenKinds();
+        }
+    }
+
+    /**
+     * 以给定的文法文本替换当前文法, 测试结束后应调用 {@link GrammarInfo#reload()} 恢复
+     *
+     * @param grammar 语法文件的内容
+     */
+    public static void loadGrammar(String grammar) {
+        try {
+            // 文件在 JVM 退出时才删除, 因为 TableCache 以 GrammarInfo 所读取的语法文件计算指纹
+            final var file = Files.createTempFile("grammar", ".txt");
+            file.toFile().deleteOnExit();
+            Files.writeString(file, grammar);
+            GrammarInfo.reload(file.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 对一段源代码做词法分析, 其中的标识符会被加入符号表
+     *
+     * @param source      源代码
+     * @param symbolTable 符号表
+     * @return 以 eof 结尾的词法单元
+     */
+    public static List<Token> lex(String source, SymbolTable symbolTable) {
+        try {
+            final var file = Files.createTempFile("input_code", ".txt");
+            try {
+                Files.writeString(file, source);
+                return lexFile(file.toString(), symbolTable);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return 实验给出的输入程序 (data/in/input_code.txt) 的词法单元
+     */
+    public static List<Token> inputTokens(SymbolTable symbolTable) {
+        return lexFile(FilePathConfig.SRC_CODE_PATH, symbolTable);
+    }
+
+    /**
+     * @return 实验给出的输入程序的标准规约序列 (data/std/parser_list.txt)
+     */
+    public static List<String> expectedReductions() {
+        return FileUtils.readLines("data/std/parser_list.txt").stream().map(String::strip).filter(line -> !line.isEmpty()).toList();
+    }
+
+    /**
+     * 用 SyntaxAnalyzer 分析词法单元, 返回规约出的产生式 (含接受时的起始产生式)
+     */
+    public static List<String> reductions(LRTable table, List<Token> tokens, SymbolTable symbolTable) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        final var recorder = new ReductionRecorder();
+        parser.registerObserver(recorder);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+        return recorder.reductions();
+    }
+
+    /**
+     * 以文本形式记录规约与移入的观察者
+     */
+    public static class ReductionRecorder implements ActionObserver {
+        private final List<String> reductions = new ArrayList<>();
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            events.add("shift " + currentStatus.index() + " " + currentToken);
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            reductions.add(production.toString());
+            events.add("reduce " + currentStatus.index() + " " + production);
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            reductions.add(GrammarInfo.getBeginProduction().toString());
+            events.add("accept " + currentStatus.index());
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        /**
+         * @return 规约出的产生式, 与 ProductionCollector 的输出相同
+         */
+        public List<String> reductions() {
+            return reductions;
+        }
+
+        /**
+         * @return 移入, 规约与接受事件及其当前状态
+         */
+        public List<String> events() {
+            return events;
+        }
+    }
+
+    private static List<Token> lexFile(String path, SymbolTable symbolTable) {
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(path);
+        lexer.run();
+        final var tokens = new ArrayList<Token>();
+        lexer.getTokens().forEach(tokens::add);
+        return tokens;
+    }
+
+    private TestPrograms() {
+    }
+}
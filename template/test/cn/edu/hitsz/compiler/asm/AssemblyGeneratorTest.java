@@ -0,0 +1,41 @@
+package cn.edu.hitsz.compiler.asm;
+
+import cn.edu.hitsz.compiler.ir.IRImmediate;
+import cn.edu.hitsz.compiler.ir.IRVariableFactory;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssemblyGeneratorTest {
+    @Test
+    void temporariesOfPreTreatmentComeFromTheGivenFactory() throws Exception {
+        final var variables = new IRVariableFactory();
+        final var a = variables.named(0, "a");
+        final var b = variables.named(1, "b");
+        final var instructions = List.of(
+            Instruction.createMov(a, IRImmediate.of(1)),
+            // 左立即数减法与右立即数乘法各需要一个临时变量
+            Instruction.createSub(b, IRImmediate.of(2), a),
+            Instruction.createMul(b, b, IRImmediate.of(3)),
+            Instruction.createRet(b));
+
+        final var generator = new AssemblyGenerator();
+        generator.loadIR(instructions, variables);
+        generator.run();
+        // 新的临时变量紧接在前端的变量之后编号
+        assertEquals(4, variables.size());
+        assertTrue(variables.get(2).isTemp() && variables.get(3).isTemp());
+
+        final var file = Files.createTempFile("assembly", ".asm");
+        try {
+            generator.dump(file.toString());
+            assertFalse(Files.readString(file).isBlank());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
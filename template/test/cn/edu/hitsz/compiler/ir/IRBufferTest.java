@@ -0,0 +1,120 @@
+package cn.edu.hitsz.compiler.ir;
+
+import cn.edu.hitsz.compiler.utils.IREmulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IRBufferTest {
+    /**
+     * 以同一串调用分别构造 IRBuffer 与 List&lt;Instruction&gt;
+     */
+    private static final class Both {
+        final IRVariableFactory variables = new IRVariableFactory();
+        final IRBuilder builder = new IRBuilder(variables);
+        final List<Instruction> list = new ArrayList<>();
+
+        void add(IRVariable result, IRValue lhs, IRValue rhs) {
+            builder.add(result, lhs, rhs);
+            list.add(Instruction.createAdd(result, lhs, rhs));
+        }
+
+        void sub(IRVariable result, IRValue lhs, IRValue rhs) {
+            builder.sub(result, lhs, rhs);
+            list.add(Instruction.createSub(result, lhs, rhs));
+        }
+
+        void mul(IRVariable result, IRValue lhs, IRValue rhs) {
+            builder.mul(result, lhs, rhs);
+            list.add(Instruction.createMul(result, lhs, rhs));
+        }
+
+        void mov(IRVariable result, IRValue from) {
+            builder.mov(result, from);
+            list.add(Instruction.createMov(result, from));
+        }
+
+        void ret(IRValue value) {
+            builder.ret(value);
+            list.add(Instruction.createRet(value));
+        }
+    }
+
+    private static void assertSameInstructions(List<Instruction> expected, List<Instruction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final var e = expected.get(i);
+            final var a = actual.get(i);
+            assertEquals(e.getKind(), a.getKind());
+            assertEquals(e.toString(), a.toString());
+            assertEquals(e.getOperands().size(), a.getOperands().size());
+            for (int j = 0; j < e.getOperands().size(); j++) {
+                final var expectedOperand = e.getOperands().get(j);
+                final var actualOperand = a.getOperands().get(j);
+                if (expectedOperand instanceof IRImmediate immediate) {
+                    assertEquals(immediate.getValue(), ((IRImmediate) actualOperand).getValue());
+                } else {
+                    assertEquals(expectedOperand, actualOperand);
+                }
+            }
+            if (e.getKind() != InstructionKind.RET) {
+                assertEquals(e.getResult(), a.getResult());
+            }
+        }
+    }
+
+    @Test
+    void everyInstructionShapeRoundTrips() {
+        final var both = new Both();
+        final var a = both.variables.named(0, "a");
+        final var b = both.variables.named(1, "b");
+        final var t0 = both.variables.temp();
+        final var t1 = both.variables.temp();
+        both.mov(a, IRImmediate.of(Integer.MIN_VALUE));
+        both.mov(b, a);
+        both.add(t0, a, IRImmediate.of(-1));
+        both.sub(t1, IRImmediate.of(Integer.MAX_VALUE), b);
+        both.mul(t0, IRImmediate.of(3), IRImmediate.of(-7));
+        both.sub(t1, t0, t1);
+        both.ret(IRImmediate.of(0));
+        both.ret(t1);
+
+        final var buffer = both.builder.getBuffer();
+        assertSameInstructions(both.list, buffer.asInstructions());
+        assertSame(both.variables, buffer.getVariables());
+
+        // 紧凑形式的各列
+        assertEquals(InstructionKind.SUB, buffer.getKind(3));
+        assertEquals(t1.getId(), buffer.getResultId(3));
+        assertTrue(buffer.isImmediate(3, 0));
+        assertEquals(Integer.MAX_VALUE, buffer.getOperand(3, 0));
+        assertFalse(buffer.isImmediate(3, 1));
+        assertEquals(b.getId(), buffer.getOperand(3, 1));
+        assertEquals(-1, buffer.getResultId(6));
+        assertTrue(buffer.isImmediate(6, 0));
+    }
+
+    @Test
+    void viewGrowsWithTheBufferAndEmulatesLikeTheList() {
+        final var both = new Both();
+        final var view = both.builder.getBuffer().asInstructions();
+        final var sum = both.variables.named(0, "sum");
+        both.mov(sum, IRImmediate.of(0));
+        // 超过初始容量, 检查扩容后的内容
+        for (int i = 0; i < 3000; i++) {
+            final var temp = both.variables.temp();
+            both.mul(temp, IRImmediate.of(i % 13), IRImmediate.of(i % 5 - 2));
+            both.add(sum, sum, temp);
+        }
+        both.ret(sum);
+
+        assertEquals(both.list.size(), view.size());
+        assertSameInstructions(both.list, view);
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(view.size()));
+        assertEquals(IREmulator.load(both.list).execute(), IREmulator.load(both.builder.getBuffer()).execute());
+        assertEquals(IREmulator.load(both.list).execute(), IREmulator.load(view).execute());
+    }
+}
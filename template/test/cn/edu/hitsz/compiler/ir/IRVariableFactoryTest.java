@@ -0,0 +1,54 @@
+package cn.edu.hitsz.compiler.ir;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IRVariableFactoryTest {
+    @Test
+    void variablesAreNumberedDenselyInCreationOrder() {
+        final var variables = new IRVariableFactory();
+        final var a = variables.named(0, "a");
+        final var t0 = variables.temp();
+        final var b = variables.named(5, "b");
+        final var t1 = variables.temp();
+
+        assertEquals(List.of(0, 1, 2, 3), List.of(a.getId(), t0.getId(), b.getId(), t1.getId()));
+        assertEquals(4, variables.size());
+        assertEquals(List.of("a", "$0", "b", "$1"), List.of(a.getName(), t0.getName(), b.getName(), t1.getName()));
+        assertTrue(a.isNamed());
+        assertTrue(t1.isTemp());
+    }
+
+    @Test
+    void namedVariablesAreLookedUpBySymbol() {
+        final var variables = new IRVariableFactory();
+        final var a = variables.named(3, "a");
+        assertSame(a, variables.named(3, "a"));
+        // 名字只在第一次创建时使用, 查找只看符号编号
+        assertSame(a, variables.named(3, "ignored"));
+        assertNotEquals(a, variables.named(4, "a"));
+        assertSame(a, variables.get(a.getId()));
+        assertEquals(2, variables.size());
+
+        // 符号编号远超当前容量时照常扩容
+        final var far = variables.named(10_000, "far");
+        assertSame(far, variables.named(10_000, "far"));
+        assertEquals(3, variables.size());
+    }
+
+    @Test
+    void temporariesAreEqualByFactoryAndId() {
+        final var variables = new IRVariableFactory();
+        final var temp = variables.temp();
+        assertEquals(temp, variables.get(temp.getId()));
+        assertEquals(temp.hashCode(), variables.get(temp.getId()).hashCode());
+
+        // 另一次编译中编号相同的变量并不相等
+        final var other = new IRVariableFactory();
+        assertNotEquals(temp, other.temp());
+        assertThrows(IndexOutOfBoundsException.class, () -> variables.get(1));
+    }
+}
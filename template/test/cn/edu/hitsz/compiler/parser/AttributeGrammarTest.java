@@ -0,0 +1,149 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttributeGrammarTest {
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    /**
+     * 属性栈的值一列直接存放 Integer 属性
+     */
+    static class Actions {
+        final List<String> calls = new ArrayList<>();
+
+        @GrammarAction("sum")
+        Integer sum(Integer a, Integer b) {
+            return a + b;
+        }
+
+        @GrammarAction("note0")
+        void note0() {
+            calls.add("note0");
+        }
+
+        @GrammarAction("note1")
+        void note1(Integer a) {
+            calls.add("note1 " + a);
+        }
+
+        @GrammarAction("note2")
+        void note2(Integer a, Integer b) {
+            calls.add("note2 " + a + " " + b);
+        }
+
+        @GrammarAction("note3")
+        void note3(Integer a, Integer b, Integer c) {
+            calls.add("note3 " + a + " " + b + " " + c);
+        }
+
+        @GrammarAction("note4")
+        static void note4(Integer a, Integer b, Integer c, Integer d) {
+            NOTES.add("note4 " + a + " " + b + " " + c + " " + d);
+        }
+
+        @GrammarAction("primitive")
+        int primitive(Integer a) {
+            return a;
+        }
+
+        @GrammarAction("boxedVoid")
+        Void boxedVoid(Integer a) {
+            return null;
+        }
+
+        static final List<String> NOTES = new ArrayList<>();
+    }
+
+    private static AttributeGrammar load(Actions target, String actions) {
+        try {
+            final var file = Files.createTempFile("actions", ".txt");
+            try {
+                Files.writeString(file, actions);
+                return AttributeGrammar.load(file.toString(), MethodHandles.lookup(), target,
+                    type -> type == Integer.class ? (stack, row) -> stack.value(row) : null,
+                    type -> type == Integer.class ? (stack, row, value) -> stack.setValue(row, (Integer) value) : null);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 以 1, 2, 3 为属性的三行作为产生式体规约, 返回规约后头部的值
+    private static int reduce(AttributeGrammar grammar, String production) {
+        final var stack = new AttributeStack();
+        for (int i = 1; i <= 3; i++) {
+            stack.shift(Token.normal("IntConst", Integer.toString(i)));
+            stack.setValue(stack.top(), i);
+        }
+        stack.beginReduce(GrammarInfo.getProductionByText(production).body().size());
+        grammar.reduce(stack, GrammarInfo.getProductionByText(production));
+        stack.endReduce();
+        return stack.value(stack.top());
+    }
+
+    @Test
+    void voidActionsRunWithoutWritingTheHead() {
+        final var target = new Actions();
+        Actions.NOTES.clear();
+        final var grammar = load(target, """
+            # 各种参数个数的 void 动作
+            E -> E + A => note3($1, $2, $3)
+            E -> E - A => note4($3, $2, $1, $3)
+            A -> A * B => note2($3, $1)
+            B -> ( E ) => note1($2)
+            S -> D id => note0()
+            """);
+
+        // 头部一行保留产生式体第一个符号的值
+        assertEquals(1, reduce(grammar, "E -> E + A"));
+        assertEquals(1, reduce(grammar, "E -> E - A"));
+        assertEquals(1, reduce(grammar, "A -> A * B"));
+        assertEquals(1, reduce(grammar, "B -> ( E )"));
+        assertEquals(2, reduce(grammar, "S -> D id"));
+        assertIterableEquals(List.of("note3 1 2 3", "note2 3 1", "note1 2", "note0"), target.calls);
+        assertIterableEquals(List.of("note4 3 2 1 3"), Actions.NOTES);
+        assertTrue(grammar.isInterestedIn(GrammarInfo.getProductionByText("S -> D id")));
+    }
+
+    @Test
+    void valuedActionsWriteTheHead() {
+        final var grammar = load(new Actions(), """
+            E -> E + A => sum($1, $3)
+            B -> ( E ) => $2
+            E -> A => $1
+            """);
+        assertEquals(4, reduce(grammar, "E -> E + A"));
+        assertEquals(2, reduce(grammar, "B -> ( E )"));
+        assertFalse(grammar.isInterestedIn(GrammarInfo.getProductionByText("E -> A")));
+        assertFalse(grammar.isInterestedIn(GrammarInfo.getProductionByText("A -> B")));
+    }
+
+    @Test
+    void mismatchedActionsAreRejectedWhenLoading() {
+        final var target = new Actions();
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E + A => primitive($1)"));
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E + A => boxedVoid($1)"));
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E + A => missing($1)"));
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E + A => sum($1)"));
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E + A => sum($1, $4)"));
+        assertThrows(RuntimeException.class, () -> load(target, "E -> E * A => $1"));
+    }
+}
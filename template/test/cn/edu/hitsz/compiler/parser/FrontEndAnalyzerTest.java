@@ -0,0 +1,99 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrontEndAnalyzerTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    private static void run(List<Token> tokens, SymbolTable symbolTable, ActionObserver... observers) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        for (final var observer : observers) {
+            parser.registerObserver(observer);
+        }
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+    }
+
+    @Test
+    void fusedObserverEmitsTheSameIRAsSeparateObservers() {
+        final var separateSymbols = new SymbolTable();
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        final var irGenerator = new IRGenerator();
+        run(TestPrograms.inputTokens(separateSymbols), separateSymbols, semanticAnalyzer, irGenerator);
+
+        final var fusedSymbols = new SymbolTable();
+        final var frontEnd = new FrontEndAnalyzer();
+        run(TestPrograms.inputTokens(fusedSymbols), fusedSymbols, frontEnd);
+
+        assertEquals(irGenerator.getIR().toString(), frontEnd.getIR().toString());
+        assertEquals(irGenerator.getIRBuffer().size(), frontEnd.getIRBuffer().size());
+        assertEquals(irGenerator.getVariables().size(), frontEnd.getVariables().size());
+        assertEquals(SourceCodeType.Int, fusedSymbols.get("result").getType());
+        assertEquals(separateSymbols.get("result").getType(), fusedSymbols.get("result").getType());
+    }
+
+    @Test
+    void checkOnlyModeSetsTypesWithoutIR() {
+        final var symbolTable = new SymbolTable();
+        final var frontEnd = new FrontEndAnalyzer(false);
+        run(TestPrograms.inputTokens(symbolTable), symbolTable, frontEnd);
+
+        assertEquals(SourceCodeType.Int, symbolTable.get("result").getType());
+        assertThrows(RuntimeException.class, frontEnd::getIR);
+        assertThrows(RuntimeException.class, frontEnd::getIRBuffer);
+        // 只检查时只关心语义检查关心的产生式与单词
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            assertEquals(semanticAnalyzer.isInterestedIn(production), frontEnd.isInterestedIn(production), production.toString());
+        }
+        for (final var kind : TokenKind.allInOrdinalOrder()) {
+            assertEquals(semanticAnalyzer.isInterestedIn(kind), frontEnd.isInterestedIn(kind), kind.getIdentifier());
+        }
+    }
+
+    @Test
+    void fusedObserverIsBoundWhereEitherPartIsInterested() {
+        final var frontEnd = new FrontEndAnalyzer();
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        final var irGenerator = new IRGenerator();
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            assertEquals(semanticAnalyzer.isInterestedIn(production) || irGenerator.isInterestedIn(production),
+                frontEnd.isInterestedIn(production), production.toString());
+        }
+    }
+
+    @Test
+    void semanticErrorsAreReportedLikeTheSeparateAnalyzer() {
+        // b 没有声明, 赋值时类型不一致
+        final var source = "int a;\na = 1;\nb = a;\nreturn a;";
+        final var separateSymbols = new SymbolTable();
+        final var separate = assertThrows(RuntimeException.class,
+            () -> run(TestPrograms.lex(source, separateSymbols), separateSymbols, new SemanticAnalyzer(), new IRGenerator()));
+        final var fusedSymbols = new SymbolTable();
+        final var fused = assertThrows(RuntimeException.class,
+            () -> run(TestPrograms.lex(source, fusedSymbols), fusedSymbols, new FrontEndAnalyzer()));
+        assertEquals(separate.getMessage(), fused.getMessage());
+        assertTrue(fused.getMessage().endsWith(" b"), fused.getMessage());
+    }
+}
@@ -0,0 +1,160 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GLRSyntaxAnalyzerTest {
+    // 不分优先级与结合性的表达式文法, SLR 表中 E + E 与 E * E 之后的 + 与 * 上都有移入-规约冲突
+    private static final String AMBIGUOUS_GRAMMAR = """
+        P -> E;
+        E -> E + E;
+        E -> E * E;
+        E -> id;
+        """;
+
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    @AfterEach
+    void restoreGrammar() {
+        GrammarInfo.reload();
+    }
+
+    private static List<Token> expression(String... words) {
+        final var tokens = new ArrayList<Token>();
+        for (final var word : words) {
+            tokens.add(word.equals("+") || word.equals("*") ? Token.simple(word) : Token.normal("id", word));
+        }
+        tokens.add(Token.eof());
+        return tokens;
+    }
+
+    private static GLRSyntaxAnalyzer ambiguousParser(List<Token> tokens, ActionObserver observer) {
+        TestPrograms.loadGrammar(AMBIGUOUS_GRAMMAR);
+        final var generator = new TableGenerator(TableGenerator.BuildMode.Sequential, true);
+        generator.run();
+        assertTrue(generator.getConflicts().getConflictedStatusCount() > 0);
+
+        final var parser = new GLRSyntaxAnalyzer(new SymbolTable());
+        parser.registerObserver(observer);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(generator.getTable(), generator.getConflicts());
+        return parser;
+    }
+
+    @Test
+    void conflictingTableIsRejectedWithoutKeepConflicts() {
+        TestPrograms.loadGrammar(AMBIGUOUS_GRAMMAR);
+        assertThrows(RuntimeException.class, () -> new TableGenerator().run());
+    }
+
+    @Test
+    void ambiguousInputYieldsOneCompleteDerivation() {
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = ambiguousParser(expression("a", "+", "b", "*", "c"), recorder);
+        parser.run();
+
+        final var reductions = recorder.reductions();
+        assertTrue(parser.getAmbiguityCount() > 0);
+        assertEquals(6, reductions.size(), reductions.toString());
+        assertEquals(3, Collections.frequency(reductions, "E -> id"));
+        assertEquals(1, Collections.frequency(reductions, "E -> E + E"));
+        assertEquals(1, Collections.frequency(reductions, "E -> E * E"));
+        assertEquals("P -> E", reductions.get(reductions.size() - 1));
+        // 第一个 id 总是最先被规约, 且其后先移入 +
+        assertEquals("E -> id", reductions.get(0));
+    }
+
+    @Test
+    void unambiguousInputOnAmbiguousGrammarHasNoChoices() {
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = ambiguousParser(expression("a", "+", "b"), recorder);
+        parser.run();
+
+        assertEquals(0, parser.getAmbiguityCount());
+        assertEquals(List.of("E -> id", "E -> id", "E -> E + E", "P -> E"), recorder.reductions());
+    }
+
+    @Test
+    void longAmbiguousChainStillAccepts() {
+        final var words = new ArrayList<String>();
+        for (int i = 0; i < 13; i++) {
+            words.add(i == 0 ? "x" : (i % 2 == 1 ? "+" : "x"));
+        }
+        words.add("*");
+        words.add("y");
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = ambiguousParser(expression(words.toArray(String[]::new)), recorder);
+        parser.run();
+
+        assertEquals(8, Collections.frequency(recorder.reductions(), "E -> id"));
+        assertEquals("P -> E", recorder.reductions().get(recorder.reductions().size() - 1));
+    }
+
+    @Test
+    void syntaxErrorIsReported() {
+        final var parser = ambiguousParser(expression("a", "+", "+", "b"), new TestPrograms.ReductionRecorder());
+        assertThrows(RuntimeException.class, parser::run);
+    }
+
+    @Test
+    void deterministicGrammarParsesLikeSyntaxAnalyzer() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new GLRSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(recorder);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(new TableLoader().load(FilePathConfig.LR1_TABLE_PATH));
+        parser.run();
+
+        assertEquals(0, parser.getAmbiguityCount());
+        assertEquals(TestPrograms.expectedReductions(), recorder.reductions());
+    }
+
+    @Test
+    void observersAreOnlyNotifiedOfWhatTheyAreInterestedIn() {
+        // 只关心 E -> E * E 与 * 的观察者, 在确定模式与合并时补发的通知中都不应收到其他事件
+        final var recorder = new TestPrograms.ReductionRecorder() {
+            @Override
+            public boolean isInterestedIn(Production production) {
+                return production.toString().equals("E -> E * E");
+            }
+
+            @Override
+            public boolean isInterestedIn(TokenKind kind) {
+                return kind.getIdentifier().equals("*");
+            }
+        };
+        final var everything = new TestPrograms.ReductionRecorder();
+        final var parser = ambiguousParser(expression("a", "+", "b", "*", "c", "*", "d"), recorder);
+        parser.registerObserver(everything);
+        parser.run();
+
+        assertTrue(parser.getAmbiguityCount() > 0);
+        final var expected = everything.events().stream()
+            .filter(event -> event.endsWith("E -> E * E") || (event.startsWith("shift") && event.endsWith("(*,)")))
+            .toList();
+        assertEquals(2, Collections.frequency(everything.reductions(), "E -> E * E"));
+        assertIterableEquals(expected, recorder.events().subList(0, recorder.events().size() - 1));
+        assertTrue(recorder.events().get(recorder.events().size() - 1).startsWith("accept"));
+    }
+}
@@ -0,0 +1,238 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalSyntaxAnalyzerTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    private static String program(int statements, int edited, String replacement) {
+        final var source = new StringBuilder("int a;\nint b;\n");
+        for (int i = 0; i < statements; i++) {
+            source.append(i == edited ? replacement : "a = (a + %d) * b;\n".formatted(i));
+        }
+        return source.append("return a;\n").toString();
+    }
+
+    /**
+     * 以属性栈求出所有语句的值之和: 赋值与 return 语句的值为其表达式的值, 声明为 0; 表达式中只有常量
+     */
+    private static final class StatementSum implements ActionObserver {
+        private AttributeStack attributes;
+        private final List<Integer> totals = new ArrayList<>();
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            attributes.setValue(attributes.top(), Integer.parseInt(currentToken.getText()));
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            final var head = attributes.head();
+            final var value = switch (production.toString()) {
+                case "E -> E + A" -> attributes.value(attributes.rhs(1)) + attributes.value(attributes.rhs(3));
+                case "E -> E - A" -> attributes.value(attributes.rhs(1)) - attributes.value(attributes.rhs(3));
+                case "A -> A * B" -> attributes.value(attributes.rhs(1)) * attributes.value(attributes.rhs(3));
+                case "B -> ( E )", "S -> return E" -> attributes.value(attributes.rhs(2));
+                case "S -> id = E" -> attributes.value(attributes.rhs(3));
+                case "S -> D id" -> 0;
+                case "S_list -> S Semicolon S_list" -> attributes.value(attributes.rhs(1)) + attributes.value(attributes.rhs(3));
+                case "S_list -> S Semicolon" -> attributes.value(attributes.rhs(1));
+                default -> throw new AssertionError("not interested in " + production);
+            };
+            attributes.setValue(head, value);
+        }
+
+        @Override
+        public boolean isInterestedIn(Production production) {
+            return production.body().size() > 1;
+        }
+
+        @Override
+        public boolean isInterestedIn(TokenKind kind) {
+            return kind.getIdentifier().equals("IntConst");
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            totals.add(attributes.value(attributes.top()));
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public void setAttributeStack(AttributeStack attributes) {
+            this.attributes = attributes;
+        }
+
+        private int last() {
+            return totals.get(totals.size() - 1);
+        }
+    }
+
+    private static String constants(int statements, int edited, String replacement) {
+        final var source = new StringBuilder("int a;\n");
+        for (int i = 0; i < statements; i++) {
+            source.append(i == edited ? replacement : "a = (%d + 2) * 3 - %d;\n".formatted(i, i % 7));
+        }
+        return source.append("return 1;\n").toString();
+    }
+
+    private static int fullParseSum(List<Token> tokens, SymbolTable symbolTable) {
+        final var sum = new StatementSum();
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.registerObserver(sum);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+        return sum.last();
+    }
+
+    private static long count(List<String> events, String prefix) {
+        return events.stream().filter(event -> event.startsWith(prefix)).count();
+    }
+
+    @Test
+    void firstParseReducesLikeAFullParse() {
+        final var symbolTable = new SymbolTable();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new IncrementalSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(recorder);
+        parser.loadLRTable(table);
+        parser.loadTokens(TestPrograms.inputTokens(symbolTable));
+        parser.run();
+
+        assertIterableEquals(TestPrograms.expectedReductions(), recorder.reductions());
+        assertEquals(0, parser.getReusedTokenCount());
+    }
+
+    @Test
+    void reparseOnlyNotifiesTheEditedRegion() {
+        final var symbolTable = new SymbolTable();
+        final var original = TestPrograms.lex(program(40, -1, null), symbolTable);
+        final var edited = TestPrograms.lex(program(40, 20, "b = a - 7;\n"), symbolTable);
+
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new IncrementalSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(recorder);
+        parser.loadLRTable(table);
+        parser.parse(original);
+        recorder.events().clear();
+        recorder.reductions().clear();
+        parser.parse(edited);
+
+        // 每个词法单元要么重新移入, 要么包含在被重用的子树中
+        assertEquals(edited.size() - 1, count(recorder.events(), "shift") + parser.getReusedTokenCount());
+        assertTrue(parser.getReusedTokenCount() > edited.size() * 9 / 10, "reused " + parser.getReusedTokenCount());
+
+        // 重新分析的规约都是完整分析中的规约, 改动的语句整条重新分析
+        final var full = TestPrograms.reductions(table, edited, symbolTable);
+        final var remaining = new HashMap<String, Integer>();
+        full.forEach(reduction -> remaining.merge(reduction, 1, Integer::sum));
+        for (final var reduction : recorder.reductions()) {
+            assertTrue(remaining.merge(reduction, -1, Integer::sum) >= 0, reduction);
+        }
+        assertTrue(recorder.reductions().contains("S -> id = E"));
+        assertTrue(recorder.reductions().contains("E -> E - A"));
+        // 只有改动的语句与其前后紧邻的少量单词重新移入
+        assertTrue(count(recorder.events(), "shift") < 10, recorder.events().toString());
+        assertTrue(recorder.events().stream().anyMatch(event -> event.startsWith("shift") && event.contains("7")));
+
+        // 从头分析同一个词法单元串得到的规约与完整分析相同
+        final var fresh = new TestPrograms.ReductionRecorder();
+        final var freshParser = new IncrementalSyntaxAnalyzer(symbolTable);
+        freshParser.registerObserver(fresh);
+        freshParser.loadLRTable(table);
+        freshParser.parse(edited);
+        assertIterableEquals(full, fresh.reductions());
+    }
+
+    @Test
+    void failedReparseNotifiesNothingAndKeepsTheOldTree() {
+        final var symbolTable = new SymbolTable();
+        final var original = TestPrograms.lex(program(20, -1, null), symbolTable);
+        final var broken = TestPrograms.lex(program(20, 10, "b = (a - 7;\n"), symbolTable);
+        final var fixed = TestPrograms.lex(program(20, 10, "b = (a - 7);\n"), symbolTable);
+
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new IncrementalSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(recorder);
+        parser.loadLRTable(table);
+        parser.parse(original);
+        final var before = new ArrayList<>(recorder.events());
+
+        parser.loadTokens(broken);
+        assertThrows(RuntimeException.class, parser::run);
+        assertIterableEquals(before, recorder.events());
+
+        // 仍以出错之前的分析树为基准
+        recorder.events().clear();
+        parser.loadTokens(fixed);
+        parser.run();
+        assertEquals(fixed.size() - 1, count(recorder.events(), "shift") + parser.getReusedTokenCount());
+        assertTrue(parser.getReusedTokenCount() > fixed.size() * 8 / 10, "reused " + parser.getReusedTokenCount());
+        assertEquals(1, count(recorder.events(), "accept"));
+    }
+
+    @Test
+    void reusedSubtreesKeepTheirSynthesizedAttributes() {
+        final var symbolTable = new SymbolTable();
+        final var sum = new StatementSum();
+        final var parser = new IncrementalSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(sum);
+        parser.loadLRTable(table);
+
+        final var original = TestPrograms.lex(constants(300, -1, null), symbolTable);
+        parser.parse(original);
+        assertEquals(fullParseSum(original, symbolTable), sum.last());
+
+        // 反复改动不同的语句, 结点数增长后旧结点会被回收, 保存的属性行随结点一起移动
+        for (int round = 0; round < 30; round++) {
+            final var edited = TestPrograms.lex(constants(300, (round * 37) % 300, "a = %d * (4 + %d);\n".formatted(round, round)), symbolTable);
+            parser.parse(edited);
+            assertTrue(parser.getReusedTokenCount() > 0);
+            assertEquals(fullParseSum(edited, symbolTable), sum.last(), "round " + round);
+        }
+    }
+
+    @Test
+    void observersRegisteredBetweenParsesSeeAFullParse() {
+        final var symbolTable = new SymbolTable();
+        final var first = new StatementSum();
+        final var parser = new IncrementalSyntaxAnalyzer(symbolTable);
+        parser.registerObserver(first);
+        parser.loadLRTable(table);
+        parser.parse(TestPrograms.lex(constants(20, -1, null), symbolTable));
+
+        final var second = new StatementSum();
+        parser.registerObserver(second);
+        final var edited = TestPrograms.lex(constants(20, 5, "a = 100;\n"), symbolTable);
+        parser.parse(edited);
+        assertEquals(0, parser.getReusedTokenCount());
+        assertEquals(fullParseSum(edited, symbolTable), first.last());
+        assertEquals(fullParseSum(edited, symbolTable), second.last());
+    }
+}
@@ -0,0 +1,118 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseEventLogTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    private static ParseEventLog record(List<Token> tokens, SymbolTable symbolTable) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        return parser.record();
+    }
+
+    private static TestPrograms.ReductionRecorder liveRun(List<Token> tokens, SymbolTable symbolTable) {
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.registerObserver(recorder);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+        return recorder;
+    }
+
+    @Test
+    void replayDeliversTheSameEventsAsALiveRun() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var log = record(tokens, symbolTable);
+        final var live = liveRun(tokens, symbolTable);
+
+        final var replayed = new TestPrograms.ReductionRecorder();
+        log.replay(replayed);
+        assertIterableEquals(live.events(), replayed.events());
+        // 接受不计入事件数
+        assertEquals(live.events().size() - 1, log.size());
+
+        // 日志不会因回放而改变, 可以再次回放
+        final var again = new TestPrograms.ReductionRecorder();
+        log.replay(again);
+        assertIterableEquals(live.events(), again.events());
+    }
+
+    @Test
+    void parallelReplayGivesEachObserverTheFullParse() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var log = record(tokens, symbolTable);
+
+        final var expected = new IRGenerator();
+        expected.setSymbolTable(symbolTable);
+        log.replay(expected);
+
+        final var observers = new ArrayList<ActionObserver>();
+        final var generators = new ArrayList<IRGenerator>();
+        final var recorders = new ArrayList<TestPrograms.ReductionRecorder>();
+        for (int i = 0; i < 4; i++) {
+            final var generator = new IRGenerator();
+            generator.setSymbolTable(symbolTable);
+            generators.add(generator);
+            final var recorder = new TestPrograms.ReductionRecorder();
+            recorders.add(recorder);
+            observers.add(generator);
+            observers.add(recorder);
+        }
+        log.replayInParallel(observers);
+
+        for (final var generator : generators) {
+            assertEquals(expected.getIR().toString(), generator.getIR().toString());
+        }
+        for (final var recorder : recorders) {
+            assertIterableEquals(TestPrograms.expectedReductions(), recorder.reductions());
+        }
+    }
+
+    @Test
+    void parallelReplayRethrowsObserverFailures() {
+        final var symbolTable = new SymbolTable();
+        final var log = record(TestPrograms.inputTokens(symbolTable), symbolTable);
+        final var failing = new TestPrograms.ReductionRecorder() {
+            @Override
+            public void whenReduce(Status currentStatus, Production production) {
+                throw new IllegalStateException("observer failed on " + production);
+            }
+        };
+
+        final var thrown = assertThrows(IllegalStateException.class,
+            () -> log.replayInParallel(List.of(new TestPrograms.ReductionRecorder(), failing)));
+        assertTrue(thrown.getMessage().startsWith("observer failed"));
+    }
+
+    @Test
+    void recordingRejectsInvalidInputWithoutALog() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex("int a;\na = ;\nreturn a;", symbolTable);
+        assertThrows(RuntimeException.class, () -> record(tokens, symbolTable));
+    }
+}
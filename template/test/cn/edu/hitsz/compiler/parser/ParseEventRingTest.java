@@ -0,0 +1,88 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseEventRingTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    private static SyntaxAnalyzer parser(List<Token> tokens, SymbolTable symbolTable) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        return parser;
+    }
+
+    @Test
+    void consumersReceiveTheSymbolTableWithoutRegistering() {
+        // 缓冲区只有 4 个槽位, 驱动程序要反复等待观察者让出槽位
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        final var irGenerator = new IRGenerator();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable).runPipelined(List.of(semanticAnalyzer, irGenerator, recorder), 4);
+
+        assertIterableEquals(TestPrograms.expectedReductions(), recorder.reductions());
+        assertEquals(SourceCodeType.Int, symbolTable.get("result").getType());
+
+        final var expectedSymbols = new SymbolTable();
+        final var expected = new FrontEndAnalyzer();
+        final var reference = parser(TestPrograms.inputTokens(expectedSymbols), expectedSymbols);
+        reference.registerObserver(expected);
+        reference.run();
+        assertEquals(expected.getIR().toString(), irGenerator.getIR().toString());
+    }
+
+    @Test
+    void bufferSizeMustBeAPowerOfTwo() {
+        final var symbolTable = new SymbolTable();
+        final var parser = parser(TestPrograms.lex("return 1;", symbolTable), symbolTable);
+        assertThrows(RuntimeException.class, () -> parser.runPipelined(List.of(new TestPrograms.ReductionRecorder()), 6));
+    }
+
+    @Test
+    void syntaxErrorsStopTheConsumers() {
+        final var symbolTable = new SymbolTable();
+        final var parser = parser(TestPrograms.lex("int a;\na = = 1;\nreturn a;", symbolTable), symbolTable);
+        final var recorder = new TestPrograms.ReductionRecorder();
+        assertThrows(RuntimeException.class, () -> parser.runPipelined(List.of(recorder), 8));
+        assertFalse(recorder.events().stream().anyMatch(event -> event.startsWith("accept")));
+    }
+
+    @Test
+    void consumerFailuresAreRethrownAfterTheParse() {
+        final var symbolTable = new SymbolTable();
+        final var parser = parser(TestPrograms.inputTokens(symbolTable), symbolTable);
+        final var failing = new TestPrograms.ReductionRecorder() {
+            @Override
+            public void whenReduce(Status currentStatus, Production production) {
+                throw new IllegalStateException("consumer failed");
+            }
+        };
+        final var healthy = new TestPrograms.ReductionRecorder();
+
+        // 出错的消费者不再占用槽位, 其余消费者照常处理完全部事件
+        assertThrows(IllegalStateException.class, () -> parser.runPipelined(List.of(failing, healthy), 4));
+        assertIterableEquals(TestPrograms.expectedReductions(), healthy.reductions());
+    }
+}
@@ -0,0 +1,425 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Action;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntaxAnalyzerTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    @AfterEach
+    void restoreGrammar() {
+        GrammarInfo.reload();
+    }
+
+    private static SyntaxAnalyzer parser(List<Token> tokens, SymbolTable symbolTable, ActionObserver... observers) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        for (final var observer : observers) {
+            parser.registerObserver(observer);
+        }
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        return parser;
+    }
+
+    /**
+     * 只关心运算与括号的常量表达式求值器, 单产生式 (E -> A, A -> B, B -> IntConst) 的规约链中属性原样留在栈顶一行上
+     */
+    private static final class Evaluator implements ActionObserver {
+        private final List<Integer> returned = new ArrayList<>();
+        private AttributeStack attributes;
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            attributes.setValue(attributes.top(), Integer.parseInt(currentToken.getText()));
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            final var head = attributes.head();
+            switch (production.toString()) {
+                case "E -> E + A" -> attributes.setValue(head, attributes.value(attributes.rhs(1)) + attributes.value(attributes.rhs(3)));
+                case "E -> E - A" -> attributes.setValue(head, attributes.value(attributes.rhs(1)) - attributes.value(attributes.rhs(3)));
+                case "A -> A * B" -> attributes.setValue(head, attributes.value(attributes.rhs(1)) * attributes.value(attributes.rhs(3)));
+                case "B -> ( E )" -> attributes.setValue(head, attributes.value(attributes.rhs(2)));
+                case "S -> return E" -> returned.add(attributes.value(attributes.rhs(2)));
+                default -> fail("not interested in " + production);
+            }
+        }
+
+        @Override
+        public boolean isInterestedIn(Production production) {
+            return production.body().size() == 3 || production.toString().equals("S -> return E");
+        }
+
+        @Override
+        public boolean isInterestedIn(TokenKind kind) {
+            return kind.getIdentifier().equals("IntConst");
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public void setAttributeStack(AttributeStack attributes) {
+            this.attributes = attributes;
+        }
+    }
+
+    @Test
+    void reductionsMatchTheStandardAnswer() {
+        final var symbolTable = new SymbolTable();
+        assertIterableEquals(TestPrograms.expectedReductions(), TestPrograms.reductions(table, TestPrograms.inputTokens(symbolTable), symbolTable));
+    }
+
+    @Test
+    void chainReductionsNotifyEveryUnitProductionInOrder() {
+        // return 3; 中 B -> IntConst, A -> B, E -> A 在同一个向前看符号下连成一条链, 三者都要依次通知
+        final var symbolTable = new SymbolTable();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        parser(TestPrograms.lex("return 3;", symbolTable), symbolTable, recorder).run();
+        assertIterableEquals(List.of("B -> IntConst", "A -> B", "E -> A", "S -> return E", "S_list -> S Semicolon", "P -> S_list"),
+            recorder.reductions());
+
+        // 链中的每次规约都以逐个规约时栈顶的状态通知, 与不做规约链的 LR 驱动程序相同
+        final var chainEvents = recorder.events().subList(2, 5);
+        assertIterableEquals(plainEvents(TestPrograms.lex("return 3;", new SymbolTable())).subList(2, 5), chainEvents);
+        assertEquals(3, chainEvents.stream().map(event -> event.split(" ")[1]).distinct().count());
+    }
+
+    @Test
+    void everyDriverReportsTheStatesOfAPlainLRParse() {
+        final var source = "int a;\na = (1 + 2) * 3 - 4;\nreturn a * (5 - 6);\n";
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex(source, symbolTable);
+        final var expected = plainEvents(tokens);
+
+        final var direct = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable, direct).run();
+        assertIterableEquals(expected, direct.events());
+
+        final var replayed = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable).record().replay(replayed);
+        assertIterableEquals(expected, replayed.events());
+
+        final var piped = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable).runPipelined(List.of(piped), 4);
+        assertIterableEquals(expected, piped.events());
+    }
+
+    // 只用状态上的 action/goto 逐个规约的 LR 驱动程序, 作为事件序列的参照
+    private static List<String> plainEvents(List<Token> tokens) {
+        final var events = new ArrayList<String>();
+        final var stack = new ArrayDeque<Status>();
+        stack.push(table.getInit());
+        var position = 0;
+        while (true) {
+            final var status = stack.peek();
+            final var token = tokens.get(position);
+            final var action = status.getAction(token);
+            switch (action.getKind()) {
+                case Shift -> {
+                    events.add("shift " + status.index() + " " + token);
+                    stack.push(action.getStatus());
+                    position++;
+                }
+                case Reduce -> {
+                    final var production = action.getProduction();
+                    events.add("reduce " + status.index() + " " + production);
+                    production.body().forEach(term -> stack.pop());
+                    stack.push(stack.peek().getGoto(production.head()));
+                }
+                case Accept -> {
+                    events.add("accept " + status.index());
+                    return events;
+                }
+                case Error -> throw new AssertionError("unexpected " + token + " at " + status);
+            }
+        }
+    }
+
+    @Test
+    void chainReductionsSkipObserversNotInterestedInThem() {
+        final var symbolTable = new SymbolTable();
+        final var evaluator = new Evaluator();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        parser(TestPrograms.lex("return (1 + 2) * 3 - 4 * (5 - 6);", symbolTable), symbolTable, evaluator, recorder).run();
+
+        assertIterableEquals(List.of(13), evaluator.returned);
+        assertTrue(recorder.reductions().contains("E -> A"));
+    }
+
+    @Test
+    void deeplyNestedExpressionsGrowTheStateStack() {
+        // 每层括号在状态栈上留下 "(" 与 E 两个状态, 500 层远超初始的 64 个槽位
+        final var depth = 500;
+        final var source = "return " + "(".repeat(depth) + "1 + 2" + ")".repeat(depth) + ";";
+        for (final var debug : List.of(false, true)) {
+            final var symbolTable = new SymbolTable();
+            final var evaluator = new Evaluator();
+            final var parser = new SyntaxAnalyzer(symbolTable, debug);
+            parser.registerObserver(evaluator);
+            parser.loadTokens(TestPrograms.lex(source, symbolTable));
+            parser.loadLRTable(table);
+            parser.run();
+            assertIterableEquals(List.of(3), evaluator.returned);
+        }
+    }
+
+    @Test
+    void debugModeAgreesWithTheStandardAnswer() {
+        // 调试模式额外维护符号栈并在每次规约时检查产生式体, 对正确的表不应报错
+        final var symbolTable = new SymbolTable();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        final var parser = new SyntaxAnalyzer(symbolTable, true);
+        parser.registerObserver(recorder);
+        parser.loadTokens(TestPrograms.inputTokens(symbolTable));
+        parser.loadLRTable(table);
+        parser.run();
+        assertIterableEquals(TestPrograms.expectedReductions(), recorder.reductions());
+    }
+
+    // 只查询 Status 中的 action/goto 的朴素驱动程序, 不做默认规约与规约链, 作为平铺数组驱动的对照
+    private static List<String> referenceReductions(List<Token> tokens) {
+        final var reductions = new ArrayList<String>();
+        final var stack = new ArrayDeque<Status>();
+        stack.push(table.getInit());
+        var position = 0;
+        while (true) {
+            final var action = table.getAction(stack.getFirst(), tokens.get(position));
+            switch (action.getKind()) {
+                case Shift -> {
+                    stack.push(action.getStatus());
+                    position++;
+                }
+                case Reduce -> {
+                    final var production = action.getProduction();
+                    reductions.add(production.toString());
+                    production.body().forEach(symbol -> stack.pop());
+                    stack.push(table.getGoto(stack.getFirst(), production.head()));
+                }
+                case Accept -> {
+                    reductions.add(GrammarInfo.getBeginProduction().toString());
+                    return reductions;
+                }
+                default -> throw new IllegalStateException("unexpected token " + tokens.get(position));
+            }
+        }
+    }
+
+    @Test
+    void flatArrayDriverAgreesWithStatusLookups() {
+        final var programs = List.of(
+            "int a;\nint b;\na = 1;\nb = a * (a + 2) - 3;\nreturn b;",
+            "return 1 - 2 - 3 * 4 * (5 + 6);",
+            "int x;\nx = ((x));\nx = x * x * x + x - x;\nreturn x;");
+        for (final var program : programs) {
+            final var symbolTable = new SymbolTable();
+            final var tokens = TestPrograms.lex(program, symbolTable);
+            assertIterableEquals(referenceReductions(tokens), TestPrograms.reductions(table, tokens, symbolTable), program);
+        }
+    }
+
+    @Test
+    void encodedActionsMatchStatusActions() {
+        for (final var status : table.getStatusInIndexOrder()) {
+            for (final var terminal : table.getTerminals()) {
+                final var code = table.getEncodedAction(status, terminal);
+                final var action = status.getAction(terminal);
+                assertEquals(action.getKind(), Action.kindOf(code));
+                assertEquals(action.encode(), code);
+            }
+        }
+    }
+
+    @Test
+    void handlersRunInRegistrationOrderOnlyForTheirBinding() {
+        final var symbolTable = new SymbolTable();
+        final var calls = new ArrayList<String>();
+        final var parser = parser(TestPrograms.lex("int a;\na = 1 + 2;\nreturn a;", symbolTable), symbolTable);
+        final var add = GrammarInfo.getProductionsInOrder().stream().filter(production -> production.toString().equals("E -> E + A")).findFirst().orElseThrow();
+        parser.registerReduceHandler(add, (status, production) -> calls.add("first " + production));
+        parser.registerReduceHandler(add, (status, production) -> calls.add("second " + production));
+        parser.registerShiftHandler(TokenKind.fromString("IntConst"), (status, token) -> calls.add("shift " + token.getText()));
+        parser.run();
+
+        assertIterableEquals(List.of("shift 1", "shift 2", "first E -> E + A", "second E -> E + A"), calls);
+    }
+
+    @Test
+    void semanticObserversAreOnlyBoundWhereTheActionFilesNeedThem() {
+        // B -> id 在语义检查中要查出变量的类型, 在 IR 生成中只是原样传递; E -> A 两者都只是原样传递
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        final var irGenerator = new IRGenerator();
+        final var interest = new ArrayList<String>();
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            interest.add("%s %b %b".formatted(production, semanticAnalyzer.isInterestedIn(production), irGenerator.isInterestedIn(production)));
+        }
+        assertTrue(interest.contains("B -> id true false"));
+        assertTrue(interest.contains("E -> A false false"));
+        assertTrue(interest.contains("B -> ( E ) true true"));
+        assertTrue(interest.contains("S -> return E false true"));
+    }
+
+    private static String manyStatements(int count, String broken) {
+        final var source = new StringBuilder("int a;\nint b;\n");
+        for (int i = 0; i < count; i++) {
+            source.append(i == count / 2 && broken != null ? broken : "a = a * (b + %d) - 1;\nb = a;\n".formatted(i));
+        }
+        return source.append("return a;\n").toString();
+    }
+
+    @Test
+    void parallelParseNotifiesLikeRun() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex(manyStatements(300, null), symbolTable);
+        final var sequential = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable, sequential).run();
+        final var parallel = new TestPrograms.ReductionRecorder();
+        parser(tokens, symbolTable, parallel).runParallel();
+        assertIterableEquals(sequential.events(), parallel.events());
+    }
+
+    @Test
+    void parallelParseResumesAtTheBrokenSegment() {
+        // 出错的段之前的事件已经通知, 从出错的段起顺序分析, 报告的错误与观察者收到的事件都与 run 相同
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex(manyStatements(300, "a = (b + ;\nb = * 2;\n"), symbolTable);
+
+        final var sequential = new TestPrograms.ReductionRecorder();
+        final var sequentialParser = parser(tokens, symbolTable, sequential);
+        final var sequentialError = assertThrows(RuntimeException.class, sequentialParser::run);
+        final var parallel = new TestPrograms.ReductionRecorder();
+        final var parallelParser = parser(tokens, symbolTable, parallel);
+        final var parallelError = assertThrows(RuntimeException.class, parallelParser::runParallel);
+
+        assertEquals(sequentialError.getMessage(), parallelError.getMessage());
+        assertEquals(2, parallelParser.getDiagnostics().size());
+        assertIterableEquals(sequentialParser.getDiagnostics(), parallelParser.getDiagnostics());
+        assertIterableEquals(sequential.events(), parallel.events());
+        assertFalse(parallel.events().isEmpty());
+    }
+
+    @Test
+    void parallelParseSplitsAtTheGrammarsOwnTerminator() {
+        // 以 - 结尾的语句列表, 文法中既没有 S_list 也没有 Semicolon
+        TestPrograms.loadGrammar("""
+            P -> L;
+            L -> T - L;
+            L -> T -;
+            T -> id = id;
+            T -> return id;
+            """);
+        final var generator = new TableGenerator();
+        generator.run();
+
+        final var tokens = new ArrayList<Token>();
+        for (int i = 0; i < 200; i++) {
+            tokens.addAll(List.of(Token.normal("id", "a"), Token.simple("="), Token.normal("id", "b" + i), Token.simple("-")));
+        }
+        tokens.addAll(List.of(Token.simple("return"), Token.normal("id", "a"), Token.simple("-"), Token.eof()));
+
+        final var sequential = new TestPrograms.ReductionRecorder();
+        final var sequentialParser = new SyntaxAnalyzer(new SymbolTable());
+        sequentialParser.registerObserver(sequential);
+        sequentialParser.loadTokens(tokens);
+        sequentialParser.loadLRTable(generator.getTable());
+        sequentialParser.run();
+
+        final var parallel = new TestPrograms.ReductionRecorder();
+        final var parallelParser = new SyntaxAnalyzer(new SymbolTable());
+        parallelParser.registerObserver(parallel);
+        parallelParser.loadTokens(tokens);
+        parallelParser.loadLRTable(generator.getTable());
+        parallelParser.runParallel();
+
+        assertEquals(201 * 2 + 1, sequential.reductions().size());
+        assertIterableEquals(sequential.events(), parallel.events());
+    }
+
+    @Test
+    void everySyntaxErrorIsReportedAfterRecovering() {
+        final var source = "int a;\na = = 1;\nint b;\nb = (a + ;\nreturn b b;\nreturn a;";
+        for (final var debug : List.of(false, true)) {
+            final var symbolTable = new SymbolTable();
+            final var tokens = TestPrograms.lex(source, symbolTable);
+            final var recorder = new TestPrograms.ReductionRecorder();
+            final var parser = new SyntaxAnalyzer(symbolTable, debug);
+            parser.registerObserver(recorder);
+            parser.loadTokens(tokens);
+            parser.loadLRTable(table);
+
+            final var thrown = assertThrows(RuntimeException.class, parser::run);
+            assertTrue(thrown.getMessage().startsWith("Wrong! 3 syntax error(s)"), thrown.getMessage());
+            final var diagnostics = parser.getDiagnostics();
+            assertEquals(List.of(5, 16, 19), diagnostics.stream().map(ParseDiagnostic::tokenIndex).toList());
+            assertEquals(List.of("=", "Semicolon", "id"), diagnostics.stream().map(d -> d.token().getKindId()).toList());
+            assertTrue(diagnostics.get(0).expected().contains(TokenKind.fromString("IntConst")));
+
+            // 第一个错误之后观察者不再收到事件
+            assertIterableEquals(List.of("D -> int", "S -> D id"), recorder.reductions());
+            assertFalse(recorder.events().stream().anyMatch(event -> event.startsWith("accept")));
+        }
+    }
+
+    @Test
+    void missingGotoIsReportedAsADiagnostic() throws IOException {
+        // 删去状态 6 (return 之后) 对 E 的 goto: return 语句的 E -> A 规约无法完成, 应报告为该处的语法错误并继续分析
+        final var lines = Files.readAllLines(Path.of(FilePathConfig.LR1_TABLE_PATH));
+        final var header = List.of(lines.get(1).split(",", -1));
+        final var broken = new ArrayList<String>();
+        for (final var line : lines) {
+            final var cells = line.split(",", -1);
+            if (cells[0].equals("6")) {
+                cells[header.indexOf("E")] = "";
+            }
+            broken.add(String.join(",", cells));
+        }
+        final var file = Files.createTempFile("table", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, broken);
+        final var brokenTable = new TableLoader().load(file.toString());
+
+        for (final var debug : List.of(false, true)) {
+            final var symbolTable = new SymbolTable();
+            final var parser = new SyntaxAnalyzer(symbolTable, debug);
+            parser.loadTokens(TestPrograms.lex("int a;\nreturn a;\nreturn a + 1;", symbolTable));
+            parser.loadLRTable(brokenTable);
+            final var thrown = assertThrows(RuntimeException.class, parser::run);
+            assertTrue(thrown.getMessage().startsWith("Wrong! 2 syntax error(s)"), thrown.getMessage());
+            assertEquals(List.of(5, 8), parser.getDiagnostics().stream().map(ParseDiagnostic::tokenIndex).toList());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntaxTreeBuilderTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    private static SyntaxTreeBuilder build(List<Token> tokens, SymbolTable symbolTable) {
+        final var builder = new SyntaxTreeBuilder();
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.registerObserver(builder);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+        return builder;
+    }
+
+    private static List<Integer> children(SyntaxTreeBuilder tree, int node) {
+        final var children = new ArrayList<Integer>();
+        for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+            children.add(child);
+        }
+        return children;
+    }
+
+    @Test
+    void nodesAreNumberedInPostOrderOfTheReductions() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var tree = build(tokens, symbolTable);
+
+        // 每个移入的词法单元一个叶子, 每次规约 (含接受时补上的起始产生式) 一个内部结点
+        final var expected = TestPrograms.expectedReductions();
+        assertEquals(tokens.size() - 1 + expected.size(), tree.getNodeCount());
+        assertEquals(tree.getNodeCount() - 1, tree.getRoot());
+        assertEquals(GrammarInfo.getBeginProduction(), tree.getProduction(tree.getRoot()));
+
+        final var reductions = new ArrayList<String>();
+        final var leaves = new ArrayList<Token>();
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            if (tree.isLeaf(node)) {
+                leaves.add(tree.getToken(node));
+            } else {
+                reductions.add(tree.getProduction(node).toString());
+                // 孩子的编号都小于父结点
+                for (final var child : children(tree, node)) {
+                    assertTrue(child < node);
+                }
+            }
+        }
+        assertIterableEquals(expected, reductions);
+        assertIterableEquals(tokens.subList(0, tokens.size() - 1), leaves);
+        assertIterableEquals(leaves, tree.getTokens());
+    }
+
+    @Test
+    void childrenMatchTheProductionBody() {
+        final var symbolTable = new SymbolTable();
+        final var tree = build(TestPrograms.lex("int a;\na = (a + 2) * 3;\nreturn a;", symbolTable), symbolTable);
+
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            if (tree.isLeaf(node)) {
+                assertTrue(tree.getKind(node) < 0);
+                assertEquals(tree.getTokens().indexOf(tree.getToken(node)), tree.getTokenIndex(node));
+                continue;
+            }
+            final var body = tree.getProduction(node).body();
+            final var children = children(tree, node);
+            assertEquals(body.size(), children.size());
+            for (int i = 0; i < body.size(); i++) {
+                final var child = children.get(i);
+                if (body.get(i) instanceof NonTerminal nonTerminal) {
+                    assertEquals(nonTerminal, tree.getProduction(child).head());
+                } else {
+                    assertEquals(body.get(i), tree.getToken(child).getKind());
+                }
+            }
+            // 内部结点的词法单元下标为其第一个孩子的下标
+            assertEquals(tree.getTokenIndex(children.get(0)), tree.getTokenIndex(node));
+        }
+    }
+
+    @Test
+    void dumpListsEveryNodeIndentedByDepth() throws IOException {
+        final var symbolTable = new SymbolTable();
+        final var tree = build(TestPrograms.lex("return 1;", symbolTable), symbolTable);
+        final var file = Files.createTempFile("tree", ".txt");
+        try {
+            tree.dumpToFile(file.toString());
+            final var lines = Files.readAllLines(file).stream().filter(line -> !line.isEmpty()).toList();
+            assertEquals(tree.getNodeCount(), lines.size());
+            assertEquals("P -> S_list", lines.get(0));
+            assertEquals("  S_list -> S Semicolon", lines.get(1));
+            assertEquals("    S -> return E", lines.get(2));
+            assertTrue(lines.get(3).startsWith("      (return"), lines.get(3));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
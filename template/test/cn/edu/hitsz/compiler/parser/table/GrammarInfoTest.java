@@ -0,0 +1,53 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GrammarInfoTest {
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    @AfterEach
+    void restoreGrammar() {
+        GrammarInfo.reload();
+    }
+
+    @Test
+    void statementListOfTheLabGrammar() {
+        final var sync = GrammarInfo.getSyncSymbols().orElseThrow();
+        assertEquals(new NonTerminal("S"), sync.statement());
+        assertEquals(TokenKind.fromString("Semicolon"), sync.terminator());
+    }
+
+    @Test
+    void statementListUnderOtherNames() {
+        TestPrograms.loadGrammar("""
+            P -> L;
+            L -> T - L;
+            L -> T -;
+            T -> id;
+            """);
+        final var sync = GrammarInfo.getSyncSymbols().orElseThrow();
+        assertEquals(new NonTerminal("T"), sync.statement());
+        assertEquals(TokenKind.fromString("-"), sync.terminator());
+    }
+
+    @Test
+    void noStatementListWithoutTheTerminatedForm() {
+        // 只有 L -> T - L 而没有 L -> T - 时, 列表不以终结符结束, 不能在终结符后同步
+        TestPrograms.loadGrammar("""
+            P -> L;
+            L -> T - L;
+            L -> T;
+            T -> id;
+            """);
+        assertTrue(GrammarInfo.getSyncSymbols().isEmpty());
+    }
+}
@@ -0,0 +1,133 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalTableGeneratorTest {
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    @AfterEach
+    void restoreGrammar() {
+        GrammarInfo.reload();
+    }
+
+    private static TableGenerator runOriginal() {
+        final var original = new TableGenerator();
+        original.run();
+        return original;
+    }
+
+    private static List<String> originalGrammar() {
+        return FileUtils.readLines(GrammarInfo.getGrammarPath());
+    }
+
+    @Test
+    void diffReportsAddedAndRemovedHeads() {
+        final var before = GrammarInfo.getProductionsInOrder();
+        final var lines = new java.util.ArrayList<>(originalGrammar());
+        lines.remove("B -> IntConst;");
+        lines.add("B -> - B;");
+        TestPrograms.loadGrammar(String.join("\n", lines));
+
+        final var diff = GrammarDiff.between(before, GrammarInfo.getProductionsInOrder());
+        assertEquals(List.of("B -> - B"), diff.added().stream().map(Production::toString).toList());
+        assertEquals(List.of("B -> IntConst"), diff.removed().stream().map(Production::toString).toList());
+        assertEquals(Set.of("B"), diff.affectedHeads());
+    }
+
+    @Test
+    void incrementalTableMatchesFullRebuildAfterAnEdit() {
+        final var previous = runOriginal();
+        final var oldTable = previous.getTable();
+        TestPrograms.loadGrammar(String.join("\n", originalGrammar()) + "\nB -> - B;\n");
+
+        final var incremental = new TableGenerator();
+        incremental.runIncremental(previous);
+        final var full = new TableGenerator();
+        full.run();
+
+        assertIsomorphic(full.getTable(), incremental.getTable());
+
+        // 编辑之前就存在的状态沿用旧编号: 起始状态的 id 移入目标在两版文法中应有相同的编号
+        final var id = TokenKind.fromString("id");
+        assertEquals(oldTable.getInit().getAction(id).getStatus().index(),
+            incremental.getTable().getInit().getAction(id).getStatus().index());
+
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex("int a;\na = - - 3;\nreturn a;", symbolTable);
+        assertEquals(TestPrograms.reductions(full.getTable(), tokens, symbolTable),
+            TestPrograms.reductions(incremental.getTable(), tokens, symbolTable));
+    }
+
+    @Test
+    void incrementalRunWithoutEditsReproducesTheTable() {
+        final var previous = runOriginal();
+        GrammarInfo.reload();
+        final var again = new TableGenerator();
+        again.runIncremental(previous);
+        assertIsomorphic(previous.getTable(), again.getTable());
+        assertEquals(previous.getTable().getStatusInIndexOrder().size(), again.getTable().getStatusInIndexOrder().size());
+    }
+
+    @Test
+    void incrementalRunRequiresAPreviousRun() {
+        assertThrows(RuntimeException.class, () -> new TableGenerator().runIncremental(new TableGenerator()));
+    }
+
+    /**
+     * 从起始状态同时遍历两张表, 要求对应状态的动作种类, 规约的产生式与转移一一对应
+     */
+    private static void assertIsomorphic(LRTable expected, LRTable actual) {
+        assertEquals(expected.getStatusInIndexOrder().size(), actual.getStatusInIndexOrder().size());
+        final Map<Integer, Integer> mapping = new HashMap<>();
+        final var queue = new ArrayDeque<Status[]>();
+        mapping.put(0, 0);
+        queue.add(new Status[]{expected.getInit(), actual.getInit()});
+        while (!queue.isEmpty()) {
+            final var pair = queue.poll();
+            for (final var terminal : expected.getTerminals()) {
+                final var x = pair[0].getAction(terminal);
+                final var y = pair[1].getAction(terminal);
+                assertEquals(x.getKind(), y.getKind());
+                if (x.getKind() == Action.ActionKind.Reduce) {
+                    assertEquals(x.getProduction().toString(), y.getProduction().toString());
+                } else if (x.getKind() == Action.ActionKind.Shift) {
+                    link(mapping, queue, x.getStatus(), y.getStatus());
+                }
+            }
+            for (final var nonTerminal : expected.getNonTerminals()) {
+                final var x = pair[0].getGoto(nonTerminal);
+                final var y = pair[1].getGoto(GrammarInfo.getNonTerminal(nonTerminal.getTermName()));
+                assertEquals(x.isError(), y.isError());
+                if (!x.isError()) {
+                    link(mapping, queue, x, y);
+                }
+            }
+        }
+    }
+
+    private static void link(Map<Integer, Integer> mapping, ArrayDeque<Status[]> queue, Status x, Status y) {
+        final var previous = mapping.putIfAbsent(x.index(), y.index());
+        if (previous == null) {
+            queue.add(new Status[]{x, y});
+        } else {
+            assertEquals(previous.intValue(), y.index());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LRTableTest {
+    private static LRTable table;
+
+    @BeforeAll
+    static void loadTable() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+    }
+
+    @Test
+    void mergedRowsDecodeToTheOriginalActions() {
+        for (final var status : table.getStatusInIndexOrder()) {
+            for (final var terminal : table.getTerminals()) {
+                assertEquals(status.getAction(terminal).encode(), table.getEncodedAction(status, terminal));
+            }
+        }
+        assertTrue(table.getActionRowCount() < table.getStatusInIndexOrder().size());
+    }
+
+    @Test
+    void gotoArrayMatchesStatusGotos() {
+        for (final var status : table.getStatusInIndexOrder()) {
+            for (final var nonTerminal : table.getNonTerminals()) {
+                final var ordinal = GrammarInfo.getNonTerminalOrdinal(nonTerminal);
+                assertEquals(status.getGoto(nonTerminal).index(), table.getGoto(status.index(), ordinal));
+            }
+        }
+    }
+
+    @Test
+    void defaultReductionOnlyWhereEveryActionReducesTheSameProduction() {
+        var defaults = 0;
+        for (final var status : table.getStatusInIndexOrder()) {
+            Action only = null;
+            var single = true;
+            for (final var terminal : table.getTerminals()) {
+                final var action = status.getAction(terminal);
+                if (action.getKind() == Action.ActionKind.Error) {
+                    continue;
+                }
+                single &= action.getKind() == Action.ActionKind.Reduce && (only == null || only.equals(action));
+                only = action;
+            }
+
+            final var expected = single && only != null ? only : Action.error();
+            assertEquals(expected, table.getDefaultReduction(status));
+            assertEquals(expected.encode(), table.getEncodedDefaultReduction(status.index()));
+            if (expected.getKind() == Action.ActionKind.Reduce) {
+                defaults++;
+            }
+        }
+        assertTrue(defaults > 0);
+    }
+
+    @Test
+    void statusesAnswerFromTheFlatArrays() throws Exception {
+        // 表中的状态只是平铺数组之上的视图, 导出的表应与读入的 CSV 逐行相同
+        final var file = Files.createTempFile("table", ".csv");
+        try {
+            table.dumpTable(file.toString());
+            final var dumped = Files.readAllLines(file);
+            final var original = Files.readAllLines(Path.of(FilePathConfig.LR1_TABLE_PATH));
+            assertEquals(original.subList(2, original.size()), dumped.subList(2, original.size()));
+        } finally {
+            Files.delete(file);
+        }
+
+        for (final var status : table.getStatusInIndexOrder()) {
+            assertSame(status, table.getStatus(status.index()));
+            for (final var entry : status.action().entrySet()) {
+                final var action = entry.getValue();
+                assertSame(action, table.decode(table.getEncodedAction(status, entry.getKey())));
+                if (action.getKind() == Action.ActionKind.Shift) {
+                    assertSame(table.getStatus(action.getStatus().index()), action.getStatus());
+                }
+            }
+        }
+        final var init = table.getInit();
+        assertThrows(UnsupportedOperationException.class, () -> init.setAction(TokenKind.eof(), Action.accept()));
+    }
+}
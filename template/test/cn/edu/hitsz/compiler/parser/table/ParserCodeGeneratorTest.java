@@ -0,0 +1,138 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.CompiledSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.FrontEndAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParserCodeGeneratorTest {
+    private static LRTable table;
+    private static Function<SymbolTable, CompiledSyntaxAnalyzer> compiled;
+
+    @BeforeAll
+    static void compileParser() {
+        TestPrograms.loadTokenKinds();
+        table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        compiled = new ParserCodeGenerator(table).compile("cn.edu.hitsz.compiler.parser", "TestSyntaxAnalyzer");
+    }
+
+    private static void runCompiled(List<Token> tokens, SymbolTable symbolTable, ActionObserver observer) {
+        final var parser = compiled.apply(symbolTable);
+        parser.registerObserver(observer);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+    }
+
+    private static void runTableDriven(List<Token> tokens, SymbolTable symbolTable, ActionObserver observer) {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.registerObserver(observer);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+    }
+
+    @Test
+    void compiledParserReducesLikeTheStandardAnswer() {
+        final var symbolTable = new SymbolTable();
+        final var recorder = new TestPrograms.ReductionRecorder();
+        runCompiled(TestPrograms.inputTokens(symbolTable), symbolTable, recorder);
+        assertIterableEquals(TestPrograms.expectedReductions(), recorder.reductions());
+    }
+
+    @Test
+    void compiledParserEmitsTheSameEventsAsSyntaxAnalyzer() {
+        // 默认规约与单产生式规约链会改变事件中的当前状态, 两者一致说明生成的代码按相同的方式处理了它们
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex("""
+            int a;
+            int b;
+            a = (1 + 2) * 3 - 4;
+            b = a * (a - 5) + a;
+            return b;
+            """, symbolTable);
+
+        final var expected = new TestPrograms.ReductionRecorder();
+        runTableDriven(tokens, symbolTable, expected);
+        final var actual = new TestPrograms.ReductionRecorder();
+        runCompiled(tokens, symbolTable, actual);
+        assertIterableEquals(expected.events(), actual.events());
+    }
+
+    @Test
+    void compiledParserOnlyNotifiesInterestedObservers() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var observer = new TestPrograms.ReductionRecorder() {
+            @Override
+            public boolean isInterestedIn(Production production) {
+                return production.body().size() != 1;
+            }
+
+            @Override
+            public boolean isInterestedIn(TokenKind kind) {
+                return kind.getIdentifier().equals("id");
+            }
+        };
+        runCompiled(tokens, symbolTable, observer);
+
+        final var expected = TestPrograms.expectedReductions().stream()
+            .filter(production -> !production.matches("\\S+ -> \\S+") || production.equals(GrammarInfo.getBeginProduction().toString()))
+            .toList();
+        assertIterableEquals(expected, observer.reductions());
+        assertTrue(observer.events().stream().filter(event -> event.startsWith("shift")).allMatch(event -> event.contains("id")));
+        assertEquals(tokens.stream().filter(token -> token.getKindId().equals("id")).count(),
+            observer.events().stream().filter(event -> event.startsWith("shift")).count());
+    }
+
+    @Test
+    void compiledParserDrivesTheFrontEndLikeSyntaxAnalyzer() {
+        // 语义检查会在符号表中登记变量的类型, 两次分析各用一个符号表
+        final var expectedSymbols = new SymbolTable();
+        final var expected = new FrontEndAnalyzer();
+        runTableDriven(TestPrograms.inputTokens(expectedSymbols), expectedSymbols, expected);
+        final var actualSymbols = new SymbolTable();
+        final var actual = new FrontEndAnalyzer();
+        runCompiled(TestPrograms.inputTokens(actualSymbols), actualSymbols, actual);
+        assertEquals(expected.getIR().toString(), actual.getIR().toString());
+    }
+
+    @Test
+    void compiledParserRejectsInvalidInput() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.lex("int a;\na = = 1;\nreturn a;\n", symbolTable);
+        assertThrows(RuntimeException.class, () -> runCompiled(tokens, symbolTable, new TestPrograms.ReductionRecorder()));
+    }
+
+    @Test
+    void generatedMethodsStaySmall() {
+        // parse 只按组分派, 其余每个方法至多为每个终结符生成一个 case (连同注释两行)
+        final var code = new ParserCodeGenerator(table).generate("p", "Generated");
+        final var groups = (table.getStatusInIndexOrder().size() + ParserCodeGenerator.STATES_PER_GROUP - 1) / ParserCodeGenerator.STATES_PER_GROUP;
+        final var limit = Math.max(groups, Math.max(ParserCodeGenerator.STATES_PER_GROUP, 2 * table.getTerminals().size())) + 16;
+
+        var methodLines = 0;
+        var methods = 0;
+        for (final var line : code.split("\n")) {
+            if (line.startsWith("    ") && !line.startsWith("     ") && line.endsWith("{")) {
+                methods++;
+                methodLines = 0;
+            }
+            methodLines++;
+            assertTrue(methodLines <= limit, "generated method too long at: " + line);
+        }
+        assertTrue(methods >= table.getStatusInIndexOrder().size() + GrammarInfo.getProductionsInOrder().size());
+    }
+}
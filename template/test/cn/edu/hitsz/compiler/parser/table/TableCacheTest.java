@@ -0,0 +1,127 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.GLRSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableCacheTest {
+    private Path cacheDir;
+
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    @BeforeEach
+    void createCacheDir() throws IOException {
+        cacheDir = Files.createTempDirectory("table_cache");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        GrammarInfo.reload();
+        try (final var files = Files.walk(cacheDir)) {
+            for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private TableCache cache(boolean keepConflicts) {
+        return new TableCache(cacheDir.toString(), TableGenerator.BuildMode.Sequential, keepConflicts);
+    }
+
+    private List<Path> cacheFiles() throws IOException {
+        try (final Stream<Path> files = Files.list(cacheDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static String dump(LRTable table) throws IOException {
+        final var file = Files.createTempFile("lr_table", ".csv");
+        try {
+            table.dumpTable(file.toString());
+            return Files.readString(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void secondLoadIsServedFromTheCacheFile() throws IOException {
+        final var generated = cache(false).load();
+        final var files = cacheFiles();
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getFileName().toString().startsWith("lr-"));
+
+        assertEquals(dump(generated), dump(cache(false).load()));
+        assertEquals(files, cacheFiles());
+
+        // 损坏缓存文件后读取失败, 说明第二次确实读取的是缓存而不是重新构造
+        final var lines = FileUtils.readLines(files.get(0).toString());
+        Files.write(files.get(0), List.of(lines.get(0), lines.get(1), "x"));
+        assertThrows(RuntimeException.class, () -> cache(false).load());
+    }
+
+    @Test
+    void editingTheGrammarInvalidatesTheCache() throws IOException {
+        final var original = cache(false).load();
+        final var edited = String.join("\n", FileUtils.readLines(GrammarInfo.getGrammarPath())) + "\nB -> - B;\n";
+        TestPrograms.loadGrammar(edited);
+
+        final var regenerated = cache(false).load();
+        assertEquals(2, cacheFiles().size());
+        assertNotEquals(dump(original), dump(regenerated));
+    }
+
+    @Test
+    void conflictsAreCachedSeparatelyAndSurviveTheRoundTrip() throws IOException {
+        TestPrograms.loadGrammar("""
+            P -> E;
+            E -> E + E;
+            E -> id;
+            """);
+        final var first = cache(true);
+        final var generated = first.load();
+        final var conflicts = first.getConflicts().getConflictedStatusCount();
+        assertTrue(conflicts > 0);
+
+        final var second = cache(true);
+        final var cached = second.load();
+        assertEquals(1, cacheFiles().size());
+        assertEquals(dump(generated), dump(cached));
+        assertEquals(conflicts, second.getConflicts().getConflictedStatusCount());
+
+        final var parser = new GLRSyntaxAnalyzer(new SymbolTable());
+        final var recorder = new TestPrograms.ReductionRecorder();
+        parser.registerObserver(recorder);
+        parser.loadTokens(List.of(Token.normal("id", "a"), Token.simple("+"), Token.normal("id", "b"),
+            Token.simple("+"), Token.normal("id", "c"), Token.eof()));
+        parser.loadLRTable(cached, second.getConflicts());
+        parser.run();
+        assertEquals("P -> E", recorder.reductions().get(recorder.reductions().size() - 1));
+        assertTrue(parser.getAmbiguityCount() > 0);
+    }
+
+    @Test
+    void keepingConflictsUsesAnotherCacheEntry() throws IOException {
+        cache(false).load();
+        cache(true).load();
+        assertEquals(2, cacheFiles().size());
+    }
+}
@@ -0,0 +1,178 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableGeneratorTest {
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    private static LRTable generate(TableGenerator.BuildMode mode) {
+        final var generator = new TableGenerator(mode);
+        generator.run();
+        return generator.getTable();
+    }
+
+    private static String dump(LRTable table) throws IOException {
+        final var file = Files.createTempFile("lr_table", ".csv");
+        try {
+            table.dumpTable(file.toString());
+            return Files.readString(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void symbolsAreOrderedByOrdinal() {
+        final var table = generate(TableGenerator.BuildMode.Sequential);
+
+        final var nonTerminals = table.getNonTerminals();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            assertEquals(i, GrammarInfo.getNonTerminalOrdinal(nonTerminals.get(i)));
+        }
+
+        final var terminals = table.getTerminals();
+        for (int i = 1; i < terminals.size(); i++) {
+            assertTrue(terminals.get(i - 1).getOrdinal() < terminals.get(i).getOrdinal());
+        }
+    }
+
+    @Test
+    void generationIsDeterministic() throws IOException {
+        assertEquals(dump(generate(TableGenerator.BuildMode.Sequential)), dump(generate(TableGenerator.BuildMode.Sequential)));
+    }
+
+    @Test
+    void parallelBuildNumbersStatesLikeSequentialBuild() throws IOException {
+        assertEquals(dump(generate(TableGenerator.BuildMode.Sequential)), dump(generate(TableGenerator.BuildMode.Parallel)));
+    }
+
+    @Test
+    void generatedTableParsesInputLikeTheReferenceTable() {
+        final var symbolTable = new SymbolTable();
+        final var tokens = TestPrograms.inputTokens(symbolTable);
+        final var reductions = TestPrograms.reductions(generate(TableGenerator.BuildMode.Sequential), tokens, symbolTable);
+        assertEquals(TestPrograms.expectedReductions(), reductions);
+    }
+
+    @Test
+    void followOfExpressionAllowsClosingTokens() {
+        // E 后可以紧跟 + - ) Semicolon, 因此在 E -> A . 的状态中这些词法单元都应规约 (follow 集合的结果)
+        final var table = generate(TableGenerator.BuildMode.Sequential);
+        final var unit = GrammarInfo.getProductionByText("E -> A");
+        final var reducing = table.getStatusInIndexOrder().stream()
+            .filter(status -> status.getAction(TokenKind.fromString("+")).getKind() == Action.ActionKind.Reduce
+                && status.getAction(TokenKind.fromString("+")).getProduction() == unit)
+            .findFirst().orElseThrow();
+        for (final var follower : new String[]{"-", ")", "Semicolon"}) {
+            final var action = reducing.getAction(TokenKind.fromString(follower));
+            assertEquals(Action.ActionKind.Reduce, action.getKind(), follower);
+            assertSame(unit, action.getProduction());
+        }
+        assertEquals(Action.ActionKind.Shift, reducing.getAction(TokenKind.fromString("*")).getKind());
+    }
+
+    private record Item(Production production, int dot) {
+        Term afterDot() {
+            return dot < production.body().size() ? production.body().get(dot) : null;
+        }
+    }
+
+    /**
+     * 按定义直接构造的 LR(0) 项集族, 用于检验以整数编码构造出的结果
+     */
+    private static Map<Set<Item>, Map<Term, Set<Item>>> referenceCollection() {
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var init = closure(Set.of(new Item(productions.get(0), 0)), productions);
+        final var collection = new LinkedHashMap<Set<Item>, Map<Term, Set<Item>>>();
+        final var queue = new ArrayDeque<Set<Item>>(List.of(init));
+        while (!queue.isEmpty()) {
+            final var items = queue.poll();
+            if (collection.containsKey(items)) {
+                continue;
+            }
+            final var kernels = new HashMap<Term, Set<Item>>();
+            for (final var item : items) {
+                if (item.afterDot() != null) {
+                    kernels.computeIfAbsent(item.afterDot(), key -> new HashSet<>()).add(new Item(item.production(), item.dot() + 1));
+                }
+            }
+            final var transitions = new HashMap<Term, Set<Item>>();
+            kernels.forEach((symbol, kernel) -> transitions.put(symbol, closure(kernel, productions)));
+            collection.put(items, transitions);
+            queue.addAll(transitions.values());
+        }
+        return collection;
+    }
+
+    private static Set<Item> closure(Set<Item> kernel, List<Production> productions) {
+        final var result = new HashSet<>(kernel);
+        final var queue = new ArrayDeque<>(kernel);
+        while (!queue.isEmpty()) {
+            if (queue.poll().afterDot() instanceof NonTerminal nonTerminal) {
+                for (final var production : productions) {
+                    final var item = new Item(production, 0);
+                    if (production.head().equals(nonTerminal) && result.add(item)) {
+                        queue.add(item);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void canonicalCollectionMatchesReferenceConstruction() {
+        final var reference = referenceCollection();
+        final var table = generate(TableGenerator.BuildMode.Sequential);
+        assertEquals(reference.size(), table.getStatusInIndexOrder().size());
+
+        // 两者的转移图同构: 从起始状态同时出发, 沿相同的符号走到的状态一一对应
+        final var correspondence = new HashMap<Status, Set<Item>>();
+        final var queue = new ArrayDeque<Status>(List.of(table.getInit()));
+        correspondence.put(table.getInit(), reference.keySet().iterator().next());
+        while (!queue.isEmpty()) {
+            final var status = queue.poll();
+            final var transitions = reference.get(correspondence.get(status));
+            var count = 0;
+            for (final var terminal : table.getTerminals()) {
+                final var action = status.getAction(terminal);
+                if (action.getKind() == Action.ActionKind.Shift) {
+                    count++;
+                    visit(correspondence, queue, action.getStatus(), transitions.get(terminal));
+                }
+            }
+            for (final var nonTerminal : table.getNonTerminals()) {
+                final var next = status.getGoto(nonTerminal);
+                if (!next.isError()) {
+                    count++;
+                    visit(correspondence, queue, next, transitions.get(nonTerminal));
+                }
+            }
+            assertEquals(transitions.size(), count, "transitions of state " + status.index());
+        }
+        assertEquals(reference.size(), correspondence.size());
+    }
+
+    private static void visit(Map<Status, Set<Item>> correspondence, Deque<Status> queue, Status status, Set<Item> items) {
+        assertNotNull(items);
+        final var previous = correspondence.putIfAbsent(status, items);
+        if (previous == null) {
+            queue.add(status);
+        } else {
+            assertEquals(previous, items);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.TestPrograms;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableLoaderTest {
+    @BeforeAll
+    static void loadTokenKinds() {
+        TestPrograms.loadTokenKinds();
+    }
+
+    @AfterEach
+    void restoreGrammar() {
+        GrammarInfo.reload();
+    }
+
+    @Test
+    void reduceCellsResolveToTheirProductions() {
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        final var csv = FileUtils.readCSV(FilePathConfig.LR1_TABLE_PATH);
+        final var terminals = table.getTerminals();
+        var reduceCells = 0;
+        for (final var row : csv.subList(2, csv.size())) {
+            final var status = table.getStatus(Integer.parseInt(row.get(0)));
+            for (int i = 0; i < terminals.size(); i++) {
+                final var text = row.get(i + 1);
+                final var action = status.getAction(terminals.get(i));
+                if (text.startsWith("reduce ")) {
+                    assertEquals(Action.ActionKind.Reduce, action.getKind());
+                    assertSame(GrammarInfo.getProductionByText(text.substring("reduce ".length())), action.getProduction());
+                    reduceCells++;
+                } else {
+                    assertNotEquals(Action.ActionKind.Reduce, action.getKind());
+                }
+            }
+        }
+        assertTrue(reduceCells > 0);
+    }
+
+    @Test
+    void reduceCellsOfOneProductionShareOneAction() {
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        final var reduceOf = new HashMap<Production, Action>();
+        for (final var status : table.getStatusInIndexOrder()) {
+            for (final var terminal : table.getTerminals()) {
+                final var action = status.getAction(terminal);
+                if (action.getKind() == Action.ActionKind.Reduce) {
+                    assertSame(reduceOf.computeIfAbsent(action.getProduction(), production -> action), action);
+                }
+            }
+        }
+        assertFalse(reduceOf.isEmpty());
+    }
+
+    @Test
+    void emptyProductionsAreResolvedFromTheirCells() throws IOException {
+        // 空产生式的单元格为 "reduce L -> ", 产生式体没有符号. 分析表只需列出用到的终结符
+        TestPrograms.loadGrammar("""
+            P -> L;
+            L -> id L;
+            L -> ;
+            """);
+        final var file = Files.createTempFile("table", ".csv");
+        try {
+            Files.writeString(file, """
+                状态,ACTION,,GOTO
+                ,id,$,L
+                0,shift 2,reduce L -> ,1
+                1,,accept,
+                2,shift 2,reduce L -> ,3
+                3,,reduce L -> id L,
+                """);
+            final var table = new TableLoader().load(file.toString());
+            final var empty = GrammarInfo.getProductionsInOrder().get(2);
+            assertEquals(List.of(), empty.body());
+            assertSame(empty, table.getStatus(0).getAction(TokenKind.eof()).getProduction());
+            assertSame(table.getStatus(0).getAction(TokenKind.eof()), table.getStatus(2).getAction(TokenKind.eof()));
+            assertSame(GrammarInfo.getProductionsInOrder().get(1), table.getStatus(3).getAction(TokenKind.eof()).getProduction());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void unknownProductionsAreRejected() throws IOException {
+        final var csv = FileUtils.readLines(FilePathConfig.LR1_TABLE_PATH);
+        final var file = Files.createTempFile("table", ".csv");
+        try {
+            Files.write(file, csv.stream().map(line -> line.replace("reduce B -> id", "reduce B -> id id")).toList());
+            assertThrows(RuntimeException.class, () -> new TableLoader().load(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cn.edu.hitsz.compiler.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+    @Test
+    void timeRunsTheBodyAndReturnsItsResult() {
+        final var ran = new ArrayList<String>();
+        Metrics.time("test-runnable", () -> ran.add("runnable"));
+        final int result = Metrics.time("test-supplier", () -> {
+            ran.add("supplier");
+            return 42;
+        });
+        assertEquals(42, result);
+        assertIterableEquals(List.of("runnable", "supplier"), ran);
+    }
+
+    @Test
+    void timeRethrowsFailuresOfTheBody() {
+        final var thrown = assertThrows(IllegalStateException.class,
+            () -> Metrics.time("test-failing", () -> {
+                throw new IllegalStateException("phase failed");
+            }));
+        assertEquals("phase failed", thrown.getMessage());
+        // 失败的阶段也已结束, 之后可以照常开始新的阶段
+        assertEquals("next", Metrics.time("test-after-failure", () -> "next"));
+    }
+
+    @Test
+    void countersAreSummedAcrossThreadsAndDumpedInNameOrder() throws IOException {
+        IntStream.range(0, 1000).parallel().forEach(i -> Metrics.count("test_metrics_b_total", 2));
+        Metrics.count("test_metrics_a_total{label=\"x\"}", 5);
+
+        final var file = Files.createTempFile("metrics", ".prom");
+        try {
+            Metrics.dumpToFile(file.toString());
+            final var lines = Files.readAllLines(file).stream().filter(line -> line.startsWith("test_metrics_")).toList();
+            assertIterableEquals(List.of("test_metrics_a_total{label=\"x\"} 5", "test_metrics_b_total 2000"), lines);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}